@@ -0,0 +1,51 @@
+package com.amplifino.counters;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * declares how the values of a counter key are combined.
+ * Annotate the enum constant, e.g. <code>@Accumulate(Operator.MAX) MAXSIZE</code>.
+ * Keys without annotation are summed.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Accumulate {
+
+	/**
+	 * @return the operator for the annotated key
+	 */
+	Operator value();
+
+	/**
+	 * Operators to combine counter values
+	 */
+	enum Operator {
+		/**
+		 * adds the values, the default
+		 */
+		SUM,
+		/**
+		 * keeps the largest value
+		 */
+		MAX;
+
+		/**
+		 * returns the operator declared for the given key
+		 * @param key the enum constant
+		 * @return the declared operator, SUM if the key is not annotated
+		 */
+		public static Operator of(Enum<?> key) {
+			try {
+				Accumulate accumulate = key.getDeclaringClass().getField(key.name()).getAnnotation(Accumulate.class);
+				return accumulate == null ? SUM : accumulate.value();
+			} catch (NoSuchFieldException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
@@ -3,7 +3,8 @@ package com.amplifino.counters;
 import org.osgi.annotation.versioning.ProviderType;
 
 /**
- * Thread safe counters used for instrumenting infrastructure components
+ * Thread safe counters used for instrumenting infrastructure components.
+ * The operation for each key is declared with the Accumulate annotation on the enum constant.
  *
  * @param <T> enum type
  */
@@ -38,4 +39,15 @@ public interface Accumulators<T extends Enum<T>> {
 		return DefaultAccumulators.of(enumClass);
 	}
 	
+	/**
+	 * return a new set of accumulators for the given enum type, striped over per thread cells.
+	 * Prefer striped accumulators for keys updated by many threads concurrently, at the cost of memory and slower snapshots.
+	 * @param enumClass the enum type
+	 * @param <T> the enum type
+	 * @return the new Accumulators instance
+	 */
+	static <T extends Enum<T>> Accumulators<T> striped(Class<T> enumClass) {
+		return StripedCounters.of(enumClass);
+	}
+	
 }
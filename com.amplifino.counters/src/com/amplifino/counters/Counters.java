@@ -45,6 +45,19 @@ public interface Counters<T extends Enum<T>> {
 		return DefaultCounters.of(enumClass);
 	}
 
+	/**
+	 * return a new set of counters for the given enum type, striped over per thread cells.
+	 * Prefer striped counters for keys updated by many threads concurrently, at the cost of memory and slower snapshots.
+	 * Keys updated with max must be declared with <code>@Accumulate(Operator.MAX)</code>, 
+	 * as the snapshot combines the stripes with the declared operator.
+	 * @param enumClass the enum type
+	 * @param <T> the enum type
+	 * @return the new Counters instance
+	 */
+	static <T extends Enum<T>> Counters<T> striped(Class<T> enumClass) {
+		return StripedCounters.of(enumClass);
+	}
+
 	/**
 	 * return a null implementation when performance is more important than statistics
 	 * @param enumClass the enum 
@@ -30,6 +30,17 @@ public interface Counts {
 	 * @return the elapsed time
 	 */
 	long elapsed(TimeUnit unit);
+	/**
+	 * returns the count for the given key per time unit, over the elapsed time of this snapshot.
+	 * Mostly useful on a delta or a window, and only meaningful for keys that are summed.
+	 * @param key the given key
+	 * @param unit the rate time unit
+	 * @return the rate, 0 if no time elapsed
+	 */
+	default double rate(Enum<?> key, TimeUnit unit) {
+		long nanos = elapsed(TimeUnit.NANOSECONDS);
+		return nanos == 0 ? 0 : (double) get(key) * unit.toNanos(1) / nanos;
+	}
 	/**
 	 * takes the delta with a previous snapshot 
 	 * @param snapshot previous snapshot
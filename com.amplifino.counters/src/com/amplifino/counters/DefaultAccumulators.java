@@ -1,19 +1,19 @@
 package com.amplifino.counters;
 
 import java.util.Arrays;
-import java.util.EnumMap;
-import java.util.Map;
 import java.util.concurrent.atomic.LongAccumulator;
 import java.util.stream.Stream;
 
 final class DefaultAccumulators<T extends Enum<T>> implements Accumulators<T> {
 	
 	private final Class<T> enumClass;
+	private final T[] keys;
 	private final LongAccumulator[] values;
 	private final long epoch = System.nanoTime();
 
 	private DefaultAccumulators(Class<T> enumClass) {
 		this.enumClass = enumClass;
+		this.keys = enumClass.getEnumConstants();
 		this.values = allocate();
 	}
 	
@@ -24,7 +24,7 @@ final class DefaultAccumulators<T extends Enum<T>> implements Accumulators<T> {
 	}
 	
 	private LongAccumulator createAccumulator (T enumConstant) {
-		if (enumConstant.name().toUpperCase().contains("MAX")) {
+		if (Accumulate.Operator.of(enumConstant) == Accumulate.Operator.MAX) {
 			return new LongAccumulator(Long::max, 0);
 		} else {
 			return new LongAccumulator(Long::sum, 0);
@@ -35,9 +35,11 @@ final class DefaultAccumulators<T extends Enum<T>> implements Accumulators<T> {
 		return new DefaultAccumulators<>(enumClass);
 	}
 	
-	private Map<T, Long> asMap() {
-		Map<T, Long> result = new EnumMap<>(enumClass);
-		enums().forEach( t -> result.put(t, values[t.ordinal()].get()));
+	private long[] snapshot() {
+		long[] result = new long[values.length];
+		for (int i = 0 ; i < values.length ; i++) {
+			result[i] = values[i].get();
+		}
 		return result;
 	}
 	
@@ -55,11 +57,11 @@ final class DefaultAccumulators<T extends Enum<T>> implements Accumulators<T> {
 	@Override
 	public Counts counts() {
 		long nanos = System.nanoTime() - epoch;
-		return new DefaultCounts<> (enumClass, asMap(), nanos);
+		return new DefaultCounts<> (enumClass, keys, snapshot(), nanos);
 	}
 	
 	private Stream<T> enums() {
-		return Arrays.stream(enumClass.getEnumConstants());
+		return Arrays.stream(keys);
 	}
 	
 }
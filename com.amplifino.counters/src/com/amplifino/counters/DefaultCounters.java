@@ -1,20 +1,19 @@
 package com.amplifino.counters;
 
-import java.util.Arrays;
-import java.util.EnumMap;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 final class DefaultCounters<T extends Enum<T>> implements Counters<T> {
 	
 	private final Class<T> enumClass;
+	private final T[] keys;
 	private final AtomicLong[] values;
 	private final long epoch = System.nanoTime();
 
 	private DefaultCounters(Class<T> enumClass) {
 		this.enumClass = enumClass;
-		this.values = allocate(enumClass.getEnumConstants().length);
+		this.keys = enumClass.getEnumConstants();
+		this.values = allocate(keys.length);
 	}
 	
 	private static AtomicLong[] allocate(int length) {
@@ -27,9 +26,11 @@ final class DefaultCounters<T extends Enum<T>> implements Counters<T> {
 		return new DefaultCounters<>(enumClass);
 	}
 	
-	private Map<T, Long> asMap() {
-		Map<T, Long> result = new EnumMap<>(enumClass);
-		enums().forEach( t -> result.put(t, values[t.ordinal()].get()));
+	private long[] snapshot() {
+		long[] result = new long[values.length];
+		for (int i = 0 ; i < values.length ; i++) {
+			result[i] = values[i].get();
+		}
 		return result;
 	}
 	
@@ -53,11 +54,7 @@ final class DefaultCounters<T extends Enum<T>> implements Counters<T> {
 	@Override
 	public Counts counts() {
 		long nanos = System.nanoTime() - epoch;
-		return new DefaultCounts<> (enumClass, asMap(), nanos);
-	}
-	
-	private Stream<T> enums() {
-		return Arrays.stream(enumClass.getEnumConstants());
+		return new DefaultCounts<> (enumClass, keys, snapshot(), nanos);
 	}
 	
 }
@@ -10,35 +10,35 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 
 import java.io.PrintStream;
 import java.time.LocalDateTime;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.Map;
-import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import java.util.stream.Stream;
 
+/**
+ * snapshot holding the values in key ordinal order.
+ * The keys array is shared between snapshots of the same source and never modified.
+ */
 final class DefaultCounts<T extends Enum<T>> implements Counts {
 	
 	private final Class<T> enumClass;
-	private final Map<T, Long> map;
-	private long elapsed;
+	private final T[] keys;
+	private final long[] values;
+	private final long elapsed;
 	
-	DefaultCounts (Class<T> enumClass, Map<T, Long> map, long elapsed) {
+	DefaultCounts (Class<T> enumClass, T[] keys, long[] values, long elapsed) {
 		this.enumClass = enumClass;
-		this.map = map;
+		this.keys = keys;
+		this.values = values;
 		this.elapsed = elapsed;
 	}
 	
-	private final Stream<T> enums() {
-		return Arrays.stream(enumClass.getEnumConstants());
-	}
-	
 	@Override
 	public long get(Enum<?> key) {
-		// avoid NPE with autoboxing
-		return Optional.ofNullable(map.get(key)).orElse(0L);
+		// keys of another enum count 0
+		int ordinal = key.ordinal();
+		return ordinal < keys.length && keys[ordinal] == key ? values[ordinal] : 0;
 	}
 
 	@Override
@@ -48,9 +48,11 @@ final class DefaultCounts<T extends Enum<T>> implements Counts {
 
 	@Override
 	public Counts delta(Counts snapshot) {
-		Map<T, Long> deltas = new EnumMap<>(enumClass);
-		enums().forEach(t -> deltas.put(t, get(t) - snapshot.get(t)));
-		return new DefaultCounts<>(enumClass, deltas, elapsed - snapshot.elapsed(TimeUnit.NANOSECONDS));
+		long[] deltas = new long[keys.length];
+		for (T key : keys) {
+			deltas[key.ordinal()] = values[key.ordinal()] - snapshot.get(key);
+		}
+		return new DefaultCounts<>(enumClass, keys, deltas, elapsed - snapshot.elapsed(TimeUnit.NANOSECONDS));
 	}
 	
 	@Override
@@ -77,12 +79,18 @@ final class DefaultCounts<T extends Enum<T>> implements Counts {
 	@Override
 	public void print(String header, PrintStream stream) {
 		stream.print(header + " elapsed: " + elapsedString(elapsed));
-		enums().forEach(t -> print(stream,t));
+		for (T key : keys) {
+			print(stream, key);
+		}
 		stream.println();
 	}
 	
 	@Override
 	public Map<Enum<?>, Long> asMap() {
+		Map<T, Long> map = new EnumMap<>(enumClass);
+		for (T key : keys) {
+			map.put(key, values[key.ordinal()]);
+		}
 		return Collections.unmodifiableMap(map);
 	}
 	
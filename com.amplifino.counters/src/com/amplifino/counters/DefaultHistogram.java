@@ -0,0 +1,64 @@
+package com.amplifino.counters;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HDR style histogram.
+ * Values below 2^SUB_BUCKET_BITS have their own bucket,
+ * larger values share a bucket with the values having the same exponent and the same SUB_BUCKET_BITS leading bits.
+ * Zero, the common value of waits on a fast path, is counted in a LongAdder so that it does not write a shared bucket.
+ */
+final class DefaultHistogram implements Histogram {
+
+	static final int SUB_BUCKET_BITS = 5;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder zeros = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator min = new LongAccumulator(Long::min, Long.MAX_VALUE);
+	private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+	@Override
+	public void record(long value) {
+		if (value <= 0) {
+			// does not change sum and max, the snapshot derives the min
+			zeros.increment();
+			return;
+		}
+		buckets.incrementAndGet(index(value));
+		sum.add(value);
+		min.accumulate(value);
+		max.accumulate(value);
+	}
+
+	@Override
+	public HistogramSnapshot snapshot() {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0 ; i < BUCKETS ; i++) {
+			counts[i] = buckets.get(i);
+		}
+		counts[0] = zeros.sum();
+		return new DefaultHistogramSnapshot(counts, sum.sum(), counts[0] == 0 ? min.get() : 0, max.get());
+	}
+
+	static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	static long highestValue(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,86 @@
+package com.amplifino.counters;
+
+import java.util.Arrays;
+
+final class DefaultHistogramSnapshot implements HistogramSnapshot {
+
+	private final long[] counts;
+	private final long count;
+	private final long sum;
+	private final long min;
+	private final long max;
+
+	DefaultHistogramSnapshot(long[] counts, long sum, long min, long max) {
+		this.counts = counts;
+		this.count = Arrays.stream(counts).sum();
+		this.sum = sum;
+		this.min = min;
+		this.max = max;
+	}
+
+	@Override
+	public long count() {
+		return count;
+	}
+
+	@Override
+	public long sum() {
+		return sum;
+	}
+
+	@Override
+	public long min() {
+		return count == 0 ? 0 : min;
+	}
+
+	@Override
+	public long max() {
+		return max;
+	}
+
+	@Override
+	public double mean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	@Override
+	public long percentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile " + percentile + " not between 0 and 100");
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile * count / 100));
+		long cumulative = 0;
+		for (int i = 0 ; i < counts.length ; i++) {
+			cumulative += counts[i];
+			if (cumulative >= rank) {
+				return Math.max(min, Math.min(DefaultHistogram.highestValue(i), max));
+			}
+		}
+		return max;
+	}
+
+	@Override
+	public HistogramSnapshot merge(HistogramSnapshot snapshot) {
+		if (!(snapshot instanceof DefaultHistogramSnapshot)) {
+			throw new IllegalArgumentException("Cannot merge with " + snapshot);
+		}
+		DefaultHistogramSnapshot other = (DefaultHistogramSnapshot) snapshot;
+		long[] merged = new long[counts.length];
+		Arrays.setAll(merged, i -> counts[i] + other.counts[i]);
+		return new DefaultHistogramSnapshot(merged, sum + other.sum, Math.min(min, other.min), Math.max(max, other.max));
+	}
+
+	@Override
+	public String toString() {
+		return "count: " + count + 
+			" mean: " + Math.round(mean()) + 
+			" p50: " + percentile(50) + 
+			" p90: " + percentile(90) + 
+			" p99: " + percentile(99) + 
+			" p99.9: " + percentile(99.9) + 
+			" max: " + max;
+	}
+}
@@ -0,0 +1,36 @@
+package com.amplifino.counters;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+final class DefaultHistograms<T extends Enum<T>> implements Histograms<T> {
+
+	private final Class<T> enumClass;
+	private final DefaultHistogram[] histograms;
+
+	private DefaultHistograms(Class<T> enumClass) {
+		this.enumClass = enumClass;
+		this.histograms = Arrays.stream(enumClass.getEnumConstants())
+			.map(t -> new DefaultHistogram())
+			.toArray(DefaultHistogram[]::new);
+	}
+
+	static <T extends Enum<T>> DefaultHistograms<T> of(Class<T> enumClass) {
+		return new DefaultHistograms<>(enumClass);
+	}
+
+	@Override
+	public DefaultHistograms<T> record(T key, long value) {
+		histograms[key.ordinal()].record(value);
+		return this;
+	}
+
+	@Override
+	public Map<Enum<?>, HistogramSnapshot> snapshots() {
+		Map<T, HistogramSnapshot> result = new EnumMap<>(enumClass);
+		Arrays.stream(enumClass.getEnumConstants()).forEach(t -> result.put(t, histograms[t.ordinal()].snapshot()));
+		return Collections.unmodifiableMap(result);
+	}
+}
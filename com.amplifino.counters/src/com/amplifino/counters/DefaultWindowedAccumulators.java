@@ -0,0 +1,40 @@
+package com.amplifino.counters;
+
+import java.util.concurrent.TimeUnit;
+
+final class DefaultWindowedAccumulators<T extends Enum<T>> implements WindowedAccumulators<T> {
+
+	private final StripedCounters<T> totals;
+	private final WindowedValues<T> windows;
+
+	private DefaultWindowedAccumulators(Class<T> enumClass, long intervalNanos, int intervals) {
+		this.totals = StripedCounters.of(enumClass);
+		this.windows = new WindowedValues<>(enumClass, intervalNanos, intervals);
+	}
+
+	static <T extends Enum<T>> DefaultWindowedAccumulators<T> of(Class<T> enumClass, long intervalNanos, int intervals) {
+		return new DefaultWindowedAccumulators<>(enumClass, intervalNanos, intervals);
+	}
+
+	@Override
+	public DefaultWindowedAccumulators<T> accumulate(T key, long value) {
+		totals.accumulate(key, value);
+		windows.accumulate(key, value);
+		return this;
+	}
+
+	@Override
+	public DefaultWindowedAccumulators<T> increment(T key) {
+		return accumulate(key, 1);
+	}
+
+	@Override
+	public Counts counts() {
+		return totals.counts();
+	}
+
+	@Override
+	public Counts window(long amount, TimeUnit unit) {
+		return windows.window(amount, unit);
+	}
+}
@@ -0,0 +1,47 @@
+package com.amplifino.counters;
+
+import java.util.concurrent.TimeUnit;
+
+final class DefaultWindowedCounters<T extends Enum<T>> implements WindowedCounters<T> {
+
+	private final DefaultCounters<T> totals;
+	private final WindowedValues<T> windows;
+
+	private DefaultWindowedCounters(Class<T> enumClass, long intervalNanos, int intervals) {
+		this.totals = DefaultCounters.of(enumClass);
+		this.windows = new WindowedValues<>(enumClass, intervalNanos, intervals);
+	}
+
+	static <T extends Enum<T>> DefaultWindowedCounters<T> of(Class<T> enumClass, long intervalNanos, int intervals) {
+		return new DefaultWindowedCounters<>(enumClass, intervalNanos, intervals);
+	}
+
+	@Override
+	public DefaultWindowedCounters<T> increment(T key) {
+		return add(key, 1);
+	}
+
+	@Override
+	public DefaultWindowedCounters<T> add(T key, long increment) {
+		totals.add(key, increment);
+		windows.add(key, increment);
+		return this;
+	}
+
+	@Override
+	public DefaultWindowedCounters<T> max(T key, long challenge) {
+		totals.max(key, challenge);
+		windows.max(key, challenge);
+		return this;
+	}
+
+	@Override
+	public Counts counts() {
+		return totals.counts();
+	}
+
+	@Override
+	public Counts window(long amount, TimeUnit unit) {
+		return windows.window(amount, unit);
+	}
+}
@@ -0,0 +1,29 @@
+package com.amplifino.counters;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Thread safe, lock free histogram of non negative values, typically latencies in nanoseconds.
+ * Values are counted in logarithmic buckets with a relative precision of about 3%.
+ *
+ */
+@ProviderType
+public interface Histogram {
+
+	/**
+	 * records a value. Negative values are recorded as 0.
+	 * @param value the value to record
+	 */
+	void record(long value);
+	/**
+	 * @return a snapshot of the values recorded so far
+	 */
+	HistogramSnapshot snapshot();
+	/**
+	 * return a new empty histogram
+	 * @return the new histogram
+	 */
+	static Histogram create() {
+		return new DefaultHistogram();
+	}
+}
@@ -0,0 +1,46 @@
+package com.amplifino.counters;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * HistogramSnapshot represents a snapshot of a Histogram.
+ *
+ */
+@ProviderType
+public interface HistogramSnapshot {
+
+	/**
+	 * @return the number of recorded values
+	 */
+	long count();
+	/**
+	 * @return the sum of the recorded values
+	 */
+	long sum();
+	/**
+	 * @return the smallest recorded value, or 0 if empty
+	 */
+	long min();
+	/**
+	 * @return the largest recorded value, or 0 if empty
+	 */
+	long max();
+	/**
+	 * @return the mean of the recorded values, or 0 if empty
+	 */
+	double mean();
+	/**
+	 * returns the value below which the given percentage of the recorded values fall.
+	 * The result is the upper bound of the bucket containing the percentile, but never exceeds max()
+	 * @param percentile a number between 0 and 100, e.g. 99.9
+	 * @return the value at the percentile, or 0 if empty
+	 */
+	long percentile(double percentile);
+	/**
+	 * combines this snapshot with another one, e.g. the snapshots of several pools
+	 * @param snapshot the other snapshot
+	 * @return a new snapshot containing the values of both
+	 */
+	HistogramSnapshot merge(HistogramSnapshot snapshot);
+
+}
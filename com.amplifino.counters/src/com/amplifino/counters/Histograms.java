@@ -0,0 +1,35 @@
+package com.amplifino.counters;
+
+import java.util.Map;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Thread safe histograms used for instrumenting infrastructure components
+ *
+ * @param <T> enum type
+ */
+@ProviderType
+public interface Histograms<T extends Enum<T>> {
+
+	/**
+	 * records a value in the histogram for this key
+	 * @param key histogram identification
+	 * @param value value to record
+	 * @return this
+	 */
+	Histograms<T> record(T key, long value);
+	/**
+	 * @return a snapshot of every histogram
+	 */
+	Map<Enum<?>, HistogramSnapshot> snapshots();
+	/**
+	 * return a new set of histograms for the given enum type
+	 * @param enumClass the enum type
+	 * @param <T> the enum type
+	 * @return the new Histograms instance
+	 */
+	static <T extends Enum<T>> Histograms<T> of(Class<T> enumClass) {
+		return DefaultHistograms.of(enumClass);
+	}
+}
@@ -0,0 +1,18 @@
+package com.amplifino.counters;
+
+import java.util.Map;
+
+import org.osgi.annotation.versioning.ConsumerType;
+
+/**
+ * Interface indicating that the implementor tracks value distributions, typically latencies
+ *
+ */
+@ConsumerType
+public interface HistogramsSupplier {
+	/**
+	 * return a snapshot of the current histograms
+	 * @return the histogram snapshots
+	 */
+	Map<Enum<?>, HistogramSnapshot> histograms();
+}
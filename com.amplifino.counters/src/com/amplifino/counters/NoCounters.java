@@ -1,28 +1,19 @@
 package com.amplifino.counters;
 
-import java.util.Arrays;
-import java.util.EnumMap;
-import java.util.Map;
-import java.util.stream.Stream;
-
 final class NoCounters<T extends Enum<T>> implements Counters<T> {
 	
 	private final Class<T> enumClass;
+	private final T[] keys;
 	
 	private NoCounters(Class<T> enumClass) {
 		this.enumClass = enumClass;
+		this.keys = enumClass.getEnumConstants();
 	}
 	
 	static <T extends Enum<T>> NoCounters<T> of (Class<T> enumClass ) {
 		return new NoCounters<>(enumClass);
 	}
 	
-	private Map<T, Long> asMap() {
-		Map<T, Long> result = new EnumMap<>(enumClass);
-		enums().forEach( t -> result.put(t, 0L));
-		return result;
-	}
-	
 	@Override
 	public NoCounters<T>  increment(T key) {
 		return this;
@@ -40,11 +31,7 @@ final class NoCounters<T extends Enum<T>> implements Counters<T> {
 	
 	@Override
 	public Counts counts() {
-		return new DefaultCounts<> (enumClass, asMap(), 0L);
-	}
-	
-	private Stream<T> enums() {
-		return Arrays.stream(enumClass.getEnumConstants());
+		return new DefaultCounts<> (enumClass, keys, new long[keys.length], 0L);
 	}
 	
 }
@@ -0,0 +1,89 @@
+package com.amplifino.counters;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * counters with a row of cells per stripe, a thread updates the row selected by its id.
+ *
+ * Rows are separated by padding, so that threads updating different stripes never share a cache line,
+ * also not with adjacent line prefetching. A snapshot combines the rows with the operator declared for each key.
+ */
+final class StripedCounters<T extends Enum<T>> implements Counters<T>, Accumulators<T> {
+
+	// 16 longs is 128 bytes, two cache lines on most processors
+	static final int PADDING = 16;
+
+	private final Class<T> enumClass;
+	private final T[] keys;
+	private final boolean[] max;
+	private final int mask;
+	private final int stride;
+	private final AtomicLongArray cells;
+	private final long epoch = System.nanoTime();
+
+	private StripedCounters(Class<T> enumClass, int stripes) {
+		this.enumClass = enumClass;
+		this.keys = enumClass.getEnumConstants();
+		this.max = new boolean[keys.length];
+		for (T key : keys) {
+			max[key.ordinal()] = Accumulate.Operator.of(key) == Accumulate.Operator.MAX;
+		}
+		this.mask = stripes - 1;
+		this.stride = keys.length + PADDING;
+		this.cells = new AtomicLongArray(PADDING + stripes * stride);
+	}
+
+	static <T extends Enum<T>> StripedCounters<T> of(Class<T> enumClass) {
+		return new StripedCounters<>(enumClass, stripes());
+	}
+
+	// twice the processor count makes collisions between running threads less likely
+	static int stripes() {
+		return Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+	}
+
+	private int index(T key) {
+		return PADDING + ((int) Thread.currentThread().getId() & mask) * stride + key.ordinal();
+	}
+
+	@Override
+	public StripedCounters<T> increment(T key) {
+		return accumulate(key, 1);
+	}
+
+	@Override
+	public StripedCounters<T> add(T key, long increment) {
+		cells.getAndAdd(index(key), increment);
+		return this;
+	}
+
+	@Override
+	public StripedCounters<T> max(T key, long challenge) {
+		int index = index(key);
+		long current = cells.get(index);
+		// only write when the challenge wins, the common case only reads
+		while (challenge > current && !cells.compareAndSet(index, current, challenge)) {
+			current = cells.get(index);
+		}
+		return this;
+	}
+
+	@Override
+	public StripedCounters<T> accumulate(T key, long value) {
+		return max[key.ordinal()] ? max(key, value) : add(key, value);
+	}
+
+	@Override
+	public Counts counts() {
+		long nanos = System.nanoTime() - epoch;
+		long[] values = new long[keys.length];
+		for (int stripe = 0 ; stripe <= mask ; stripe++) {
+			int offset = PADDING + stripe * stride;
+			for (int i = 0 ; i < keys.length ; i++) {
+				long value = cells.get(offset + i);
+				values[i] = max[i] ? Math.max(values[i], value) : values[i] + value;
+			}
+		}
+		return new DefaultCounts<>(enumClass, keys, values, nanos);
+	}
+}
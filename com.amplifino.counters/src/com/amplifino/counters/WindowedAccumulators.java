@@ -0,0 +1,35 @@
+package com.amplifino.counters;
+
+import java.util.concurrent.TimeUnit;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Accumulators that also keep the values of recent time intervals in a ring buffer.
+ * The values of the current interval are striped over per thread cells.
+ *
+ * @param <T> enum type
+ */
+@ProviderType
+public interface WindowedAccumulators<T extends Enum<T>> extends Accumulators<T>, WindowedCountsSupplier {
+
+	@Override
+	WindowedAccumulators<T> accumulate(T key, long value);
+	
+	@Override
+	WindowedAccumulators<T> increment(T key);
+	
+	/**
+	 * return a new set of windowed accumulators for the given enum type.
+	 * Memory use is proportional to the number of keys times the sum of the number of intervals and the number of stripes.
+	 * @param enumClass the enum type
+	 * @param interval interval amount
+	 * @param unit interval unit
+	 * @param intervals number of intervals retained
+	 * @param <T> the enum type
+	 * @return the new instance
+	 */
+	static <T extends Enum<T>> WindowedAccumulators<T> of(Class<T> enumClass, long interval, TimeUnit unit, int intervals) {
+		return DefaultWindowedAccumulators.of(enumClass, unit.toNanos(interval), intervals);
+	}
+}
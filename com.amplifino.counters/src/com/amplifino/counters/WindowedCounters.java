@@ -0,0 +1,38 @@
+package com.amplifino.counters;
+
+import java.util.concurrent.TimeUnit;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Counters that also keep the values of recent time intervals in a ring buffer.
+ * The values of the current interval are striped over per thread cells.
+ *
+ * @param <T> enum type
+ */
+@ProviderType
+public interface WindowedCounters<T extends Enum<T>> extends Counters<T>, WindowedCountsSupplier {
+
+	@Override
+	WindowedCounters<T> increment(T key);
+	
+	@Override
+	WindowedCounters<T> add(T key, long increment);
+	
+	@Override
+	WindowedCounters<T> max(T key, long challenge);
+	
+	/**
+	 * return a new set of windowed counters for the given enum type.
+	 * Memory use is proportional to the number of keys times the sum of the number of intervals and the number of stripes.
+	 * @param enumClass the enum type
+	 * @param interval interval amount
+	 * @param unit interval unit
+	 * @param intervals number of intervals retained
+	 * @param <T> the enum type
+	 * @return the new instance
+	 */
+	static <T extends Enum<T>> WindowedCounters<T> of(Class<T> enumClass, long interval, TimeUnit unit, int intervals) {
+		return DefaultWindowedCounters.of(enumClass, unit.toNanos(interval), intervals);
+	}
+}
@@ -0,0 +1,23 @@
+package com.amplifino.counters;
+
+import java.util.concurrent.TimeUnit;
+
+import org.osgi.annotation.versioning.ConsumerType;
+
+/**
+ * Interface indicating that the implementor tracks event counts per time window
+ *
+ */
+@ConsumerType
+public interface WindowedCountsSupplier {
+	/**
+	 * return the counts of the most recent time window.
+	 * Keys accumulated by max hold the maximum of the window, other keys the sum.
+	 * The elapsed time of the result is the time covered by the window, 
+	 * which is shorter than requested if the counting started more recently or the supplier does not retain that much history.
+	 * @param amount window length amount
+	 * @param unit window length unit
+	 * @return the window counts
+	 */
+	Counts window(long amount, TimeUnit unit);
+}
@@ -0,0 +1,145 @@
+package com.amplifino.counters;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * lock free ring buffer of interval values for every key of an enum.
+ *
+ * Values of the current interval are recorded in a row of cells per stripe, a thread updates the row selected by its id.
+ * The first update of a row in a new interval folds the values of the previous interval into the shared ring,
+ * so the ring is only written once per stripe and interval.
+ * A ring slot is reused when its interval is older than the ring length.
+ * Values folded by other stripes while a slot is being reset for a new interval may be lost.
+ */
+final class WindowedValues<T extends Enum<T>> {
+
+	private final Class<T> enumClass;
+	private final T[] keys;
+	private final long intervalNanos;
+	private final int intervals;
+	// ring values and interval numbers, slot i of key k at index k * intervals + i
+	private final AtomicLongArray values;
+	private final AtomicLongArray slotIntervals;
+	// per stripe the interval number followed by a cell per key
+	private final AtomicLongArray rows;
+	private final int mask;
+	private final int stride;
+	private final boolean[] max;
+	private final long start = System.nanoTime();
+
+	WindowedValues(Class<T> enumClass, long intervalNanos, int intervals) {
+		if (intervalNanos <= 0 || intervals <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.enumClass = enumClass;
+		this.keys = enumClass.getEnumConstants();
+		this.intervalNanos = intervalNanos;
+		this.intervals = intervals;
+		this.values = new AtomicLongArray(keys.length * intervals);
+		this.slotIntervals = new AtomicLongArray(keys.length * intervals);
+		this.mask = StripedCounters.stripes() - 1;
+		this.stride = 1 + keys.length + StripedCounters.PADDING;
+		this.rows = new AtomicLongArray(StripedCounters.PADDING + (mask + 1) * stride);
+		this.max = new boolean[keys.length];
+		for (T key : keys) {
+			max[key.ordinal()] = Accumulate.Operator.of(key) == Accumulate.Operator.MAX;
+		}
+	}
+
+	void accumulate(T key, long value) {
+		if (max[key.ordinal()]) {
+			max(key, value);
+		} else {
+			add(key, value);
+		}
+	}
+
+	void add(T key, long increment) {
+		rows.getAndAdd(row() + 1 + key.ordinal(), increment);
+	}
+
+	void max(T key, long challenge) {
+		int index = row() + 1 + key.ordinal();
+		long current = rows.get(index);
+		while (challenge > current && !rows.compareAndSet(index, current, challenge)) {
+			current = rows.get(index);
+		}
+	}
+
+	private int row() {
+		int row = StripedCounters.PADDING + ((int) Thread.currentThread().getId() & mask) * stride;
+		long interval = (System.nanoTime() - start) / intervalNanos;
+		long rowInterval = rows.get(row);
+		// a delayed thread records in the later interval of the row
+		if (rowInterval < interval && rows.compareAndSet(row, rowInterval, interval)) {
+			fold(row, rowInterval);
+		}
+		return row;
+	}
+
+	private void fold(int row, long interval) {
+		int slot = (int) (interval % intervals);
+		for (int i = 0 ; i < keys.length ; i++) {
+			long value = rows.getAndSet(row + 1 + i, 0);
+			if (value != 0) {
+				foldValue(i * intervals + slot, interval, value, max[i]);
+			}
+		}
+	}
+
+	private void foldValue(int index, long interval, long value, boolean max) {
+		long slotInterval = slotIntervals.get(index);
+		if (slotInterval != interval) {
+			if (slotInterval > interval) {
+				// slot already reused for a later interval
+				return;
+			}
+			if (slotIntervals.compareAndSet(index, slotInterval, interval)) {
+				values.set(index, 0);
+			}
+		}
+		if (max) {
+			long current = values.get(index);
+			while (value > current && !values.compareAndSet(index, current, value)) {
+				current = values.get(index);
+			}
+		} else {
+			values.getAndAdd(index, value);
+		}
+	}
+
+	Counts window(long amount, TimeUnit unit) {
+		long nanos = System.nanoTime() - start;
+		long current = nanos / intervalNanos;
+		long windowIntervals = Math.max(1, Math.min(intervals, (unit.toNanos(amount) + intervalNanos - 1) / intervalNanos));
+		long first = Math.max(0, current - windowIntervals + 1);
+		// the current interval is partial
+		long elapsed = Math.min(nanos, (current - first) * intervalNanos + nanos % intervalNanos);
+		long[] result = new long[keys.length];
+		for (T key : keys) {
+			int offset = key.ordinal() * intervals;
+			for (int i = 0 ; i < intervals ; i++) {
+				long slotInterval = slotIntervals.get(offset + i);
+				if (slotInterval >= first && slotInterval <= current) {
+					result[key.ordinal()] = combine(key.ordinal(), result[key.ordinal()], values.get(offset + i));
+				}
+			}
+		}
+		// rows not yet folded
+		for (int stripe = 0 ; stripe <= mask ; stripe++) {
+			int row = StripedCounters.PADDING + stripe * stride;
+			long rowInterval = rows.get(row);
+			if (rowInterval >= first && rowInterval <= current) {
+				for (int i = 0 ; i < keys.length ; i++) {
+					result[i] = combine(i, result[i], rows.get(row + 1 + i));
+				}
+			}
+		}
+		return new DefaultCounts<>(enumClass, keys, result, elapsed);
+	}
+
+	private long combine(int ordinal, long value, long other) {
+		return max[ordinal] ? Math.max(value, other) : value + other;
+	}
+}
@@ -1,7 +1,11 @@
 /**
  * Thread safe counters
+ * 
+ * Windowed accumulators and counters also keep a ring buffer of recent interval values,
+ * giving the counts and rates of e.g. the last minute instead of the lifetime totals.
+ * Striped counters spread the updates over padded per thread cells, for keys updated by many threads.
  */
-@Version("1.1.0")
+@Version("1.2.0")
 package com.amplifino.counters;
 
 import org.osgi.annotation.versioning.*;
\ No newline at end of file
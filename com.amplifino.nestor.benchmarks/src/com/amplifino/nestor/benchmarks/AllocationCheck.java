@@ -0,0 +1,53 @@
+package com.amplifino.nestor.benchmarks;
+
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * verifies that a steady state Pool borrow release cycle does not allocate.
+ * Runs the single threaded PoolBenchmark for every pool mode with the GC profiler,
+ * and exits with status 1 if a mode allocates a byte or more per operation.
+ */
+public final class AllocationCheck {
+
+	// JMH versions before 1.24 prefix the secondary result label with a middle dot
+	private static final String ALLOCATION_LABEL = "gc.alloc.rate.norm";
+	// the profiler reports small fractions caused by the JMH infrastructure itself
+	private static final double MAX_BYTES_PER_OPERATION = 1.0;
+
+	private AllocationCheck() {
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.include(PoolBenchmark.class.getName() + ".borrowReleaseSingleThread")
+			.mode(Mode.AverageTime)
+			.addProfiler(GCProfiler.class);
+		boolean failed = false;
+		for (RunResult result : new Runner(builder.build()).run()) {
+			double bytes = allocation(result.getSecondaryResults());
+			String mode = result.getParams().getParam("mode");
+			System.out.println(mode + ": " + bytes + " bytes per borrow release");
+			failed |= bytes >= MAX_BYTES_PER_OPERATION;
+		}
+		if (failed) {
+			System.out.println("Borrow release cycle allocates");
+			System.exit(1);
+		}
+	}
+
+	private static double allocation(Map<String, Result> results) {
+		return results.entrySet().stream()
+			.filter(entry -> entry.getKey().endsWith(ALLOCATION_LABEL))
+			.mapToDouble(entry -> entry.getValue().getScore())
+			.findFirst()
+			.orElseThrow(() -> new IllegalStateException("No allocation rate reported"));
+	}
+}
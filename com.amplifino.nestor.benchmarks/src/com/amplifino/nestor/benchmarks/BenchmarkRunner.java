@@ -0,0 +1,29 @@
+package com.amplifino.nestor.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * runs the benchmarks selected by the JMH command line arguments, 
+ * adding the GC profiler to report the allocation rate
+ */
+public final class BenchmarkRunner {
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.parent(commandLineOptions);
+		if (commandLineOptions.getIncludes().isEmpty()) {
+			builder.include(BenchmarkRunner.class.getPackage().getName());
+		}
+		builder.addProfiler(GCProfiler.class);
+		new Runner(builder.build()).run();
+	}
+}
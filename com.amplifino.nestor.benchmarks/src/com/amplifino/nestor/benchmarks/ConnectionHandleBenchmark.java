@@ -0,0 +1,100 @@
+package com.amplifino.nestor.benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amplifino.nestor.adapters.ConnectionPoolDataSourceAdapter;
+import com.amplifino.nestor.jdbc.pools.PoolDataSource;
+
+/**
+ * measures the connection handle overhead of a query: prepare, execute and close on a stub driver,
+ * on a connection held for the whole iteration and on a connection obtained per query.
+ * Run with the GC profiler to see the bytes allocated per query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectionHandleBenchmark {
+
+	private PoolDataSource dataSource;
+
+	@Setup
+	public void setup() {
+		Loggers.quiet();
+		dataSource = PoolDataSource.builder(ConnectionPoolDataSourceAdapter.on(new StubDataSource()))
+			.name("benchmark")
+			.maxIdle(Integer.MAX_VALUE)
+			.build();
+	}
+
+	@TearDown
+	public void tearDown() {
+		dataSource.close();
+	}
+
+	@State(Scope.Thread)
+	public static class Lease {
+
+		private Connection connection;
+
+		@Setup
+		public void setup(ConnectionHandleBenchmark benchmark) throws SQLException {
+			connection = benchmark.dataSource.getConnection();
+		}
+
+		@TearDown
+		public void tearDown() throws SQLException {
+			connection.close();
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public ResultSet querySingleThread(Lease lease) throws SQLException {
+		return query(lease.connection);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public ResultSet connectAndQuerySingleThread() throws SQLException {
+		try (Connection connection = dataSource.getConnection()) {
+			return query(connection);
+		}
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public ResultSet connectAndQueryAllThreads() throws SQLException {
+		try (Connection connection = dataSource.getConnection()) {
+			return query(connection);
+		}
+	}
+
+	private ResultSet query(Connection connection) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("select 1")) {
+			try (ResultSet resultSet = statement.executeQuery()) {
+				resultSet.next();
+				return resultSet;
+			}
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.amplifino.nestor.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amplifino.counters.Accumulate;
+import com.amplifino.counters.Counts;
+
+/**
+ * measures counter updates by concurrent threads.
+ * shared: all threads add to the same key.
+ * adjacent: every thread adds to its own key, the keys being neighbours in the counter storage.
+ * max: all threads challenge the maximum of the same key with a random value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountersBenchmark {
+
+	public enum Key {
+		K0, K1, K2, K3, K4, K5, K6, K7,
+		@Accumulate(Accumulate.Operator.MAX)
+		MAXIMUM;
+	}
+
+	@Param({"ATOMIC", "ACCUMULATORS", "STRIPED"})
+	public CountersMode mode;
+
+	private CountersMode.Recorder<Key> recorder;
+	private final AtomicInteger threads = new AtomicInteger();
+
+	@State(Scope.Thread)
+	public static class ThreadKey {
+		Key key;
+
+		@Setup
+		public void setup(CountersBenchmark benchmark) {
+			// K0 to K7, the threads beyond the eighth share keys
+			key = Key.values()[benchmark.threads.getAndIncrement() % Key.MAXIMUM.ordinal()];
+		}
+	}
+
+	@Setup
+	public void setup() {
+		recorder = mode.create(Key.class);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void sharedSingleThread() {
+		recorder.add.accept(Key.K0, 1);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public void sharedAllThreads() {
+		recorder.add.accept(Key.K0, 1);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public void adjacentAllThreads(ThreadKey threadKey) {
+		recorder.add.accept(threadKey.key, 1);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public void maxAllThreads() {
+		recorder.max.accept(Key.MAXIMUM, ThreadLocalRandom.current().nextLong(1_000_000));
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Counts snapshot() {
+		return recorder.counts.counts();
+	}
+}
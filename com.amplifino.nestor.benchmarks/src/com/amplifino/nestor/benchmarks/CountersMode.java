@@ -0,0 +1,51 @@
+package com.amplifino.nestor.benchmarks;
+
+import java.util.function.ObjLongConsumer;
+
+import com.amplifino.counters.Accumulators;
+import com.amplifino.counters.Counters;
+import com.amplifino.counters.CountsSupplier;
+
+/**
+ * counter implementations to compare
+ */
+public enum CountersMode {
+	ATOMIC {
+		@Override
+		<T extends Enum<T>> Recorder<T> create(Class<T> enumClass) {
+			Counters<T> counters = Counters.of(enumClass);
+			return new Recorder<>(counters::add, counters::max, counters::counts);
+		}
+	},
+	ACCUMULATORS {
+		@Override
+		<T extends Enum<T>> Recorder<T> create(Class<T> enumClass) {
+			Accumulators<T> accumulators = Accumulators.of(enumClass);
+			return new Recorder<>(accumulators::accumulate, accumulators::accumulate, accumulators::counts);
+		}
+	},
+	STRIPED {
+		@Override
+		<T extends Enum<T>> Recorder<T> create(Class<T> enumClass) {
+			Counters<T> counters = Counters.striped(enumClass);
+			return new Recorder<>(counters::add, counters::max, counters::counts);
+		}
+	};
+
+	abstract <T extends Enum<T>> Recorder<T> create(Class<T> enumClass);
+
+	/**
+	 * binds the implementation methods once, so that every mode pays the same interface call
+	 */
+	static final class Recorder<T extends Enum<T>> {
+		final ObjLongConsumer<T> add;
+		final ObjLongConsumer<T> max;
+		final CountsSupplier counts;
+
+		private Recorder(ObjLongConsumer<T> add, ObjLongConsumer<T> max, CountsSupplier counts) {
+			this.add = add;
+			this.max = max;
+			this.counts = counts;
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package com.amplifino.nestor.benchmarks;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class Loggers {
+
+	// LogManager only keeps weak references to loggers, keep a strong one to retain the level
+	private static final Logger POOLS = Logger.getLogger("com.amplifino.pools");
+
+	private Loggers() {
+	}
+
+	/**
+	 * pools log every allocation at INFO level, which would dominate the measurements
+	 */
+	static void quiet() {
+		POOLS.setLevel(Level.WARNING);
+	}
+}
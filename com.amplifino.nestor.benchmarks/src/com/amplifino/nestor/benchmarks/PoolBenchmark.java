@@ -0,0 +1,75 @@
+package com.amplifino.nestor.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amplifino.pools.Pool;
+
+/**
+ * measures Pool.borrow followed by Pool.release.
+ * The pool is sized large enough for all threads, so the benchmark measures contention on the pool structures,
+ * not waiting for a free member.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolBenchmark {
+
+	@Param({"LIFO", "FIFO", "THREADAFFINE", "STRIPED"})
+	public PoolMode mode;
+
+	private Pool<Object> pool;
+
+	@Setup
+	public void setup() {
+		Loggers.quiet();
+		pool = mode.configure(Pool.builder(Object::new))
+			.name("benchmark")
+			.build();
+	}
+
+	@TearDown
+	public void tearDown() {
+		pool.close();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Object borrowReleaseSingleThread() {
+		return borrowRelease();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Object borrowReleaseFourThreads() {
+		return borrowRelease();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Object borrowReleaseAllThreads() {
+		return borrowRelease();
+	}
+
+	private Object borrowRelease() {
+		Object lease = pool.borrow();
+		pool.release(lease);
+		return lease;
+	}
+}
@@ -0,0 +1,74 @@
+package com.amplifino.nestor.benchmarks;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amplifino.nestor.adapters.ConnectionPoolDataSourceAdapter;
+import com.amplifino.nestor.jdbc.pools.PoolDataSource;
+
+/**
+ * measures PoolDataSource.getConnection followed by Connection.close on a stub driver.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolDataSourceBenchmark {
+
+	@Param({"false", "true"})
+	public boolean threadAffine;
+
+	private PoolDataSource dataSource;
+
+	@Setup
+	public void setup() {
+		Loggers.quiet();
+		PoolDataSource.Builder builder = PoolDataSource.builder(ConnectionPoolDataSourceAdapter.on(new StubDataSource()))
+			.name("benchmark")
+			.maxIdle(Integer.MAX_VALUE);
+		if (threadAffine) {
+			builder.threadAffine();
+		}
+		dataSource = builder.build();
+	}
+
+	@TearDown
+	public void tearDown() {
+		dataSource.close();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Connection getConnectionSingleThread() throws SQLException {
+		return getConnection();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Connection getConnectionAllThreads() throws SQLException {
+		return getConnection();
+	}
+
+	private Connection getConnection() throws SQLException {
+		Connection connection = dataSource.getConnection();
+		connection.close();
+		return connection;
+	}
+}
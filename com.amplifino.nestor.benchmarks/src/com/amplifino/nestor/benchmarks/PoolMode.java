@@ -0,0 +1,35 @@
+package com.amplifino.nestor.benchmarks;
+
+import com.amplifino.pools.Pool;
+
+/**
+ * pool configurations to compare
+ */
+public enum PoolMode {
+	LIFO {
+		@Override
+		<T> Pool.Builder<T> configure(Pool.Builder<T> builder) {
+			return builder.lifo();
+		}
+	},
+	FIFO {
+		@Override
+		<T> Pool.Builder<T> configure(Pool.Builder<T> builder) {
+			return builder.fifo();
+		}
+	},
+	THREADAFFINE {
+		@Override
+		<T> Pool.Builder<T> configure(Pool.Builder<T> builder) {
+			return builder.threadAffine();
+		}
+	},
+	STRIPED {
+		@Override
+		<T> Pool.Builder<T> configure(Pool.Builder<T> builder) {
+			return builder.striped();
+		}
+	};
+
+	abstract <T> Pool.Builder<T> configure(Pool.Builder<T> builder);
+}
@@ -0,0 +1,88 @@
+package com.amplifino.nestor.benchmarks;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amplifino.nestor.adapters.ConnectionPoolDataSourceAdapter;
+import com.amplifino.nestor.jdbc.api.Query;
+import com.amplifino.nestor.jdbc.api.QueryTemplate;
+import com.amplifino.nestor.jdbc.pools.PoolDataSource;
+
+/**
+ * compares a lookup by key through the fluent Query and through a QueryTemplate, on a stub driver.
+ * Both obtain a pooled connection per lookup, the held variants reuse one connection.
+ * Run with the GC profiler to see the bytes allocated per lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class QueryTemplateBenchmark {
+
+	private static final String SQL = "select name, type from roles where name = ?";
+	private static final QueryTemplate TEMPLATE = QueryTemplate.of(SQL, String.class);
+
+	private PoolDataSource dataSource;
+	private Connection connection;
+	private final String name = "admin";
+
+	@Setup
+	public void setup() throws SQLException {
+		Loggers.quiet();
+		dataSource = PoolDataSource.builder(ConnectionPoolDataSourceAdapter.on(new StubDataSource()))
+			.name("benchmark")
+			.maxIdle(Integer.MAX_VALUE)
+			.build();
+		connection = dataSource.getConnection();
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		connection.close();
+		dataSource.close();
+	}
+
+	@Benchmark
+	public Optional<String> query() {
+		return Query.on(dataSource)
+			.text(SQL)
+			.parameters(name)
+			.findFirst(r -> r.getString(1));
+	}
+
+	@Benchmark
+	public Optional<String> template() {
+		return TEMPLATE.findFirst(dataSource, r -> r.getString(1), name);
+	}
+
+	@Benchmark
+	public Optional<String> queryHeldConnection() {
+		return Query.on(connection)
+			.text(SQL)
+			.parameters(name)
+			.findFirst(r -> r.getString(1));
+	}
+
+	@Benchmark
+	public Optional<String> templateHeldConnection() {
+		return TEMPLATE.findFirst(connection, r -> r.getString(1), name);
+	}
+}
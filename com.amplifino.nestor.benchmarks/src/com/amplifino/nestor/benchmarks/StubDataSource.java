@@ -0,0 +1,109 @@
+package com.amplifino.nestor.benchmarks;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * in memory DataSource returning connections that do nothing, 
+ * so that benchmarks only measure the pool overhead.
+ * All connections share a single statement, returning a single empty result set.
+ */
+final class StubDataSource implements DataSource {
+
+	private static final ResultSet RESULT_SET = stub(ResultSet.class);
+	private static final PreparedStatement STATEMENT = stub(PreparedStatement.class);
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return stub(Connection.class);
+	}
+
+	private static <T> T stub(Class<T> type) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, StubDataSource::invoke));
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return getConnection();
+	}
+
+	private static Object invoke(Object proxy, Method method, Object[] args) {
+		switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Stub@" + Integer.toHexString(System.identityHashCode(proxy));
+			case "isValid":
+			case "getAutoCommit":
+				return true;
+			case "createStatement":
+			case "prepareStatement":
+				return STATEMENT;
+			case "executeQuery":
+			case "getResultSet":
+				return RESULT_SET;
+			default:
+				return defaultValue(method.getReturnType());
+		}
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (type == boolean.class) {
+			return false;
+		} else if (type == int.class) {
+			return 0;
+		} else if (type == long.class) {
+			return 0L;
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return null;
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return 0;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		} else {
+			throw new SQLException();
+		}
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+}
@@ -0,0 +1,135 @@
+package com.amplifino.nestor.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+final class StubTransaction implements Transaction {
+
+	private static final AtomicLong sequence = new AtomicLong();
+
+	private final Xid xid = new StubXid(sequence.incrementAndGet());
+	private final List<XAResource> resources = new ArrayList<>();
+	private final List<Synchronization> synchronizations = new ArrayList<>();
+	private final Map<Object, Object> resourceMap = new HashMap<>();
+	private int status = Status.STATUS_ACTIVE;
+
+	@Override
+	public void commit() throws RollbackException, SystemException {
+		if (status == Status.STATUS_MARKED_ROLLBACK) {
+			rollback();
+			throw new RollbackException();
+		}
+		synchronizations.forEach(Synchronization::beforeCompletion);
+		try {
+			for (XAResource resource : resources) {
+				resource.end(xid, XAResource.TMSUCCESS);
+				resource.commit(xid, true);
+			}
+			status = Status.STATUS_COMMITTED;
+		} catch (XAException e) {
+			status = Status.STATUS_ROLLEDBACK;
+			throw (SystemException) new SystemException(e.toString()).initCause(e);
+		} finally {
+			afterCompletion();
+		}
+	}
+
+	@Override
+	public boolean delistResource(XAResource resource, int flag) throws SystemException {
+		try {
+			resource.end(xid, flag);
+			return true;
+		} catch (XAException e) {
+			throw (SystemException) new SystemException(e.toString()).initCause(e);
+		}
+	}
+
+	@Override
+	public boolean enlistResource(XAResource resource) throws SystemException {
+		try {
+			resource.start(xid, XAResource.TMNOFLAGS);
+			resources.add(resource);
+			return true;
+		} catch (XAException e) {
+			throw (SystemException) new SystemException(e.toString()).initCause(e);
+		}
+	}
+
+	@Override
+	public int getStatus() {
+		return status;
+	}
+
+	@Override
+	public void registerSynchronization(Synchronization synchronization) {
+		synchronizations.add(synchronization);
+	}
+
+	@Override
+	public void rollback() throws SystemException {
+		try {
+			for (XAResource resource : resources) {
+				resource.end(xid, XAResource.TMFAIL);
+				resource.rollback(xid);
+			}
+		} catch (XAException e) {
+			throw (SystemException) new SystemException(e.toString()).initCause(e);
+		} finally {
+			status = Status.STATUS_ROLLEDBACK;
+			afterCompletion();
+		}
+	}
+
+	@Override
+	public void setRollbackOnly() {
+		status = Status.STATUS_MARKED_ROLLBACK;
+	}
+
+	void putResource(Object key, Object value) {
+		resourceMap.put(key, value);
+	}
+
+	Object getResource(Object key) {
+		return resourceMap.get(key);
+	}
+
+	private void afterCompletion() {
+		synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+	}
+
+	private static final class StubXid implements Xid {
+
+		private final byte[] globalTransactionId;
+
+		private StubXid(long id) {
+			this.globalTransactionId = Long.toString(id).getBytes();
+		}
+
+		@Override
+		public int getFormatId() {
+			return 0;
+		}
+
+		@Override
+		public byte[] getGlobalTransactionId() {
+			return globalTransactionId;
+		}
+
+		@Override
+		public byte[] getBranchQualifier() {
+			return new byte[0];
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.amplifino.nestor.benchmarks;
+
+import javax.transaction.HeuristicMixedException;
+import javax.transaction.HeuristicRollbackException;
+import javax.transaction.NotSupportedException;
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * minimal in memory transaction manager and synchronization registry.
+ * Only supports one phase commit, which is all a single TransactionalDataSource needs.
+ */
+final class StubTransactionManager implements TransactionManager, TransactionSynchronizationRegistry {
+
+	private final ThreadLocal<StubTransaction> current = new ThreadLocal<>();
+
+	@Override
+	public void begin() throws NotSupportedException, SystemException {
+		if (current.get() != null) {
+			throw new NotSupportedException("Nested Transactions not supported");
+		}
+		current.set(new StubTransaction());
+	}
+
+	@Override
+	public void commit() throws RollbackException, HeuristicMixedException, HeuristicRollbackException, SecurityException, IllegalStateException, SystemException {
+		try {
+			transaction().commit();
+		} finally {
+			current.remove();
+		}
+	}
+
+	@Override
+	public void rollback() throws IllegalStateException, SecurityException, SystemException {
+		try {
+			transaction().rollback();
+		} finally {
+			current.remove();
+		}
+	}
+
+	@Override
+	public int getStatus() {
+		StubTransaction transaction = current.get();
+		return transaction == null ? Status.STATUS_NO_TRANSACTION : transaction.getStatus();
+	}
+
+	@Override
+	public Transaction getTransaction() {
+		return current.get();
+	}
+
+	@Override
+	public void resume(Transaction transaction) {
+		current.set((StubTransaction) transaction);
+	}
+
+	@Override
+	public Transaction suspend() {
+		StubTransaction transaction = current.get();
+		current.remove();
+		return transaction;
+	}
+
+	@Override
+	public void setRollbackOnly() {
+		transaction().setRollbackOnly();
+	}
+
+	@Override
+	public void setTransactionTimeout(int seconds) {
+	}
+
+	@Override
+	public Object getTransactionKey() {
+		return current.get();
+	}
+
+	@Override
+	public void putResource(Object key, Object value) {
+		transaction().putResource(key, value);
+	}
+
+	@Override
+	public Object getResource(Object key) {
+		return transaction().getResource(key);
+	}
+
+	@Override
+	public void registerInterposedSynchronization(Synchronization synchronization) {
+		transaction().registerSynchronization(synchronization);
+	}
+
+	@Override
+	public int getTransactionStatus() {
+		return getStatus();
+	}
+
+	@Override
+	public boolean getRollbackOnly() {
+		return transaction().getStatus() == Status.STATUS_MARKED_ROLLBACK;
+	}
+
+	private StubTransaction transaction() {
+		StubTransaction transaction = current.get();
+		if (transaction == null) {
+			throw new IllegalStateException("Not in transaction");
+		}
+		return transaction;
+	}
+}
@@ -0,0 +1,105 @@
+package com.amplifino.nestor.benchmarks;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amplifino.nestor.adapters.ConnectionPoolDataSourceAdapter;
+import com.amplifino.nestor.adapters.XADataSourceAdapter;
+import com.amplifino.nestor.transaction.datasources.TransactionalDataSource;
+
+/**
+ * measures TransactionalDataSource.getConnection, both outside and inside a JTA transaction.
+ * The transaction manager is an in memory stub, so the benchmark measures enlistment and pool overhead only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionalDataSourceBenchmark {
+
+	@Param({"false", "true"})
+	public boolean threadAffine;
+
+	private StubTransactionManager transactionManager;
+	private TransactionalDataSource dataSource;
+
+	@Setup
+	public void setup() {
+		Loggers.quiet();
+		transactionManager = new StubTransactionManager();
+		TransactionalDataSource.Builder builder = TransactionalDataSource.builder(
+				XADataSourceAdapter.on(ConnectionPoolDataSourceAdapter.on(new StubDataSource())), 
+				transactionManager, 
+				transactionManager)
+			.name("benchmark")
+			.maxIdle(Integer.MAX_VALUE);
+		if (threadAffine) {
+			builder.threadAffine();
+		}
+		dataSource = builder.build();
+	}
+
+	@TearDown
+	public void tearDown() {
+		dataSource.close();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Connection noTransactionSingleThread() throws Exception {
+		return noTransaction();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Connection noTransactionAllThreads() throws Exception {
+		return noTransaction();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Connection inTransactionSingleThread() throws Exception {
+		return inTransaction();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Connection inTransactionAllThreads() throws Exception {
+		return inTransaction();
+	}
+
+	private Connection noTransaction() throws Exception {
+		Connection connection = dataSource.getConnection();
+		connection.close();
+		return connection;
+	}
+
+	private Connection inTransaction() throws Exception {
+		transactionManager.begin();
+		try {
+			Connection connection = dataSource.getConnection();
+			connection.close();
+			transactionManager.commit();
+			return connection;
+		} catch (Exception e) {
+			transactionManager.rollback();
+			throw e;
+		}
+	}
+}
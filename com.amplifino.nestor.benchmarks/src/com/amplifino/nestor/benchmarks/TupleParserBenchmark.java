@@ -0,0 +1,139 @@
+package com.amplifino.nestor.benchmarks;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amplifino.nestor.jdbc.api.TupleParser;
+import com.amplifino.nestor.jdbc.api.TupleParsers;
+
+/**
+ * compares a hand written TupleParser with the parsers generated by TupleParsers, for a bean and a constructor mapping.
+ * The rows come from an in memory CachedRowSet, so that the benchmark measures the parser and not a driver.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class TupleParserBenchmark {
+
+	private static final TupleParser<Bean> HANDWRITTEN = r -> {
+		Bean bean = new Bean();
+		bean.setId(r.getInt(1));
+		bean.setName(r.getString(2));
+		bean.setAmount(r.getLong(3));
+		return bean;
+	};
+	private static final TupleParser<Bean> BEAN = TupleParsers.of(Bean.class);
+	private static final TupleParser<Value> VALUE = TupleParsers.of(Value.class);
+
+	@Param({"1000"})
+	private int rowCount;
+
+	private CachedRowSet resultSet;
+
+	@Setup
+	public void setup() throws SQLException {
+		RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+		metaData.setColumnCount(3);
+		column(metaData, 1, "ID", Types.INTEGER);
+		column(metaData, 2, "NAME", Types.VARCHAR);
+		column(metaData, 3, "AMOUNT", Types.BIGINT);
+		resultSet = RowSetProvider.newFactory().createCachedRowSet();
+		resultSet.setMetaData(metaData);
+		for (int i = 0 ; i < rowCount ; i++) {
+			resultSet.moveToInsertRow();
+			resultSet.updateInt(1, i);
+			resultSet.updateString(2, "name" + i);
+			resultSet.updateLong(3, i * 10L);
+			resultSet.insertRow();
+			resultSet.moveToCurrentRow();
+		}
+	}
+
+	private static void column(RowSetMetaDataImpl metaData, int column, String name, int type) throws SQLException {
+		metaData.setColumnName(column, name);
+		metaData.setColumnLabel(column, name);
+		metaData.setColumnType(column, type);
+	}
+
+	@Benchmark
+	public long handwritten() throws SQLException {
+		resultSet.beforeFirst();
+		long result = 0;
+		while (resultSet.next()) {
+			result += HANDWRITTEN.parse(resultSet).amount;
+		}
+		return result;
+	}
+
+	@Benchmark
+	public long bean() throws SQLException {
+		resultSet.beforeFirst();
+		long result = 0;
+		while (resultSet.next()) {
+			result += BEAN.parse(resultSet).amount;
+		}
+		return result;
+	}
+
+	@Benchmark
+	public long constructor() throws SQLException {
+		resultSet.beforeFirst();
+		long result = 0;
+		while (resultSet.next()) {
+			result += VALUE.parse(resultSet).amount;
+		}
+		return result;
+	}
+
+	public static class Bean {
+		private int id;
+		private String name;
+		private long amount;
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public void setAmount(long amount) {
+			this.amount = amount;
+		}
+	}
+
+	public static final class Value {
+		private final int id;
+		private final String name;
+		private final long amount;
+
+		public Value(int id, String name, long amount) {
+			this.id = id;
+			this.name = name;
+			this.amount = amount;
+		}
+	}
+}
@@ -106,11 +106,16 @@ public class DataSourceResource {
 	
 	private List<Map<String, Object>> parse(ResultSet resultSet) throws SQLException {
 		ResultSetMetaData metaData = resultSet.getMetaData();
+		// resolve the column names once, not for every row
+		String[] names = new String[metaData.getColumnCount()];
+		for (int i = 0 ; i < names.length ; i++) {
+			names[i] = metaData.getColumnName(i + 1).toLowerCase();
+		}
 		List<Map<String, Object>> result = new ArrayList<>();
 		while (resultSet.next()) {
-			Map<String, Object> row = new LinkedHashMap<>(metaData.getColumnCount());
-			for (int i = 1 ; i <= metaData.getColumnCount(); i++) {
-				row.put(metaData.getColumnName(i).toLowerCase(), resultSet.getObject(i));
+			Map<String, Object> row = new LinkedHashMap<>(names.length);
+			for (int i = 0 ; i < names.length ; i++) {
+				row.put(names[i], resultSet.getObject(i + 1));
 			}
 			result.add(row);
 		}
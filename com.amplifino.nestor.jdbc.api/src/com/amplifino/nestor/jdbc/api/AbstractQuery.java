@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 abstract class AbstractQuery implements Query {
 		
@@ -43,6 +44,23 @@ abstract class AbstractQuery implements Query {
 			return this;
 		}
 		
+		@Override
+		public Query batchSize(int batchSize) {
+			handler.batchSize(batchSize);
+			return this;
+		}
+		
+		@Override
+		public Query commitPerBatch() {
+			handler.commitPerBatch();
+			return this;
+		}
+		
+		@Override
+		final public <T> long executeChunked(Stream<? extends T> values, Binder<? super T> binder) {
+			return executeChunked(values::iterator, binder);
+		}
+		
 		@Override
 		final public <T> List<T> select(TupleParser<T> parser) {
 			List<T> result = new ArrayList<>();
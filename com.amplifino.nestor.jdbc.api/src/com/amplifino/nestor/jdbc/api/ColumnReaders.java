@@ -0,0 +1,163 @@
+package com.amplifino.nestor.jdbc.api;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * method handles reading a column with the getter for the target type.
+ * Wrapper types read the primitive value and test wasNull, the java.time types convert the java.sql values,
+ * enum types are read by name, other types with getObject.
+ */
+final class ColumnReaders {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final Map<Class<?>, MethodHandle> READERS = readers();
+	private static final MethodHandle OBJECT = getter("getObject", Object.class);
+	private static final MethodHandle ENUM = reader("readEnum", MethodType.methodType(Enum.class, ResultSet.class, int.class, Class.class));
+
+	private ColumnReaders() {
+	}
+
+	private static Map<Class<?>, MethodHandle> readers() {
+		Map<Class<?>, MethodHandle> readers = new HashMap<>();
+		readers.put(int.class, getter("getInt", int.class));
+		readers.put(long.class, getter("getLong", long.class));
+		readers.put(short.class, getter("getShort", short.class));
+		readers.put(byte.class, getter("getByte", byte.class));
+		readers.put(double.class, getter("getDouble", double.class));
+		readers.put(float.class, getter("getFloat", float.class));
+		readers.put(boolean.class, getter("getBoolean", boolean.class));
+		readers.put(String.class, getter("getString", String.class));
+		readers.put(BigDecimal.class, getter("getBigDecimal", BigDecimal.class));
+		readers.put(byte[].class, getter("getBytes", byte[].class));
+		readers.put(Integer.class, reader("readInteger", Integer.class));
+		readers.put(Long.class, reader("readLong", Long.class));
+		readers.put(Short.class, reader("readShort", Short.class));
+		readers.put(Byte.class, reader("readByte", Byte.class));
+		readers.put(Double.class, reader("readDouble", Double.class));
+		readers.put(Float.class, reader("readFloat", Float.class));
+		readers.put(Boolean.class, reader("readBoolean", Boolean.class));
+		readers.put(Instant.class, reader("readInstant", Instant.class));
+		readers.put(LocalDateTime.class, reader("readLocalDateTime", LocalDateTime.class));
+		readers.put(LocalDate.class, reader("readLocalDate", LocalDate.class));
+		readers.put(LocalTime.class, reader("readLocalTime", LocalTime.class));
+		return readers;
+	}
+
+	private static MethodHandle getter(String name, Class<?> type) {
+		try {
+			return LOOKUP.findVirtual(ResultSet.class, name, MethodType.methodType(type, int.class));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodHandle reader(String name, Class<?> type) {
+		return reader(name, MethodType.methodType(type, ResultSet.class, int.class));
+	}
+
+	private static MethodHandle reader(String name, MethodType methodType) {
+		try {
+			return LOOKUP.findStatic(ColumnReaders.class, name, methodType);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param type the target type
+	 * @return true if a single column maps on the type
+	 */
+	static boolean isColumnType(Class<?> type) {
+		return READERS.containsKey(type) || type.isEnum();
+	}
+
+	/**
+	 * returns a handle reading the column as the target type
+	 * @param type the target type
+	 * @param column the column index, starting at 1
+	 * @return a handle of type (ResultSet)type
+	 */
+	static MethodHandle reader(Class<?> type, int column) {
+		MethodHandle reader = READERS.get(type);
+		if (reader == null) {
+			reader = type.isEnum() ? MethodHandles.insertArguments(ENUM, 2, type) : OBJECT;
+			reader = reader.asType(MethodType.methodType(type, ResultSet.class, int.class));
+		}
+		return MethodHandles.insertArguments(reader, 1, column);
+	}
+
+	private static Integer readInteger(ResultSet resultSet, int column) throws SQLException {
+		int value = resultSet.getInt(column);
+		return resultSet.wasNull() ? null : value;
+	}
+
+	private static Long readLong(ResultSet resultSet, int column) throws SQLException {
+		long value = resultSet.getLong(column);
+		return resultSet.wasNull() ? null : value;
+	}
+
+	private static Short readShort(ResultSet resultSet, int column) throws SQLException {
+		short value = resultSet.getShort(column);
+		return resultSet.wasNull() ? null : value;
+	}
+
+	private static Byte readByte(ResultSet resultSet, int column) throws SQLException {
+		byte value = resultSet.getByte(column);
+		return resultSet.wasNull() ? null : value;
+	}
+
+	private static Double readDouble(ResultSet resultSet, int column) throws SQLException {
+		double value = resultSet.getDouble(column);
+		return resultSet.wasNull() ? null : value;
+	}
+
+	private static Float readFloat(ResultSet resultSet, int column) throws SQLException {
+		float value = resultSet.getFloat(column);
+		return resultSet.wasNull() ? null : value;
+	}
+
+	private static Boolean readBoolean(ResultSet resultSet, int column) throws SQLException {
+		boolean value = resultSet.getBoolean(column);
+		return resultSet.wasNull() ? null : value;
+	}
+
+	private static Instant readInstant(ResultSet resultSet, int column) throws SQLException {
+		Timestamp value = resultSet.getTimestamp(column);
+		return value == null ? null : value.toInstant();
+	}
+
+	private static LocalDateTime readLocalDateTime(ResultSet resultSet, int column) throws SQLException {
+		Timestamp value = resultSet.getTimestamp(column);
+		return value == null ? null : value.toLocalDateTime();
+	}
+
+	private static LocalDate readLocalDate(ResultSet resultSet, int column) throws SQLException {
+		Date value = resultSet.getDate(column);
+		return value == null ? null : value.toLocalDate();
+	}
+
+	private static LocalTime readLocalTime(ResultSet resultSet, int column) throws SQLException {
+		Time value = resultSet.getTime(column);
+		return value == null ? null : value.toLocalTime();
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Enum<?> readEnum(ResultSet resultSet, int column, Class type) throws SQLException {
+		String value = resultSet.getString(column);
+		return value == null ? null : Enum.valueOf(type, value);
+	}
+}
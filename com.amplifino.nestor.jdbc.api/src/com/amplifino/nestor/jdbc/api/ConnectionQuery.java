@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 class ConnectionQuery extends AbstractQuery {
 		
@@ -22,6 +23,15 @@ class ConnectionQuery extends AbstractQuery {
 			}
 		}
 		
+		@Override
+		public <T> Stream<T> stream(TupleParser<T> parser) {
+			try {
+				return handler().stream(connection, false, parser);
+			} catch (SQLException e) {
+				throw new UncheckedSQLException(e);
+			}
+		}
+		
 		@Override
 		public <T> Optional<T> collect(TupleParser<T> supplier, TupleAccumulator<T> accumulator) {
 			try {
@@ -68,6 +78,15 @@ class ConnectionQuery extends AbstractQuery {
 			}
 		}
 		
+		@Override
+		public <T> long executeChunked(Iterable<? extends T> values, Binder<? super T> binder) {
+			try {
+				return handler().executeChunked(connection, values.iterator(), binder);
+			} catch (SQLException e) {
+				throw new UncheckedSQLException(e);
+			}
+		}
+		
 		@Override
 		public  <T> int[] executeBatch(Iterable<? extends T> values, Binder<? super T> binder) {
 			try {
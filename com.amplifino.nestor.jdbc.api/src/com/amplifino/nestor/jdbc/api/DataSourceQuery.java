@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import javax.sql.DataSource;
 
@@ -26,6 +27,21 @@ class DataSourceQuery extends AbstractQuery  {
 			}
 		}
 		
+		@Override
+		public <T> Stream<T> stream(TupleParser<T> parser) {
+			try {
+				Connection connection = dataSource.getConnection();
+				try {
+					return handler().stream(connection, true, parser);
+				} catch (SQLException | RuntimeException e) {
+					connection.close();
+					throw e;
+				}
+			} catch (SQLException e) {
+				throw new UncheckedSQLException(e);
+			}
+		}
+		
 		@Override
 		public <T> Optional<T> collect(TupleParser<T> supplier, TupleAccumulator<T> accumulator) {
 			try {
@@ -82,6 +98,17 @@ class DataSourceQuery extends AbstractQuery  {
 			}
 		}
 		
+		@Override
+		public <T> long executeChunked(Iterable<? extends T> values, Binder<? super T> binder) {
+			try {
+				try (Connection connection = dataSource.getConnection()) {
+					return handler().executeChunked(connection, values.iterator(), binder);
+				}
+			} catch (SQLException e) {
+				throw new UncheckedSQLException(e);
+			}
+		}
+		
 		@Override
 		public <T> int[] executeBatch(Iterable<? extends T> values, Binder<? super T> binder) {
 			try {
@@ -0,0 +1,319 @@
+package com.amplifino.nestor.jdbc.api;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.sql.DataSource;
+
+final class DefaultParallelQuery implements ParallelQuery {
+	
+	// rows buffered per partition when streaming, before the partition waits for the consumer
+	private static final int BUFFER_PER_PARTITION = 1000;
+	
+	private final DataSource dataSource;
+	private final Query prefix;
+	private final Query suffix;
+	private Query current;
+	private String condition;
+	private int partitions = 0;
+	private Partitioning partitioning;
+	private int parallelism = 0;
+	private int fetchSize = 0;
+	private Executor executor = DefaultParallelQuery::startThread;
+	
+	DefaultParallelQuery(DataSource dataSource) {
+		this.dataSource = Objects.requireNonNull(dataSource);
+		// text holders only, partitions copy their text and parameters
+		this.prefix = Query.on(dataSource);
+		this.suffix = Query.on(dataSource);
+		this.current = prefix;
+	}
+	
+	private static void startThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "ParallelQuery");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public ParallelQuery text(String sql) {
+		current.text(sql);
+		return this;
+	}
+
+	@Override
+	public ParallelQuery parameters(Object parameter, Object... parameters) {
+		current.parameters(parameter, parameters);
+		return this;
+	}
+
+	@Override
+	public ParallelQuery modulo(String column, int partitions) {
+		return partition("mod(" + column + ", ?) = ? ", partitions, (query, index) -> query.parameters(partitions, index));
+	}
+
+	@Override
+	public ParallelQuery range(String column, long from, long to, int partitions) {
+		if (to <= from) {
+			throw new IllegalArgumentException("Empty range " + from + " - " + to);
+		}
+		long width = (to - from + partitions - 1) / partitions;
+		return partition(column + " >= ? and " + column + " < ? ", partitions, (query, index) -> {
+			long lower = from + index * width;
+			query.parameters(lower, index == partitions - 1 ? to : Math.min(lower + width, to));
+		});
+	}
+	
+	private ParallelQuery partition(String condition, int partitions, Partitioning partitioning) {
+		if (this.condition != null) {
+			throw new IllegalStateException("Query is already partitioned");
+		}
+		if (partitions <= 0) {
+			throw new IllegalArgumentException("Invalid number of partitions " + partitions);
+		}
+		this.condition = condition;
+		this.partitions = partitions;
+		this.partitioning = partitioning;
+		this.current = suffix;
+		return this;
+	}
+
+	@Override
+	public ParallelQuery parallelism(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Invalid parallelism " + parallelism);
+		}
+		this.parallelism = parallelism;
+		return this;
+	}
+	
+	@Override
+	public ParallelQuery fetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+		return this;
+	}
+	
+	@Override
+	public ParallelQuery executor(Executor executor) {
+		this.executor = Objects.requireNonNull(executor);
+		return this;
+	}
+	
+	private int workers() {
+		if (condition == null) {
+			throw new IllegalStateException("Query is not partitioned, call modulo or range");
+		}
+		int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		return Math.min(workers, partitions);
+	}
+	
+	private Query query(Connection connection, int index) {
+		Query query = Query.on(connection).add(prefix).text(condition);
+		partitioning.bind(query, index);
+		query.add(suffix);
+		if (fetchSize > 0) {
+			query.fetchSize(fetchSize);
+		}
+		return query;
+	}
+
+	@Override
+	public <T> long select(TupleParser<T> parser, Consumer<? super T> consumer) {
+		Execution<T> execution = new Execution<>(parser, consumer, workers());
+		execution.start();
+		try {
+			execution.done.await();
+		} catch (InterruptedException e) {
+			execution.cancel();
+			Thread.currentThread().interrupt();
+			throw new IllegalThreadStateException("Thread interrupted");
+		}
+		execution.rethrow();
+		return execution.rows.sum();
+	}
+	
+	@Override
+	public <T> Stream<T> stream(TupleParser<T> parser) {
+		int workers = workers();
+		BlockingQueue<Object> queue = new ArrayBlockingQueue<>(workers * BUFFER_PER_PARTITION);
+		Execution<T> execution = new Execution<>(parser, null, workers);
+		execution.queue = queue;
+		ParallelSpliterator<T> spliterator = new ParallelSpliterator<>(execution);
+		execution.start();
+		return StreamSupport.stream(spliterator, false).onClose(execution::cancel);
+	}
+	
+	@FunctionalInterface
+	private interface Partitioning {
+		void bind(Query query, int index);
+	}
+	
+	// marks the end of a worker in the stream queue, and null rows
+	private static final Object DONE = new Object();
+	private static final Object NULL = new Object();
+	
+	private final class Execution<T> {
+		private final TupleParser<T> parser;
+		private final Consumer<? super T> consumer;
+		private final int workers;
+		private final AtomicInteger next = new AtomicInteger();
+		private final LongAdder rows = new LongAdder();
+		private final CountDownLatch done;
+		private BlockingQueue<Object> queue;
+		// cancelled stops the partitions, closed also stops delivering to the stream
+		private volatile boolean cancelled = false;
+		private volatile boolean closed = false;
+		private Throwable failure;
+		
+		Execution(TupleParser<T> parser, Consumer<? super T> consumer, int workers) {
+			this.parser = parser;
+			this.consumer = consumer;
+			this.workers = workers;
+			this.done = new CountDownLatch(workers);
+		}
+		
+		void start() {
+			for (int i = 0 ; i < workers ; i++) {
+				try {
+					executor.execute(this::work);
+				} catch (RuntimeException | Error e) {
+					fail(e);
+					for (int j = i ; j < workers ; j++) {
+						finish();
+					}
+					return;
+				}
+			}
+		}
+		
+		private void work() {
+			try {
+				for (int index = next.getAndIncrement() ; index < partitions && !cancelled ; index = next.getAndIncrement()) {
+					try (Connection connection = dataSource.getConnection()) {
+						query(connection, index).select(parser, this::accept);
+					} catch (SQLException e) {
+						throw new UncheckedSQLException(e);
+					}
+				}
+			} catch (CancellationException e) {
+				// stopped because an other partition failed, or the stream was closed
+			} catch (RuntimeException | Error e) {
+				fail(e);
+			} finally {
+				finish();
+			}
+		}
+		
+		private void accept(T row) {
+			if (cancelled) {
+				throw new CancellationException();
+			}
+			if (queue == null) {
+				consumer.accept(row);
+			} else {
+				put(row == null ? NULL : row, false);
+			}
+			rows.increment();
+		}
+		
+		private void put(Object element, boolean last) {
+			try {
+				while (!queue.offer(element, 100, TimeUnit.MILLISECONDS)) {
+					// the stream needs the end of every worker, unless it is closed
+					if (last ? closed : cancelled) {
+						throw new CancellationException();
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CancellationException();
+			}
+		}
+		
+		private void finish() {
+			done.countDown();
+			if (queue != null) {
+				try {
+					put(DONE, true);
+				} catch (CancellationException e) {
+					// nobody is consuming
+				}
+			}
+		}
+		
+		private synchronized void fail(Throwable e) {
+			if (failure == null) {
+				failure = e;
+			} else {
+				failure.addSuppressed(e);
+			}
+			cancelled = true;
+		}
+		
+		synchronized void rethrow() {
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+			if (failure != null) {
+				throw (RuntimeException) failure;
+			}
+		}
+		
+		void cancel() {
+			cancelled = true;
+			closed = true;
+			if (queue != null) {
+				queue.clear();
+			}
+		}
+	}
+	
+	private static final class ParallelSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+		private final DefaultParallelQuery.Execution<T> execution;
+		private int finished = 0;
+		
+		ParallelSpliterator(DefaultParallelQuery.Execution<T> execution) {
+			super(Long.MAX_VALUE, 0);
+			this.execution = execution;
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean tryAdvance(Consumer<? super T> action) {
+			while (finished < execution.workers) {
+				Object element;
+				try {
+					element = execution.queue.take();
+				} catch (InterruptedException e) {
+					execution.cancel();
+					Thread.currentThread().interrupt();
+					throw new IllegalThreadStateException("Thread interrupted");
+				}
+				// report a failure as soon as it happens, not after the rows already queued
+				if (execution.cancelled) {
+					execution.rethrow();
+				}
+				if (element == DONE) {
+					finished++;
+				} else {
+					action.accept(element == NULL ? null : (T) element);
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package com.amplifino.nestor.jdbc.api;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import javax.sql.DataSource;
+
+final class DefaultQueryTemplate implements QueryTemplate {
+	
+	private final String sql;
+	private final List<Class<?>> parameterTypes;
+	private final ParameterBinder[] binders;
+	
+	DefaultQueryTemplate(String sql, Class<?>[] parameterTypes) {
+		this.sql = Objects.requireNonNull(sql);
+		this.parameterTypes = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(parameterTypes)));
+		this.binders = Arrays.stream(parameterTypes).map(ParameterBinder::of).toArray(ParameterBinder[]::new);
+	}
+	
+	@Override
+	public <T> List<T> select(Connection connection, TupleParser<T> parser, Object... values) {
+		try (PreparedStatement statement = prepare(connection, values, "select: ")) {
+			try (ResultSet resultSet = statement.executeQuery()) {
+				TupleParser<T> rowParser = MappingParser.bind(parser, resultSet);
+				List<T> result = new ArrayList<>();
+				while (resultSet.next()) {
+					result.add(rowParser.parse(resultSet));
+				}
+				QueryHandler.logCount(result.size());
+				return result;
+			}
+		} catch (SQLException e) {
+			throw new UncheckedSQLException(e);
+		}
+	}
+	
+	@Override
+	public <T> List<T> select(DataSource dataSource, TupleParser<T> parser, Object... values) {
+		try (Connection connection = dataSource.getConnection()) {
+			return select(connection, parser, values);
+		} catch (SQLException e) {
+			throw new UncheckedSQLException(e);
+		}
+	}
+	
+	@Override
+	public <T> Optional<T> findFirst(Connection connection, TupleParser<T> parser, Object... values) {
+		try (PreparedStatement statement = prepare(connection, values, "findFirst: ")) {
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (resultSet.next()) {
+					QueryHandler.logCount(1);
+					return Optional.of(parser.parse(resultSet));
+				} else {
+					QueryHandler.logCount(0);
+					return Optional.empty();
+				}
+			}
+		} catch (SQLException e) {
+			throw new UncheckedSQLException(e);
+		}
+	}
+	
+	@Override
+	public <T> Optional<T> findFirst(DataSource dataSource, TupleParser<T> parser, Object... values) {
+		try (Connection connection = dataSource.getConnection()) {
+			return findFirst(connection, parser, values);
+		} catch (SQLException e) {
+			throw new UncheckedSQLException(e);
+		}
+	}
+	
+	@Override
+	public int executeUpdate(Connection connection, Object... values) {
+		try (PreparedStatement statement = prepare(connection, values, "executeUpdate: ")) {
+			return statement.executeUpdate();
+		} catch (SQLException e) {
+			throw new UncheckedSQLException(e);
+		}
+	}
+	
+	@Override
+	public int executeUpdate(DataSource dataSource, Object... values) {
+		try (Connection connection = dataSource.getConnection()) {
+			return executeUpdate(connection, values);
+		} catch (SQLException e) {
+			throw new UncheckedSQLException(e);
+		}
+	}
+	
+	private PreparedStatement prepare(Connection connection, Object[] values, String header) throws SQLException {
+		if (values.length != binders.length) {
+			throw new IllegalArgumentException("Expected " + binders.length + " parameters, got " + values.length);
+		}
+		PreparedStatement statement = connection.prepareStatement(sql);
+		try {
+			for (int i = 0 ; i < binders.length ; i++) {
+				binders[i].set(statement, i + 1, values[i]);
+			}
+		} catch (SQLException | RuntimeException e) {
+			statement.close();
+			throw e;
+		}
+		QueryHandler.logExecution(header, sql, values);
+		return statement;
+	}
+	
+	@Override
+	public String text() {
+		return sql;
+	}
+	
+	@Override
+	public List<Class<?>> parameterTypes() {
+		return parameterTypes;
+	}
+	
+	@Override
+	public String toString() {
+		return "QueryTemplate " + sql + " " + parameterTypes;
+	}
+}
@@ -0,0 +1,187 @@
+package com.amplifino.nestor.jdbc.api;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * TupleParser mapping the columns of a row on an instance of a class.
+ *
+ * The columns are resolved to a single method handle once per sequence of column labels,
+ * bound in a parser for that shape.
+ * The parser remembers the shape parser for the last result set, and per thread for concurrent use,
+ * so that parsing a row only compares the result set and invokes the handle.
+ * The select and stream methods of this package bind the shape parser once per result set, see bind.
+ */
+final class MappingParser<T> implements TupleParser<T> {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+	private static final MethodType MAPPER_TYPE = MethodType.methodType(Object.class, ResultSet.class);
+
+	private final Class<T> type;
+	private final ConcurrentMap<List<String>, ShapeParser<T>> shapes = new ConcurrentHashMap<>();
+	private final ThreadLocal<Resolved<T>> current = new ThreadLocal<>();
+	private volatile Resolved<T> last;
+
+	MappingParser(Class<T> type) {
+		this.type = type;
+	}
+
+	@Override
+	public T parse(ResultSet resultSet) throws SQLException {
+		Resolved<T> resolved = last;
+		if (resolved == null || !resolved.isFor(resultSet)) {
+			resolved = resolve(resultSet);
+		}
+		return resolved.parser.parse(resultSet);
+	}
+
+	/**
+	 * returns the parser for the shape of the result set, parsing rows of that result set without checking its shape
+	 * @param parser the parser used for the rows of the result set
+	 * @param resultSet the result set
+	 * @return the shape parser if parser is a MappingParser, parser otherwise
+	 */
+	static <T> TupleParser<T> bind(TupleParser<T> parser, ResultSet resultSet) throws SQLException {
+		return parser instanceof MappingParser ? ((MappingParser<T>) parser).resolve(resultSet).parser : parser;
+	}
+
+	private Resolved<T> resolve(ResultSet resultSet) throws SQLException {
+		Resolved<T> resolved = current.get();
+		if (resolved != null && resolved.isFor(resultSet)) {
+			return resolved;
+		}
+		ResultSetMetaData metaData = resultSet.getMetaData();
+		String[] labels = new String[metaData.getColumnCount()];
+		for (int i = 0 ; i < labels.length ; i++) {
+			labels[i] = metaData.getColumnLabel(i + 1);
+		}
+		resolved = new Resolved<>(resultSet, shapes.computeIfAbsent(Arrays.asList(labels), labelList -> new ShapeParser<>(compose(labelList))));
+		current.set(resolved);
+		last = resolved;
+		return resolved;
+	}
+
+	private MethodHandle compose(List<String> labels) {
+		try {
+			if (ColumnReaders.isColumnType(type)) {
+				return ColumnReaders.reader(type, 1).asType(MAPPER_TYPE);
+			}
+			if (Arrays.stream(type.getConstructors()).anyMatch(constructor -> constructor.getParameterCount() == 0)) {
+				return bean(labels);
+			} else {
+				return constructor(labels);
+			}
+		} catch (IllegalAccessException | NoSuchMethodException e) {
+			throw new IllegalArgumentException("Cannot map " + labels + " on " + type.getName(), e);
+		}
+	}
+
+	private MethodHandle bean(List<String> labels) throws IllegalAccessException, NoSuchMethodException {
+		Map<String, MethodHandle> setters = setters();
+		// (T, ResultSet)void, setting the mapped columns in column order
+		MethodHandle body = null;
+		for (int i = 0 ; i < labels.size() ; i++) {
+			MethodHandle setter = setters.get(normalize(labels.get(i)));
+			if (setter != null) {
+				MethodHandle column = MethodHandles.filterArguments(setter, 1, ColumnReaders.reader(setter.type().parameterType(1), i + 1));
+				body = body == null ? column : MethodHandles.foldArguments(column, body);
+			}
+		}
+		if (body == null) {
+			throw new IllegalArgumentException("No column of " + labels + " maps on a property of " + type.getName());
+		}
+		MethodHandle result = MethodHandles.foldArguments(MethodHandles.dropArguments(MethodHandles.identity(type), 1, ResultSet.class), body);
+		MethodHandle constructor = MethodHandles.dropArguments(LOOKUP.findConstructor(type, MethodType.methodType(void.class)), 0, ResultSet.class);
+		return MethodHandles.foldArguments(result, constructor).asType(MAPPER_TYPE);
+	}
+
+	private Map<String, MethodHandle> setters() throws IllegalAccessException {
+		Map<String, MethodHandle> setters = new HashMap<>();
+		for (Field field : type.getFields()) {
+			if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers())) {
+				setters.put(normalize(field.getName()), LOOKUP.unreflectSetter(field).asType(MethodType.methodType(void.class, type, field.getType())));
+			}
+		}
+		// setters take precedence over fields with the same name
+		for (Method method : type.getMethods()) {
+			if (!Modifier.isStatic(method.getModifiers()) && method.getName().startsWith("set") && method.getName().length() > 3 && method.getParameterCount() == 1) {
+				MethodType setterType = MethodType.methodType(void.class, type, method.getParameterTypes()[0]);
+				setters.put(normalize(method.getName().substring(3)), LOOKUP.unreflect(method).asFixedArity().asType(setterType));
+			}
+		}
+		return setters;
+	}
+
+	private MethodHandle constructor(List<String> labels) throws IllegalAccessException {
+		Constructor<?>[] candidates = Arrays.stream(type.getConstructors())
+			.filter(constructor -> constructor.getParameterCount() == labels.size())
+			.toArray(Constructor<?>[]::new);
+		if (candidates.length != 1) {
+			throw new IllegalArgumentException(type.getName() + " has no public no-arg constructor and no single public constructor with " + labels.size() + " parameters");
+		}
+		Class<?>[] parameterTypes = candidates[0].getParameterTypes();
+		MethodHandle[] readers = new MethodHandle[parameterTypes.length];
+		for (int i = 0 ; i < readers.length ; i++) {
+			readers[i] = ColumnReaders.reader(parameterTypes[i], i + 1);
+		}
+		MethodHandle constructor = MethodHandles.filterArguments(LOOKUP.unreflectConstructor(candidates[0]).asFixedArity(), 0, readers);
+		// all parameters are read from the same result set
+		return MethodHandles.permuteArguments(constructor, MethodType.methodType(type, ResultSet.class), new int[readers.length]).asType(MAPPER_TYPE);
+	}
+
+	private static String normalize(String name) {
+		return name.replace("_", "").toLowerCase(Locale.ROOT);
+	}
+
+	// parser for one sequence of column labels
+	private static final class ShapeParser<T> implements TupleParser<T> {
+		private final MethodHandle mapper;
+
+		ShapeParser(MethodHandle mapper) {
+			this.mapper = mapper;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T parse(ResultSet resultSet) throws SQLException {
+			try {
+				return (T) (Object) mapper.invokeExact(resultSet);
+			} catch (SQLException | RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private static final class Resolved<T> {
+		private final WeakReference<ResultSet> resultSet;
+		private final ShapeParser<T> parser;
+
+		Resolved(ResultSet resultSet, ShapeParser<T> parser) {
+			// weak, so that a parser kept in a field does not hold on to a closed result set
+			this.resultSet = new WeakReference<>(resultSet);
+			this.parser = parser;
+		}
+
+		boolean isFor(ResultSet resultSet) {
+			return this.resultSet.get() == resultSet;
+		}
+	}
+}
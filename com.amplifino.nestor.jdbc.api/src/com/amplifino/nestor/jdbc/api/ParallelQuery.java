@@ -0,0 +1,130 @@
+package com.amplifino.nestor.jdbc.api;
+
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * ParallelQuery splits a query in partitions on a numeric column, and executes the partitions concurrently,
+ * each on its own connection obtained from the DataSource.
+ * 
+ * The partition condition is inserted in the sql text where modulo or range is called:
+ * <pre>
+ * {@code
+ * 	long count = ParallelQuery.on(dataSource)
+ * 		.text("select id, amount from orders where status = ? and ")
+ * 		.parameters("OPEN")
+ * 		.modulo("id", 16)
+ * 		.parallelism(4)
+ * 		.select(r -> r.getLong(2), totals::add);
+ * } 
+ * </pre>
+ * Rows are delivered in no particular order. When a partition fails, partitions not yet started are skipped
+ * and running partitions stop at their next row, the first failure is rethrown to the caller.
+ * 
+ * After a terminal operation the ParallelQuery instance should be discarded.
+ */
+@ProviderType
+public interface ParallelQuery {
+	
+	/**
+	 * adds the argument to the sql text
+	 * @param sql sql text
+	 * @return this
+	 */
+	ParallelQuery text(String sql);
+	
+	/**
+	 * adds the arguments to the list of objects to bind to the sql statement, as for Query
+	 * @param parameter first bind parameter
+	 * @param parameters additional bind parameters
+	 * @return this
+	 */
+	ParallelQuery parameters(Object parameter, Object ... parameters);
+	
+	/**
+	 * partitions the query on the remainder of a non negative integer column,
+	 * inserting <code>mod(column, partitions) = ?</code> in the sql text
+	 * @param column the partition column, or an expression
+	 * @param partitions the number of partitions
+	 * @return this
+	 */
+	ParallelQuery modulo(String column, int partitions);
+	
+	/**
+	 * partitions the query on equal ranges of a numeric column,
+	 * inserting <code>column &gt;= ? and column &lt; ?</code> in the sql text.
+	 * Rows with values outside of the range are not selected.
+	 * @param column the partition column, or an expression
+	 * @param from the lower bound of the first partition, inclusive
+	 * @param to the upper bound of the last partition, exclusive
+	 * @param partitions the number of partitions
+	 * @return this
+	 */
+	ParallelQuery range(String column, long from, long to, int partitions);
+	
+	/**
+	 * sets the maximum number of partitions executed concurrently, 
+	 * by default the number of partitions bounded by the number of available processors
+	 * @param parallelism the maximum number of connections in use
+	 * @return this
+	 */
+	ParallelQuery parallelism(int parallelism);
+	
+	/**
+	 * sets the fetchSize to set on the PreparedStatement of every partition
+	 * @param fetchSize fetch size
+	 * @return this
+	 */
+	ParallelQuery fetchSize(int fetchSize);
+	
+	/**
+	 * sets the executor running the partitions, by default a new thread is started per concurrent partition.
+	 * The executor should be able to run parallelism tasks concurrently
+	 * @param executor the executor
+	 * @return this
+	 */
+	ParallelQuery executor(Executor executor);
+	
+	/**
+	 * executes the partitions, parse each row using parser and pass the result to the consumer.
+	 * The consumer is called concurrently by the threads executing the partitions, and must be thread safe.
+	 * Returns when all partitions completed.
+	 * 
+	 * This is a terminal operation.
+	 *  
+	 * @param parser converts resultset row to result type 
+	 * @param consumer consumes result type
+	 * @param<T> result type
+	 * @return the number of rows of all partitions
+	 * @throws UncheckedSQLException if a jdbc call threw a SQLException
+	 */
+	<T> long select(TupleParser<T> parser, Consumer<? super T> consumer);
+	
+	/**
+	 * starts executing the partitions and returns an unordered stream of the parsed rows.
+	 * Partitions wait when the consumer of the stream falls behind. 
+	 * Streams that may not be fully consumed must be closed, closing the stream cancels the remaining partitions.
+	 * 
+	 * This is a terminal operation.
+	 * 
+	 * @param parser converts resultset row to result type
+	 * @param <T> result type
+	 * @return a sequential stream of the parsed rows
+	 * @throws UncheckedSQLException if a jdbc call threw a SQLException, when consuming the stream
+	 */
+	<T> Stream<T> stream(TupleParser<T> parser);
+	
+	/**
+	 * creates a new ParallelQuery on the given DataSource
+	 * @param dataSource connection provider
+	 * @return a new query
+	 */
+	static ParallelQuery on(DataSource dataSource) {
+		return new DefaultParallelQuery(dataSource);
+	}
+}
@@ -0,0 +1,181 @@
+package com.amplifino.nestor.jdbc.api;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * binds a parameter with the setter for its type.
+ * OBJECT inspects the value on every call, the other binders are resolved once for a declared type.
+ * The numeric binders accept any Number, e.g. an Integer for a long parameter, and convert it as Number.longValue() does.
+ */
+enum ParameterBinder {
+	INTEGER(Types.INTEGER) {
+		@Override
+		void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setInt(index, number(index, value).intValue());
+		}
+	},
+	LONG(Types.BIGINT) {
+		@Override
+		void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setLong(index, number(index, value).longValue());
+		}
+	},
+	SHORT(Types.SMALLINT) {
+		@Override
+		void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setShort(index, number(index, value).shortValue());
+		}
+	},
+	DOUBLE(Types.DOUBLE) {
+		@Override
+		void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setDouble(index, number(index, value).doubleValue());
+		}
+	},
+	FLOAT(Types.REAL) {
+		@Override
+		void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setFloat(index, number(index, value).floatValue());
+		}
+	},
+	BOOLEAN(Types.BOOLEAN) {
+		@Override
+		void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setBoolean(index, (Boolean) value);
+		}
+	},
+	STRING(Types.VARCHAR) {
+		@Override
+		void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setString(index, (String) value);
+		}
+	},
+	BIGDECIMAL(Types.NUMERIC) {
+		@Override
+		void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+			Number number = number(index, value);
+			// the decimal string of other numbers keeps their exact value
+			statement.setBigDecimal(index, number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString()));
+		}
+	},
+	BYTES(Types.VARBINARY) {
+		@Override
+		void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setBytes(index, (byte[]) value);
+		}
+	},
+	INSTANT(Types.TIMESTAMP) {
+		@Override
+		void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setTimestamp(index, Timestamp.from((Instant) value));
+		}
+	},
+	LOCALDATETIME(Types.TIMESTAMP) {
+		@Override
+		void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setTimestamp(index, Timestamp.valueOf((LocalDateTime) value));
+		}
+	},
+	LOCALDATE(Types.DATE) {
+		@Override
+		void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setDate(index, Date.valueOf((LocalDate) value));
+		}
+	},
+	LOCALTIME(Types.TIME) {
+		@Override
+		void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setTime(index, Time.valueOf((LocalTime) value));
+		}
+	},
+	OBJECT(Types.OTHER) {
+		@Override
+		void set(PreparedStatement statement, int index, Object value) throws SQLException {
+			if (value == null) {
+				statement.setObject(index, value);
+			} else {
+				bind(statement, index, value);
+			}
+		}
+		
+		@Override
+		void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+			if (value instanceof Instant) {
+				INSTANT.bind(statement, index, value);
+			} else if (value instanceof LocalDateTime) {
+				LOCALDATETIME.bind(statement, index, value);
+			} else if (value instanceof LocalDate) {
+				LOCALDATE.bind(statement, index, value);
+			} else if (value instanceof LocalTime) {
+				LOCALTIME.bind(statement, index, value);
+			} else {
+				statement.setObject(index, value);
+			}
+		}
+	};
+	
+	private final int sqlType;
+	
+	private ParameterBinder(int sqlType) {
+		this.sqlType = sqlType;
+	}
+	
+	void set(PreparedStatement statement, int index, Object value) throws SQLException {
+		if (value == null) {
+			statement.setNull(index, sqlType);
+		} else {
+			bind(statement, index, value);
+		}
+	}
+	
+	abstract void bind(PreparedStatement statement, int index, Object value) throws SQLException;
+	
+	private static Number number(int index, Object value) {
+		if (value instanceof Number) {
+			return (Number) value;
+		}
+		throw new IllegalArgumentException("Parameter " + index + " expects a number, got " + value.getClass().getName());
+	}
+	
+	static ParameterBinder of(Class<?> type) {
+		if (type == Integer.class || type == int.class) {
+			return INTEGER;
+		} else if (type == Long.class || type == long.class) {
+			return LONG;
+		} else if (type == Short.class || type == short.class) {
+			return SHORT;
+		} else if (type == Double.class || type == double.class) {
+			return DOUBLE;
+		} else if (type == Float.class || type == float.class) {
+			return FLOAT;
+		} else if (type == Boolean.class || type == boolean.class) {
+			return BOOLEAN;
+		} else if (type == String.class) {
+			return STRING;
+		} else if (type == BigDecimal.class) {
+			return BIGDECIMAL;
+		} else if (type == byte[].class) {
+			return BYTES;
+		} else if (type == Instant.class) {
+			return INSTANT;
+		} else if (type == LocalDateTime.class) {
+			return LOCALDATETIME;
+		} else if (type == LocalDate.class) {
+			return LOCALDATE;
+		} else if (type == LocalTime.class) {
+			return LOCALTIME;
+		} else {
+			return OBJECT;
+		}
+	}
+}
@@ -5,6 +5,8 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
+
 import javax.sql.DataSource;
 
 import org.osgi.annotation.versioning.ProviderType;
@@ -68,6 +70,24 @@ public interface Query {
 	 */
 	Query fetchSize(int fetchSize);
 	
+	/**
+	 * sets the number of rows sent to the database per round trip by executeBatch and executeChunked.
+	 * By default executeBatch sends all rows in a single batch, executeChunked 1000 rows per batch.
+	 * @param batchSize rows per batch
+	 * @return this
+	 */
+	Query batchSize(int batchSize);
+	
+	/**
+	 * commits the connection after every batch executed by executeBatch or executeChunked,
+	 * so that a bulk load does not hold locks or undo for more than one batch.
+	 * A connection in auto commit mode is switched to manual commit for the duration of the load, 
+	 * and the failing batch is rolled back.
+	 * Inside a LocalTransaction the transaction is committed per batch, and rolls back the rows since the last commit on failure. 
+	 * @return this
+	 */
+	Query commitPerBatch();
+	
 	/**
 	 * executes the sql text and return a list obtained
 	 * by calling parser.parse for each row in the resultset.
@@ -100,6 +120,30 @@ public interface Query {
 	 */
 	<T> long select(TupleParser<T> parser, Consumer<T> consumer);
 	
+	/**
+	 * executes the sql text and returns a stream of the rows parsed by parser,
+	 * fetching rows from the open resultSet as the stream is consumed.
+	 * The statement, and the connection for a query on a DataSource, are closed when the stream is exhausted or closed.
+	 * Streams that may not be fully consumed must be closed, preferably with try-with-resources:
+	 * <pre>
+	 * {@code
+	 * 	try (Stream<String> names = Query.on(dataSource).text("select name from mytable").stream(r -> r.getString(1))) {
+	 * 		names.filter(name -> name.startsWith("A")).forEach(System.out::println);
+	 * 	}
+	 * }
+	 * </pre>
+	 * Unless a fetch size is set, rows are fetched 500 at a time. 
+	 * Some drivers only honor the fetch size outside auto commit mode, and read the whole resultSet otherwise.
+	 * 
+	 * This is a terminal operation.
+	 * 
+	 * @param parser converts resultset row to result type
+	 * @param <T> result type
+	 * @return a sequential stream of the parsed rows
+	 * @throws UncheckedSQLException if a jdbc call threw a SQLException, also when thrown while consuming the stream
+	 */
+	<T> Stream<T> stream(TupleParser<T> parser);
+	
 	/**
 	 * returns the result of parser.parse for the first row in the resultSet.
 	 * 
@@ -150,6 +194,37 @@ public interface Query {
 	 */
 	<T> int[] executeBatch(Iterable<? extends T> batch, Binder<? super T> binder);
 	
+	/**
+	 * execute the sql text for every element in values, calling binder.bind for each element,
+	 * in batches of batchSize rows.
+	 * Only one batch of rows is kept in the driver, and the update counts are summed,
+	 * so that loading any number of rows runs in constant memory.
+	 * 
+	 * this is a terminal operation.
+	 * 
+	 * @param values to process
+	 * @param binder bind element to statement
+	 * @param <T> element type
+	 * @return the total update count, statements reported as SUCCESS_NO_INFO count as one row
+	 * @throws UncheckedSQLException if a jdbc call threw a SQLException
+	 */
+	<T> long executeChunked(Iterable<? extends T> values, Binder<? super T> binder);
+	
+	/**
+	 * execute the sql text for every element of the stream, in batches of batchSize rows.
+	 * The stream is consumed, but not closed.
+	 * @see #executeChunked(Iterable, Binder)
+	 * 
+	 * this is a terminal operation.
+	 * 
+	 * @param values to process
+	 * @param binder bind element to statement
+	 * @param <T> element type
+	 * @return the total update count, statements reported as SUCCESS_NO_INFO count as one row
+	 * @throws UncheckedSQLException if a jdbc call threw a SQLException
+	 */
+	<T> long executeChunked(Stream<? extends T> values, Binder<? super T> binder);
+	
 	/**
 	 * exectues the sql text and
 	 * returns the value of parser.parse(statement.getGeneratedKey().next()).
@@ -1,33 +1,35 @@
 package com.amplifino.nestor.jdbc.api;
 
 import java.sql.Connection;
-import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.sql.Time;
-import java.sql.Timestamp;
-import java.time.Instant;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 final class QueryHandler  {
 		
 		private static final Logger logger = Logger.getLogger("com.amplifino.nestor.jdbc.api");
 		private static int traceMask = 0;
+		// rows per round trip when streaming, unless the query sets a fetch size
+		private static final int STREAM_FETCH_SIZE = 500;
+		// rows per round trip of executeChunked, unless the query sets a batch size
+		private static final int CHUNK_SIZE = 1000;
 		
 		private StringBuilder sqlBuilder = new StringBuilder();
 		private final List<Object> parameters = new ArrayList<>();
 		private long limit = Long.MAX_VALUE;
 		private int fetchSize = 0;
+		private int batchSize = 0;
+		private boolean commitPerBatch = false;
 		
 		QueryHandler text(String sql) {
 			sqlBuilder.append(sql);
@@ -48,6 +50,14 @@ final class QueryHandler  {
 			this.fetchSize = fetchSize;
 		}
 		
+		void batchSize(int batchSize) {
+			this.batchSize = batchSize;
+		}
+		
+		void commitPerBatch() {
+			this.commitPerBatch = true;
+		}
+		
 		<T> Optional<T> findFirst(Connection connection, TupleParser<T> parser) throws SQLException {			
 			try (PreparedStatement statement = connection.prepareStatement(sqlBuilder.toString())) {
 				bind(statement);
@@ -101,19 +111,7 @@ final class QueryHandler  {
 		}
 		
 		private void set(PreparedStatement statement, int offset, Object value) throws SQLException {
-			if (value == null) {
-				statement.setObject(offset, value);
-			} else if (value instanceof Instant) {
-				statement.setTimestamp(offset, Timestamp.from((Instant) value));
-			} else if (value instanceof LocalDateTime) {
-				statement.setTimestamp(offset, Timestamp.valueOf((LocalDateTime) value));
-			} else if (value instanceof LocalDate) {
-				statement.setDate(offset, Date.valueOf((LocalDate) value));
-			} else if (value instanceof LocalTime) {
-				statement.setTime(offset, Time.valueOf((LocalTime) value));
-			} else {
-				statement.setObject(offset, value);
-			}
+			ParameterBinder.OBJECT.set(statement, offset, value);
 		}
 
 		<T> long select(Connection connection, TupleParser<T> parser, Consumer<T> consumer) throws SQLException {
@@ -124,9 +122,10 @@ final class QueryHandler  {
 				bind(statement);
 				logExecution("select: ");
 				try (ResultSet resultSet = statement.executeQuery()) {
+					TupleParser<T> rowParser = MappingParser.bind(parser, resultSet);
 					long i = 0;
 					while(resultSet.next() && i++ < limit) {
-						consumer.accept(parser.parse(resultSet));
+						consumer.accept(rowParser.parse(resultSet));
 					}
 					logCount(i);
 					return i;
@@ -134,6 +133,21 @@ final class QueryHandler  {
 			}
 		}
 
+		<T> Stream<T> stream(Connection connection, boolean closeConnection, TupleParser<T> parser) throws SQLException {
+			PreparedStatement statement = connection.prepareStatement(sqlBuilder.toString());
+			try {
+				statement.setFetchSize(fetchSize > 0 ? fetchSize : STREAM_FETCH_SIZE);
+				bind(statement);
+				logExecution("stream: ");
+				ResultSet resultSet = statement.executeQuery();
+				ResultSetSpliterator<T> spliterator = new ResultSetSpliterator<>(connection, closeConnection, statement, resultSet, MappingParser.bind(parser, resultSet), limit);
+				return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+			} catch (SQLException | RuntimeException e) {
+				statement.close();
+				throw e;
+			}
+		}
+
 		<T> Optional<T> collect(Connection connection, TupleParser<T> supplier, TupleAccumulator<T> accumulator) throws SQLException {
 			try (PreparedStatement statement = connection.prepareStatement(sqlBuilder.toString())) {
 				if (fetchSize > 0) {
@@ -171,17 +185,71 @@ final class QueryHandler  {
 		}
 		
 		<T> int[] executeBatch(Connection connection, Iterable<T> values, Binder<? super T> binder) throws SQLException {
+			List<int[]> chunks = new ArrayList<>();
+			executeChunks(connection, values.iterator(), binder, batchSize > 0 ? batchSize : Integer.MAX_VALUE, chunks::add);
+			if (chunks.size() == 1) {
+				return chunks.get(0);
+			}
+			return chunks.stream().flatMapToInt(Arrays::stream).toArray();
+		}
+		
+		<T> long executeChunked(Connection connection, Iterator<T> values, Binder<? super T> binder) throws SQLException {
+			long[] rows = new long[1];
+			executeChunks(connection, values, binder, batchSize > 0 ? batchSize : CHUNK_SIZE, counts -> rows[0] += rows(counts));
+			return rows[0];
+		}
+		
+		// a driver that does not report the count of a statement in the batch returns SUCCESS_NO_INFO, count these as one row
+		private static long rows(int[] counts) {
+			long rows = 0;
+			for (int count : counts) {
+				rows += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+			}
+			return rows;
+		}
+		
+		private <T> void executeChunks(Connection connection, Iterator<T> values, Binder<? super T> binder, int chunkSize, Consumer<int[]> results) throws SQLException {
+			// commit per batch needs manual commit, restore auto commit afterwards
+			boolean manageAutoCommit = commitPerBatch && connection.getAutoCommit();
+			if (manageAutoCommit) {
+				connection.setAutoCommit(false);
+			}
+			boolean success = false;
 			try (PreparedStatement statement = connection.prepareStatement(sqlBuilder.toString())) {
-				int i = 0;
-				for (T value : values) {
-					binder.bind(statement, value);
+				int pending = 0;
+				while (values.hasNext()) {
+					binder.bind(statement, values.next());
 					statement.addBatch();
-					i++;
+					if (++pending == chunkSize) {
+						results.accept(executeChunk(connection, statement, pending));
+						pending = 0;
+					}
+				}
+				if (pending > 0) {
+					results.accept(executeChunk(connection, statement, pending));
+				}
+				success = true;
+			} finally {
+				if (manageAutoCommit) {
+					try {
+						if (!success) {
+							connection.rollback();
+						}
+					} finally {
+						connection.setAutoCommit(true);
+					}
 				}
-				logBatch(i);
-				return statement.executeBatch();
 			}
 		}
+		
+		private int[] executeChunk(Connection connection, PreparedStatement statement, int size) throws SQLException {
+			logBatch(size);
+			int[] counts = statement.executeBatch();
+			if (commitPerBatch) {
+				connection.commit();
+			}
+			return counts;
+		}
 
 		String text() {
 			return sqlBuilder.toString();
@@ -195,7 +263,7 @@ final class QueryHandler  {
 			this.parameters.addAll(parameters);
 		}
 		
-		private boolean loggingText() {
+		private static boolean loggingText() {
 			return (traceMask & 1) != 0;
 		}
 		
@@ -212,19 +280,28 @@ final class QueryHandler  {
 			}
 		}
 		
+		static void logExecution(String header, String sql, Object[] parameters) {
+			if (loggingText()) {
+				logger.info(header + sql);
+			}
+			if ((traceMask & 2) != 0 && parameters.length > 0) {
+				logger.info("Parameters " + Arrays.asList(parameters));
+			}
+		}
+		
 		private void logBatch(int count) {
 			if (loggingText()) {
 				logger.info("Batch size: " + count + " sql: " + sqlBuilder.toString());
 			}
 		}
 		
-		private void logCount(long count) {
+		static void logCount(long count) {
 			if (loggingCount()) {
 				logger.info("Fetched " + count + " row" + (count == 1 ? "" : "s"));
 			}
 		}
 		
-		private boolean loggingCount() {
+		private static boolean loggingCount() {
 			return (traceMask & 4) != 0;
 		}
 		
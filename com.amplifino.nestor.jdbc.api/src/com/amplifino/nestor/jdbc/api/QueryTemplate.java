@@ -0,0 +1,123 @@
+package com.amplifino.nestor.jdbc.api;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.Optional;
+
+import javax.sql.DataSource;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * QueryTemplate is an immutable, thread safe query with fixed sql text and typed bind parameters.
+ * 
+ * Where Query builds the sql text and inspects every parameter on each execution,
+ * a QueryTemplate resolves the binder for each parameter type once, and executions only supply the parameter values.
+ * Keep templates for hot queries in a field:
+ * <pre>
+ * {@code
+ * 	private final QueryTemplate byName = QueryTemplate.of("select id, name from mytable where name = ?", String.class);
+ * 	
+ * 	Optional<Integer> id = byName.findFirst(dataSource, r -> r.getInt(1), name);
+ * } 
+ * </pre>
+ * Every execution prepares the same sql text, so that a statement cache on the connection,
+ * e.g. that of a PoolDataSource created with a statementCacheSize, reuses the prepared statement.
+ * 
+ * Parameters of type Integer, Long, Short, Double, Float, Boolean, String, BigDecimal and byte[] (or the corresponding primitive types)
+ * are bound with the typed setter, the java.time types as for Query, other types with setObject.
+ * Numeric parameters accept any Number value, converted to the parameter type as by Number.intValue() and the like,
+ * or to a BigDecimal through its decimal string.
+ * Null values are bound with setNull.
+ */
+@ProviderType
+public interface QueryTemplate {
+
+	/**
+	 * executes the query and returns a list obtained by calling parser.parse for each row in the resultset.
+	 * @param connection the connection to use
+	 * @param parser converts resultset row to result type
+	 * @param values the bind parameter values, in the order of the parameter types
+	 * @param <T> result type
+	 * @return result list
+	 * @throws UncheckedSQLException if a jdbc call threw a SQLException
+	 * @throws IllegalArgumentException if the number of values does not match the number of parameter types,
+	 * or the value of a numeric parameter is not a Number
+	 */
+	<T> List<T> select(Connection connection, TupleParser<T> parser, Object... values);
+	
+	/**
+	 * executes the query on a connection obtained from the dataSource
+	 * @see #select(Connection, TupleParser, Object...)
+	 * @param dataSource connection provider
+	 * @param parser converts resultset row to result type
+	 * @param values the bind parameter values, in the order of the parameter types
+	 * @param <T> result type
+	 * @return result list
+	 */
+	<T> List<T> select(DataSource dataSource, TupleParser<T> parser, Object... values);
+
+	/**
+	 * executes the query and returns the result of parser.parse for the first row in the resultSet.
+	 * @param connection the connection to use
+	 * @param parser converts resultset row to result type
+	 * @param values the bind parameter values, in the order of the parameter types
+	 * @param <T> result type
+	 * @return an Optional containing the parsed first row, or Optional.empty() if resultSet was empty 
+	 * @throws UncheckedSQLException if a jdbc call threw a SQLException
+	 * @throws IllegalArgumentException if the number of values does not match the number of parameter types,
+	 * or the value of a numeric parameter is not a Number
+	 */
+	<T> Optional<T> findFirst(Connection connection, TupleParser<T> parser, Object... values);
+	
+	/**
+	 * executes the query on a connection obtained from the dataSource
+	 * @see #findFirst(Connection, TupleParser, Object...)
+	 * @param dataSource connection provider
+	 * @param parser converts resultset row to result type
+	 * @param values the bind parameter values, in the order of the parameter types
+	 * @param <T> result type
+	 * @return an Optional containing the parsed first row, or Optional.empty() if resultSet was empty 
+	 */
+	<T> Optional<T> findFirst(DataSource dataSource, TupleParser<T> parser, Object... values);
+	
+	/**
+	 * executes the sql text
+	 * @param connection the connection to use
+	 * @param values the bind parameter values, in the order of the parameter types
+	 * @return return value of statement.executeUpdate();
+	 * @throws UncheckedSQLException if a jdbc call threw a SQLException
+	 * @throws IllegalArgumentException if the number of values does not match the number of parameter types,
+	 * or the value of a numeric parameter is not a Number
+	 */
+	int executeUpdate(Connection connection, Object... values);
+	
+	/**
+	 * executes the sql text on a connection obtained from the dataSource
+	 * @see #executeUpdate(Connection, Object...)
+	 * @param dataSource connection provider
+	 * @param values the bind parameter values, in the order of the parameter types
+	 * @return return value of statement.executeUpdate();
+	 */
+	int executeUpdate(DataSource dataSource, Object... values);
+	
+	/**
+	 * @return the sql text
+	 */
+	String text();
+	
+	/**
+	 * @return the bind parameter types
+	 */
+	List<Class<?>> parameterTypes();
+	
+	/**
+	 * creates a new QueryTemplate
+	 * @param sql the sql text
+	 * @param parameterTypes the types of the bind parameters, in order of the bind markers
+	 * @return the new template
+	 */
+	static QueryTemplate of(String sql, Class<?> ... parameterTypes) {
+		return new DefaultQueryTemplate(sql, parameterTypes);
+	}
+}
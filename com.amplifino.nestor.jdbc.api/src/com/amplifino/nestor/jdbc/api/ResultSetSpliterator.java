@@ -0,0 +1,86 @@
+package com.amplifino.nestor.jdbc.api;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * spliterator fetching rows from an open result set as the stream advances.
+ * Closes the result set, the statement and optionally the connection when exhausted or closed.
+ */
+final class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+	private final Connection connection;
+	private final boolean closeConnection;
+	private final PreparedStatement statement;
+	private final ResultSet resultSet;
+	private final TupleParser<T> parser;
+	private final long limit;
+	private long count = 0;
+	private boolean closed = false;
+
+	ResultSetSpliterator(Connection connection, boolean closeConnection, PreparedStatement statement, ResultSet resultSet, TupleParser<T> parser, long limit) {
+		super(Long.MAX_VALUE, Spliterator.ORDERED);
+		this.connection = connection;
+		this.closeConnection = closeConnection;
+		this.statement = statement;
+		this.resultSet = resultSet;
+		this.parser = parser;
+		this.limit = limit;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		if (closed) {
+			return false;
+		}
+		T tuple;
+		try {
+			if (count >= limit || !resultSet.next()) {
+				close();
+				return false;
+			}
+			tuple = parser.parse(resultSet);
+		} catch (SQLException e) {
+			closeQuietly();
+			throw new UncheckedSQLException(e);
+		}
+		count++;
+		action.accept(tuple);
+		return true;
+	}
+
+	void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		QueryHandler.logCount(count);
+		try {
+			try {
+				try {
+					resultSet.close();
+				} finally {
+					statement.close();
+				}
+			} finally {
+				if (closeConnection) {
+					connection.close();
+				}
+			}
+		} catch (SQLException e) {
+			throw new UncheckedSQLException(e);
+		}
+	}
+
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (UncheckedSQLException e) {
+		}
+	}
+}
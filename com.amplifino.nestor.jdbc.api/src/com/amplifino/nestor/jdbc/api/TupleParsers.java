@@ -0,0 +1,53 @@
+package com.amplifino.nestor.jdbc.api;
+
+import java.util.Objects;
+
+/**
+ * TupleParsers provides generated TupleParsers, mapping a row on a class instead of a hand written lambda.
+ * <pre>
+ * {@code
+ * 	List<Role> roles = Query.on(dataSource)
+ * 		.text("select name, type from roles")
+ * 		.select(TupleParsers.of(Role.class));
+ * }
+ * </pre>
+ * The mapping depends on the class:
+ * <ul>
+ * <li>String, BigDecimal, byte[], the java.time types, enums and the primitive and wrapper types map on the first column.</li>
+ * <li>A class with a public no-arg constructor is created with that constructor and a column sets the property with the same name,
+ * through a public setter or a public non final field.
+ * Names are compared ignoring case and underscores, so that column FIRST_NAME sets property firstName. Unmatched columns are ignored.</li>
+ * <li>Otherwise the class needs a single public constructor with a parameter per column, the columns are passed in order.</li>
+ * </ul>
+ * The class and its members must be public.
+ * Columns are read with the getter for the target type, as QueryTemplate binds parameters,
+ * a null column yields null for a wrapper type and the default value for a primitive type.
+ *
+ * The mapping is resolved once per class and sequence of column labels into a single method handle,
+ * parsing a row uses no reflection and no intermediate map.
+ * The returned parsers are thread safe, keep them in a field or obtain them on every query.
+ */
+public final class TupleParsers {
+
+	private static final ClassValue<TupleParser<?>> PARSERS = new ClassValue<TupleParser<?>>() {
+		@Override
+		protected TupleParser<?> computeValue(Class<?> type) {
+			return new MappingParser<>(type);
+		}
+	};
+
+	private TupleParsers() {
+	}
+
+	/**
+	 * returns the TupleParser mapping a row on the given class
+	 * @param type the result type
+	 * @param <T> result type
+	 * @return the parser, the same instance for every call with the same class
+	 * @throws IllegalArgumentException when parsing, if the result set columns do not map on the class
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> TupleParser<T> of(Class<T> type) {
+		return (TupleParser<T>) PARSERS.get(Objects.requireNonNull(type));
+	}
+}
@@ -2,7 +2,7 @@
  * Fluent API for Jdbc
  */
 
-@Version("1.4.0")
+@Version("1.5.0")
 package com.amplifino.nestor.jdbc.api;
 
 import org.osgi.annotation.versioning.Version;
@@ -1,5 +1,6 @@
 package com.amplifino.nestor.jdbc.api;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.AbstractMap;
@@ -7,8 +8,10 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.h2.jdbcx.JdbcDataSource;
 import org.junit.Assert;
@@ -130,6 +133,212 @@ public class QueryTest {
 		Assert.assertEquals(3, selection.size());
 	}
 	
+	@Test
+	public void testStream() {
+		final int rowCount = 100;
+		Query.on(connection)
+			.text("insert into test (id, name) values(?,?) ")
+			.executeBatch(
+				IntStream.range(1, rowCount + 1).boxed().collect(Collectors.toList()),
+				(statement, i) -> {
+					statement.setInt(1, i);
+					statement.setString(2, "Entry" + i);
+				});
+		try (Stream<Integer> ids = Query.on(connection).text("select id from test order by id").fetchSize(10).stream(r -> r.getInt(1))) {
+			Assert.assertEquals(rowCount * (rowCount + 1) / 2, ids.mapToInt(Integer::intValue).sum());
+		}
+		try (Stream<Integer> ids = Query.on(connection).text("select id from test order by id").limit(20).stream(r -> r.getInt(1))) {
+			Assert.assertEquals(Arrays.asList(1, 2, 3), ids.filter(i -> i <= 3).collect(Collectors.toList()));
+		}
+		// a partially consumed stream releases its statement on close, the connection remains usable
+		try (Stream<Integer> ids = Query.on(connection).text("select id from test").stream(r -> r.getInt(1))) {
+			Assert.assertTrue(ids.findFirst().isPresent());
+		}
+		Assert.assertEquals(rowCount, select().size());
+	}
+	
+	@Test
+	public void testChunked() {
+		final int rowCount = 2500;
+		long rows = Query.on(connection)
+			.text("insert into test (id, name) values(?,?) ")
+			.batchSize(1000)
+			.executeChunked(IntStream.range(0, rowCount).boxed(), (statement, i) -> {
+				statement.setInt(1, i);
+				statement.setString(2, "Entry" + i);
+			});
+		Assert.assertEquals(rowCount, rows);
+		Assert.assertEquals(rowCount, select().size());
+		int[] counts = Query.on(connection)
+			.text("update test set name = ? where id = ?")
+			.batchSize(1000)
+			.executeBatch(IntStream.range(0, rowCount).boxed().collect(Collectors.toList()), (statement, i) -> {
+				statement.setString(1, "Updated" + i);
+				statement.setInt(2, i);
+			});
+		Assert.assertEquals(rowCount, counts.length);
+	}
+	
+	@Test
+	public void testCommitPerBatch() throws SQLException {
+		try {
+			// the duplicate key fails the second batch
+			Query.on(connection)
+				.text("insert into test (id, name) values(?,?) ")
+				.batchSize(100)
+				.commitPerBatch()
+				.executeChunked(IntStream.range(0, 250).map(i -> i == 150 ? 0 : i).boxed(), (statement, i) -> {
+					statement.setInt(1, i);
+					statement.setString(2, "Entry" + i);
+				});
+			Assert.fail();
+		} catch (UncheckedSQLException e) {
+		}
+		Assert.assertTrue(connection.getAutoCommit());
+		Assert.assertEquals(100, select().size());
+	}
+	
+	@Test
+	public void testParallel() {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setUrl("jdbc:h2:mem:parallel;DB_CLOSE_DELAY=-1");
+		Query.on(dataSource).text("create table parallel (id integer not null primary key, amount integer not null)").executeUpdate();
+		try {
+			final int rowCount = 1000;
+			Query.on(dataSource)
+				.text("insert into parallel (id, amount) values(?,?)")
+				.executeChunked(IntStream.range(0, rowCount).boxed(), (statement, i) -> {
+					statement.setInt(1, i);
+					statement.setInt(2, i % 10);
+				});
+			LongAdder total = new LongAdder();
+			long rows = ParallelQuery.on(dataSource)
+				.text("select amount from parallel where amount > ? and ")
+				.parameters(0)
+				.modulo("id", 7)
+				.parallelism(3)
+				.select(r -> r.getLong(1), total::add);
+			Assert.assertEquals(900, rows);
+			Assert.assertEquals(4500, total.sum());
+			try (Stream<Integer> ids = ParallelQuery.on(dataSource)
+					.text("select id from parallel where ")
+					.range("id", 0, rowCount, 6)
+					.stream(r -> r.getInt(1))) {
+				Assert.assertEquals(rowCount * (rowCount - 1) / 2, ids.mapToInt(Integer::intValue).sum());
+			}
+			try {
+				ParallelQuery.on(dataSource)
+					.text("select id from parallel where ")
+					.modulo("id", 4)
+					.select(r -> { 
+						if (r.getInt(1) == 500) {
+							throw new SQLException("failing partition");
+						}
+						return r.getInt(1);
+					}, id -> {});
+				Assert.fail();
+			} catch (UncheckedSQLException e) {
+				Assert.assertEquals("failing partition", e.getCause().getMessage());
+			}
+		} finally {
+			Query.on(dataSource).text("drop table parallel").executeUpdate();
+		}
+	}
+	
+	@Test
+	public void testTemplate() {
+		QueryTemplate insert = QueryTemplate.of("insert into test (id, name) values(?,?)", int.class, String.class);
+		QueryTemplate byId = QueryTemplate.of("select name from test where id = ?", Integer.class);
+		IntStream.range(1, 11).forEach(i -> Assert.assertEquals(1, insert.executeUpdate(connection, i, "Entry" + i)));
+		Assert.assertEquals("Entry5", byId.findFirst(connection, r -> r.getString(1), 5).get());
+		Assert.assertFalse(byId.findFirst(connection, r -> r.getString(1), 11).isPresent());
+		Assert.assertFalse(byId.findFirst(connection, r -> r.getString(1), (Object) null).isPresent());
+		Assert.assertEquals(10, QueryTemplate.of("select id from test").select(connection, r -> r.getInt(1)).size());
+		try {
+			byId.findFirst(connection, r -> r.getString(1));
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+		// numeric parameters convert any Number
+		QueryTemplate byLongId = QueryTemplate.of("select name from test where id = ?", long.class);
+		Assert.assertEquals("Entry7", byLongId.findFirst(connection, r -> r.getString(1), 7).get());
+		Assert.assertEquals("Entry8", byId.findFirst(connection, r -> r.getString(1), 8L).get());
+		try {
+			byId.findFirst(connection, r -> r.getString(1), "8");
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+		QueryTemplate byDecimalId = QueryTemplate.of("select name from test where id = ?", BigDecimal.class);
+		Assert.assertEquals("Entry3", byDecimalId.findFirst(connection, r -> r.getString(1), new BigDecimal("3")).get());
+		Assert.assertEquals("Entry4", byDecimalId.findFirst(connection, r -> r.getString(1), 4).get());
+		Assert.assertEquals("Entry6", byDecimalId.findFirst(connection, r -> r.getString(1), 6.0).get());
+		Assert.assertFalse(byDecimalId.findFirst(connection, r -> r.getString(1), 6.5f).isPresent());
+		try {
+			byDecimalId.findFirst(connection, r -> r.getString(1), "4");
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+	
+	@Test
+	public void testTupleParsers() {
+		QueryTemplate insert = QueryTemplate.of("insert into test (id, name) values(?,?)", int.class, String.class);
+		IntStream.range(1, 4).forEach(i -> insert.executeUpdate(connection, i, "Entry" + i));
+		List<Bean> beans = Query.on(connection)
+			.text("select id, name as first_name, 'x' as extra from test order by id")
+			.select(TupleParsers.of(Bean.class));
+		Assert.assertEquals(3, beans.size());
+		Assert.assertEquals(2, beans.get(1).getId());
+		Assert.assertEquals("Entry2", beans.get(1).firstName);
+		Bean idOnly = Query.on(connection)
+			.text("select id from test where id = 3")
+			.findFirst(TupleParsers.of(Bean.class)).get();
+		Assert.assertEquals(3, idOnly.getId());
+		Assert.assertNull(idOnly.firstName);
+		List<Value> values = Query.on(connection)
+			.text("select id, name from test order by id")
+			.select(TupleParsers.of(Value.class));
+		Assert.assertEquals(Integer.valueOf(1), values.get(0).id);
+		Assert.assertEquals("Entry3", values.get(2).name);
+		Assert.assertEquals(Arrays.asList("Entry1", "Entry2", "Entry3"), Query.on(connection)
+			.text("select name from test order by id")
+			.select(TupleParsers.of(String.class)));
+		Assert.assertNull(Query.on(connection)
+			.text("select max(id) from test where id > 3")
+			.select(TupleParsers.of(Integer.class)).get(0));
+		Assert.assertSame(TupleParsers.of(Bean.class), TupleParsers.of(Bean.class));
+		try {
+			Query.on(connection)
+				.text("select id, name, id from test")
+				.select(TupleParsers.of(Value.class));
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+	
+	public static class Bean {
+		private int id;
+		public String firstName;
+		
+		public int getId() {
+			return id;
+		}
+		
+		public void setId(int id) {
+			this.id = id;
+		}
+	}
+	
+	public static final class Value {
+		private final Integer id;
+		private final String name;
+		
+		public Value(Integer id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+	}
+	
 	private List<Map.Entry<Integer, String>> select() {
 		return Query.on(connection)
 			.text("select id, name from test")
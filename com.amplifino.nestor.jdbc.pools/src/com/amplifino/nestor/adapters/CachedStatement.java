@@ -0,0 +1,161 @@
+package com.amplifino.nestor.adapters;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.amplifino.nestor.jdbc.wrappers.PreparedStatementWrapper;
+
+/**
+ * prepared statement returned to its cache on close.
+ * Options changed by the user are restored to the driver defaults on release,
+ * statements with options that cannot be read back are closed instead of cached.
+ */
+final class CachedStatement extends PreparedStatementWrapper {
+
+	private final PreparedStatement statement;
+	private final StatementCachingConnection cache;
+	private final StatementCachingConnection.Key key;
+	private boolean reusable = true;
+	// driver defaults, saved before the first change
+	private Integer fetchSize;
+	private Integer fetchDirection;
+	private Integer maxRows;
+	private Integer maxFieldSize;
+	private Integer queryTimeout;
+
+	CachedStatement(PreparedStatement statement, StatementCachingConnection cache, StatementCachingConnection.Key key) {
+		super(statement);
+		this.statement = statement;
+		this.cache = cache;
+		this.key = key;
+	}
+
+	StatementCachingConnection.Key key() {
+		return key;
+	}
+
+	@Override
+	public void close() throws SQLException {
+		cache.release(this);
+	}
+
+	void closeStatement() throws SQLException {
+		statement.close();
+	}
+
+	/**
+	 * prepares the statement for the next user
+	 * @return false if the statement must be closed instead
+	 */
+	boolean reset() {
+		if (!reusable) {
+			return false;
+		}
+		try {
+			if (statement.isClosed()) {
+				return false;
+			}
+			// the next execute would close it anyway, but release the database cursor now
+			ResultSet resultSet = statement.getResultSet();
+			if (resultSet != null) {
+				resultSet.close();
+			}
+			statement.clearParameters();
+			statement.clearBatch();
+			statement.clearWarnings();
+			if (fetchSize != null) {
+				statement.setFetchSize(fetchSize);
+			}
+			if (fetchDirection != null) {
+				statement.setFetchDirection(fetchDirection);
+			}
+			if (maxRows != null) {
+				statement.setMaxRows(maxRows);
+			}
+			if (maxFieldSize != null) {
+				statement.setMaxFieldSize(maxFieldSize);
+			}
+			if (queryTimeout != null) {
+				statement.setQueryTimeout(queryTimeout);
+			}
+			return true;
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public void setFetchSize(int rows) throws SQLException {
+		if (fetchSize == null) {
+			fetchSize = statement.getFetchSize();
+		}
+		super.setFetchSize(rows);
+	}
+
+	@Override
+	public void setFetchDirection(int direction) throws SQLException {
+		if (fetchDirection == null) {
+			fetchDirection = statement.getFetchDirection();
+		}
+		super.setFetchDirection(direction);
+	}
+
+	@Override
+	public void setMaxRows(int max) throws SQLException {
+		if (maxRows == null) {
+			maxRows = statement.getMaxRows();
+		}
+		super.setMaxRows(max);
+	}
+
+	@Override
+	public void setLargeMaxRows(long max) throws SQLException {
+		reusable = false;
+		super.setLargeMaxRows(max);
+	}
+
+	@Override
+	public void setMaxFieldSize(int max) throws SQLException {
+		if (maxFieldSize == null) {
+			maxFieldSize = statement.getMaxFieldSize();
+		}
+		super.setMaxFieldSize(max);
+	}
+
+	@Override
+	public void setQueryTimeout(int seconds) throws SQLException {
+		if (queryTimeout == null) {
+			queryTimeout = statement.getQueryTimeout();
+		}
+		super.setQueryTimeout(seconds);
+	}
+
+	@Override
+	public void setCursorName(String name) throws SQLException {
+		reusable = false;
+		super.setCursorName(name);
+	}
+
+	@Override
+	public void setEscapeProcessing(boolean enable) throws SQLException {
+		reusable = false;
+		super.setEscapeProcessing(enable);
+	}
+
+	@Override
+	public void setPoolable(boolean poolable) throws SQLException {
+		reusable &= poolable;
+		super.setPoolable(poolable);
+	}
+
+	@Override
+	public void closeOnCompletion() throws SQLException {
+		reusable = false;
+		super.closeOnCompletion();
+	}
+
+	void discard() {
+		reusable = false;
+	}
+}
@@ -6,24 +6,31 @@ import javax.sql.ConnectionPoolDataSource;
 import javax.sql.DataSource;
 import javax.sql.PooledConnection;
 
+import com.amplifino.counters.Counters;
+import com.amplifino.counters.Counts;
+import com.amplifino.counters.CountsSupplier;
 import com.amplifino.nestor.jdbc.wrappers.CommonDataSourceWrapper;
 
 /**
- * turns a DataSource into a ConnectionPoolDataSource
+ * turns a DataSource into a ConnectionPoolDataSource.
+ * Optionally caches prepared statements per physical connection, counting the cache hits and misses using StatementCacheStats.
  *
  */
-public final class ConnectionPoolDataSourceAdapter extends CommonDataSourceWrapper implements ConnectionPoolDataSource {
+public final class ConnectionPoolDataSourceAdapter extends CommonDataSourceWrapper implements ConnectionPoolDataSource, CountsSupplier {
 
 	private final DataSource dataSource;
+	private final int statementCacheSize;
+	private final Counters<StatementCacheStats> counters = Counters.of(StatementCacheStats.class);
 	
-	private ConnectionPoolDataSourceAdapter(DataSource dataSource) {
+	private ConnectionPoolDataSourceAdapter(DataSource dataSource, int statementCacheSize) {
 		super(dataSource);
 		this.dataSource = dataSource;
+		this.statementCacheSize = statementCacheSize;
 	}
 
 	@Override
 	public PooledConnection getPooledConnection() throws SQLException {
-		return PooledConnectionAdapter.on(dataSource.getConnection());
+		return PooledConnectionAdapter.on(dataSource.getConnection(), statementCacheSize, counters);
 	}
 
 	@Override
@@ -31,8 +38,23 @@ public final class ConnectionPoolDataSourceAdapter extends CommonDataSourceWrapp
 		throw new UnsupportedOperationException();
 	}
 	
+	@Override
+	public Counts counts() {
+		return counters.counts();
+	}
+	
 	static public ConnectionPoolDataSource on(DataSource dataSource) {
-		return new ConnectionPoolDataSourceAdapter(dataSource);
+		return on(dataSource, 0);
+	}
+	
+	/**
+	 * returns a ConnectionPoolDataSource caching prepared statements
+	 * @param dataSource the DataSource providing the physical connections
+	 * @param statementCacheSize the maximum number of idle prepared statements per physical connection, 0 to disable caching
+	 * @return the adapter
+	 */
+	static public ConnectionPoolDataSource on(DataSource dataSource, int statementCacheSize) {
+		return new ConnectionPoolDataSourceAdapter(dataSource, statementCacheSize);
 	}
 
 }
@@ -4,19 +4,28 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import javax.sql.ConnectionEvent;
 import javax.sql.ConnectionEventListener;
 import javax.sql.PooledConnection;
 import javax.sql.StatementEventListener;
 
+import com.amplifino.counters.Counters;
 import com.amplifino.nestor.jdbc.wrappers.ConnectionHandle;
+import com.amplifino.nestor.jdbc.wrappers.SqlConsumer;
 
 class PooledConnectionAdapter implements PooledConnection {
 
 	private final Connection connection;
 	private final List<ConnectionEventListener> listeners = new CopyOnWriteArrayList<>();
+	private final List<StatementEventListener> statementEventListeners = new CopyOnWriteArrayList<>();
 	private volatile boolean inUse;
+	private ConnectionHandle handle;
+	// created once, so that a borrow release cycle only allocates the handle
+	private final SqlConsumer<Connection> onClose = this::handleClosed;
+	private final ConnectionEvent closedEvent = new ConnectionEvent(this);
+	private final Consumer<ConnectionEventListener> fireClosed = listener -> listener.connectionClosed(closedEvent);
 	
 	private PooledConnectionAdapter(Connection connection) {
 		this.connection = connection;
@@ -28,7 +37,7 @@ class PooledConnectionAdapter implements PooledConnection {
 		if (inUse) {
 			throw new SQLException("Outstanding connection");
 		}
-		Connection handle = new ConnectionHandle(connection, this::handleClosed);
+		handle = new ConnectionHandle(connection, onClose, this, statementEventListeners);
 		inUse = true;
 		return handle;
 	}
@@ -50,22 +59,44 @@ class PooledConnectionAdapter implements PooledConnection {
 
 	@Override
 	public void addStatementEventListener(StatementEventListener listener) {
-		throw new UnsupportedOperationException();
+		statementEventListeners.add(listener);
 	}
 
 	@Override
 	public void removeStatementEventListener(StatementEventListener listener) {
-		throw new UnsupportedOperationException();
+		statementEventListeners.remove(listener);
 	}
 	
 	private void handleClosed(Connection connection) throws SQLException {
-		inUse = false;
-		ConnectionEvent event = new ConnectionEvent(this);
-		listeners.forEach(listener -> listener.connectionClosed(event));
-		connection.setAutoCommit(true);			
+		ConnectionHandle closed = handle;
+		handle = null;
+		// restore the session state before the connection is returned to the pool
+		try {
+			if (closed != null) {
+				closed.resetState();
+			}
+		} catch (SQLException e) {
+			ConnectionEvent errorEvent = new ConnectionEvent(this, e);
+			listeners.forEach(listener -> listener.connectionErrorOccurred(errorEvent));
+			throw e;
+		} finally {
+			inUse = false;
+			listeners.forEach(fireClosed);
+		}
 	}
 	
 	static PooledConnection on(Connection connection) {
 		return new PooledConnectionAdapter(connection);
 	}
+	
+	static PooledConnection on(Connection connection, int statementCacheSize, Counters<StatementCacheStats> counters) {
+		if (statementCacheSize <= 0) {
+			return on(connection);
+		}
+		StatementCachingConnection cachingConnection = new StatementCachingConnection(connection, statementCacheSize, counters);
+		PooledConnection pooledConnection = new PooledConnectionAdapter(cachingConnection);
+		// statements that failed are not returned to the cache
+		pooledConnection.addStatementEventListener(cachingConnection);
+		return pooledConnection;
+	}
 }
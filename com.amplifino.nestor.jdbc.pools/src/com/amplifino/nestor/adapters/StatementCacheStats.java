@@ -0,0 +1,14 @@
+package com.amplifino.nestor.adapters;
+
+/**
+ * Enumeration used for prepared statement cache Counts.
+ * HITS counts the prepares served from the cache, MISSES the prepares sent to the driver,
+ * EVICTIONS the least recently used statements closed to make room,
+ * DISCARDS the statements closed on release, because an equal statement was already cached or the statement could not be reset.
+ */
+public enum StatementCacheStats {
+	HITS,
+	MISSES,
+	EVICTIONS,
+	DISCARDS;
+}
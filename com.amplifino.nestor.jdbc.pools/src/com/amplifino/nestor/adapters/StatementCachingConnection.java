@@ -0,0 +1,176 @@
+package com.amplifino.nestor.adapters;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.sql.StatementEvent;
+import javax.sql.StatementEventListener;
+
+import com.amplifino.counters.Counters;
+import com.amplifino.nestor.jdbc.wrappers.ConnectionWrapper;
+
+/**
+ * physical connection keeping a least recently used cache of idle prepared statements.
+ * Statements prepared with the same sql text and options are served from the cache,
+ * closing such a statement returns it to the cache.
+ * Statements prepared with column indexes or names, and callable statements are not cached.
+ * Statements reported in a statement error event are closed instead of cached.
+ */
+final class StatementCachingConnection extends ConnectionWrapper implements StatementEventListener {
+
+	private final Connection connection;
+	private final int maxSize;
+	private final Counters<StatementCacheStats> counters;
+	private final Map<Key, CachedStatement> idle = new LinkedHashMap<>(16, 0.75f, true);
+	private boolean closed = false;
+
+	StatementCachingConnection(Connection connection, int maxSize, Counters<StatementCacheStats> counters) {
+		super(connection, Connection::close);
+		this.connection = connection;
+		this.maxSize = maxSize;
+		this.counters = counters;
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return prepare(new Key(sql, Statement.NO_GENERATED_KEYS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, 0));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		return prepare(new Key(sql, autoGeneratedKeys, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, 0));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return prepare(new Key(sql, Statement.NO_GENERATED_KEYS, resultSetType, resultSetConcurrency, 0));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return prepare(new Key(sql, Statement.NO_GENERATED_KEYS, resultSetType, resultSetConcurrency, resultSetHoldability));
+	}
+
+	private PreparedStatement prepare(Key key) throws SQLException {
+		CachedStatement statement;
+		synchronized (this) {
+			statement = idle.remove(key);
+		}
+		if (statement != null) {
+			counters.increment(StatementCacheStats.HITS);
+			return statement;
+		}
+		counters.increment(StatementCacheStats.MISSES);
+		return new CachedStatement(key.prepare(connection), this, key);
+	}
+
+	void release(CachedStatement statement) throws SQLException {
+		CachedStatement evicted = null;
+		synchronized (this) {
+			if (!closed && statement.reset() && !idle.containsKey(statement.key())) {
+				idle.put(statement.key(), statement);
+				if (idle.size() <= maxSize) {
+					return;
+				}
+				Iterator<CachedStatement> iterator = idle.values().iterator();
+				evicted = iterator.next();
+				iterator.remove();
+			}
+		}
+		if (evicted == null) {
+			counters.increment(StatementCacheStats.DISCARDS);
+			statement.closeStatement();
+		} else {
+			counters.increment(StatementCacheStats.EVICTIONS);
+			evicted.closeStatement();
+		}
+	}
+
+	@Override
+	public void statementClosed(StatementEvent event) {
+	}
+
+	@Override
+	public void statementErrorOccurred(StatementEvent event) {
+		if (event.getStatement() instanceof CachedStatement) {
+			((CachedStatement) event.getStatement()).discard();
+		}
+	}
+
+	@Override
+	public void close() throws SQLException {
+		List<CachedStatement> statements;
+		synchronized (this) {
+			closed = true;
+			statements = new ArrayList<>(idle.values());
+			idle.clear();
+		}
+		for (CachedStatement statement : statements) {
+			try {
+				statement.closeStatement();
+			} catch (SQLException e) {
+			}
+		}
+		super.close();
+	}
+
+	static final class Key {
+		private final String sql;
+		private final int autoGeneratedKeys;
+		private final int resultSetType;
+		private final int resultSetConcurrency;
+		// 0 if not specified
+		private final int resultSetHoldability;
+
+		private Key(String sql, int autoGeneratedKeys, int resultSetType, int resultSetConcurrency, int resultSetHoldability) {
+			this.sql = Objects.requireNonNull(sql);
+			this.autoGeneratedKeys = autoGeneratedKeys;
+			this.resultSetType = resultSetType;
+			this.resultSetConcurrency = resultSetConcurrency;
+			this.resultSetHoldability = resultSetHoldability;
+		}
+
+		private PreparedStatement prepare(Connection connection) throws SQLException {
+			if (autoGeneratedKeys != Statement.NO_GENERATED_KEYS) {
+				return connection.prepareStatement(sql, autoGeneratedKeys);
+			} else if (resultSetHoldability != 0) {
+				return connection.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+			} else if (resultSetType != ResultSet.TYPE_FORWARD_ONLY || resultSetConcurrency != ResultSet.CONCUR_READ_ONLY) {
+				return connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+			} else {
+				return connection.prepareStatement(sql);
+			}
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key o = (Key) other;
+			return sql.equals(o.sql) && autoGeneratedKeys == o.autoGeneratedKeys && resultSetType == o.resultSetType &&
+				resultSetConcurrency == o.resultSetConcurrency && resultSetHoldability == o.resultSetHoldability;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = sql.hashCode();
+			hash = 31 * hash + autoGeneratedKeys;
+			hash = 31 * hash + resultSetType;
+			hash = 31 * hash + resultSetConcurrency;
+			return 31 * hash + resultSetHoldability;
+		}
+	}
+}
@@ -4,20 +4,23 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.sql.ConnectionEvent;
 import javax.sql.ConnectionEventListener;
 import javax.sql.PooledConnection;
+import javax.sql.StatementEvent;
 import javax.sql.StatementEventListener;
 import javax.sql.XAConnection;
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
 
-class XAConnectionAdapter implements XAConnection , ConnectionEventListener, XAResource {
+class XAConnectionAdapter implements XAConnection , ConnectionEventListener, StatementEventListener, XAResource {
 
 	private final PooledConnection pooledConnection;
 	private final List<ConnectionEventListener> connectionEventListeners = new ArrayList<>();
+	private final List<StatementEventListener> statementEventListeners = new CopyOnWriteArrayList<>();
 	private Connection connection;
 	private Xid xid;
 	
@@ -49,14 +52,31 @@ class XAConnectionAdapter implements XAConnection , ConnectionEventListener, XAR
 	}
 
 	@Override
-	public void addStatementEventListener(StatementEventListener listener) {
-		throw new UnsupportedOperationException();
+	public synchronized void addStatementEventListener(StatementEventListener listener) {
+		// only listen to the pooled connection when needed
+		if (statementEventListeners.isEmpty()) {
+			pooledConnection.addStatementEventListener(this);
+		}
+		statementEventListeners.add(listener);
+	}
 
+	@Override
+	public synchronized void removeStatementEventListener(StatementEventListener listener) {
+		if (statementEventListeners.remove(listener) && statementEventListeners.isEmpty()) {
+			pooledConnection.removeStatementEventListener(this);
+		}
 	}
 
 	@Override
-	public void removeStatementEventListener(StatementEventListener listener) {
-		throw new UnsupportedOperationException();
+	public void statementClosed(StatementEvent event) {
+		StatementEvent wrappedEvent = new StatementEvent(this, event.getStatement());
+		statementEventListeners.forEach(listener -> listener.statementClosed(wrappedEvent));
+	}
+
+	@Override
+	public void statementErrorOccurred(StatementEvent event) {
+		StatementEvent wrappedEvent = new StatementEvent(this, event.getStatement(), event.getSQLException());
+		statementEventListeners.forEach(listener -> listener.statementErrorOccurred(wrappedEvent));
 	}
 
 	@Override
@@ -7,7 +7,7 @@
  * From XADataSource to ConnectionPoolDataSource
  * 
  */
-@Version("1.1.0")
+@Version("1.2.0")
 package com.amplifino.nestor.adapters;
 
 import org.osgi.annotation.versioning.Version;
\ No newline at end of file
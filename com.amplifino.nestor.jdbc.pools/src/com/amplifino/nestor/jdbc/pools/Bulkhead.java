@@ -0,0 +1,329 @@
+package com.amplifino.nestor.jdbc.pools;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * the partitions of a PoolDataSource and the quota they share.
+ * 
+ * The connections not reserved by any partition form the surplus.
+ * A borrower exceeding its partition's reservation takes from the surplus, if its partition is below the limit.
+ * Blocked borrowers wait on a condition, async borrowers are queued and admitted by the thread releasing quota.
+ */
+final class Bulkhead {
+
+	private final PoolDataSource pool;
+	private final ReentrantLock lock = new ReentrantLock(true);
+	private final Condition available = lock.newCondition();
+	private final Map<String, Partition> partitions = new LinkedHashMap<>();
+	private final List<ThreadRule> rules = new ArrayList<>();
+	private Partition defaultPartition;
+	private long maxWaitNanos = -1;
+	// async borrow timeouts, null until needed unless a scheduler is configured
+	private ScheduledExecutorService scheduler;
+	private boolean ownsScheduler = false;
+	// guarded by lock
+	private int surplus;
+	private int surplusInUse = 0;
+	private final Deque<AsyncWaiter> asyncWaiters = new ArrayDeque<>();
+	// written while holding the lock
+	private volatile boolean closed = false;
+
+	Bulkhead(PoolDataSource pool) {
+		this.pool = pool;
+	}
+
+	void partition(String tag, int reserved, int limit) {
+		if (reserved < 0 || limit <= 0 || reserved > limit) {
+			throw new IllegalArgumentException("Invalid quota for partition " + tag + " reserved: " + reserved + " limit: " + limit);
+		}
+		partitions.put(tag, new Partition(pool, this, tag, reserved, limit));
+	}
+
+	void threadPartition(String threadNamePattern, String tag) {
+		Partition partition = get(tag).orElseThrow(() -> new IllegalArgumentException("Unknown partition " + tag));
+		rules.add(new ThreadRule(Pattern.compile(threadNamePattern), partition));
+	}
+
+	void build(int capacity, long maxWaitNanos, ScheduledExecutorService scheduler) {
+		this.maxWaitNanos = maxWaitNanos;
+		this.scheduler = scheduler;
+		int totalReserved = 0;
+		for (Partition partition : partitions.values()) {
+			if (partition.limit() > capacity) {
+				throw new IllegalStateException("Limit of partition " + partition.tag() + " exceeds max pool size " + capacity);
+			}
+			totalReserved += partition.reserved();
+		}
+		if (totalReserved > capacity) {
+			throw new IllegalStateException("Reserved connections " + totalReserved + " exceed max pool size " + capacity);
+		}
+		surplus = capacity - totalReserved;
+		defaultPartition = partitions.computeIfAbsent(Partition.DEFAULT, tag -> new Partition(pool, this, tag, 0, capacity));
+	}
+
+	Partition select(Thread thread) {
+		if (!rules.isEmpty()) {
+			String name = thread.getName();
+			for (ThreadRule rule : rules) {
+				if (rule.pattern.matcher(name).matches()) {
+					return rule.partition;
+				}
+			}
+		}
+		return defaultPartition;
+	}
+
+	Optional<Partition> get(String tag) {
+		return Optional.ofNullable(partitions.get(tag));
+	}
+
+	Collection<Partition> partitions() {
+		return Collections.unmodifiableCollection(partitions.values());
+	}
+
+	/**
+	 * waits until the partition's quota admits a borrower, or the wait time elapses
+	 * @param partition the borrower's partition
+	 * @param waitNanos the max wait in nanoseconds, -1 to wait without limit
+	 * @return true if admitted, false on time out
+	 * @throws IllegalStateException when the pool is closed
+	 */
+	boolean acquire(Partition partition, long waitNanos) {
+		lock.lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("Pool closed");
+			}
+			if (admit(partition)) {
+				return true;
+			}
+			partition.counters().increment(Partition.Stats.WAITS);
+			long start = System.nanoTime();
+			try {
+				long remaining = waitNanos;
+				do {
+					if (waitNanos < 0) {
+						available.await();
+					} else if (remaining > 0) {
+						remaining = available.awaitNanos(remaining);
+					} else {
+						partition.counters().increment(Partition.Stats.TIMEOUTS);
+						return false;
+					}
+					if (closed) {
+						throw new IllegalStateException("Pool closed");
+					}
+				} while (!admit(partition));
+				return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalThreadStateException("Thread interrupted");
+			} finally {
+				long wait = System.nanoTime() - start;
+				partition.counters().add(Partition.Stats.WAITNANOS, wait).max(Partition.Stats.MAXWAITNANOS, wait);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * admits a borrower without blocking the calling thread.
+	 * Queued borrowers are admitted in request order, when a connection of their partition or surplus is released.
+	 * The future fails with a NoSuchElementException when maxWait elapses, and with an IllegalStateException when the pool is closed.
+	 * @param partition the borrower's partition
+	 * @return a future completed on admission, cancelling it gives up the wait
+	 */
+	CompletableFuture<Void> acquireAsync(Partition partition) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		lock.lock();
+		try {
+			if (closed) {
+				future.completeExceptionally(new IllegalStateException("Pool closed"));
+				return future;
+			}
+			if (admit(partition)) {
+				future.complete(null);
+				return future;
+			}
+			partition.counters().increment(Partition.Stats.WAITS);
+			asyncWaiters.add(new AsyncWaiter(partition, future));
+		} finally {
+			lock.unlock();
+		}
+		long start = System.nanoTime();
+		future.whenComplete((admitted, e) -> {
+			long wait = System.nanoTime() - start;
+			partition.counters().add(Partition.Stats.WAITNANOS, wait).max(Partition.Stats.MAXWAITNANOS, wait);
+			if (e != null) {
+				remove(future);
+			}
+		});
+		if (maxWaitNanos >= 0) {
+			try {
+				ScheduledFuture<?> timeout = scheduler().schedule(() -> timeout(partition, future), maxWaitNanos, TimeUnit.NANOSECONDS);
+				future.whenComplete((admitted, e) -> timeout.cancel(false));
+			} catch (RejectedExecutionException e) {
+				// scheduler shut down by a concurrent close
+				future.completeExceptionally(new IllegalStateException("Pool closed"));
+			}
+		}
+		return future;
+	}
+
+	private void timeout(Partition partition, CompletableFuture<Void> future) {
+		// only count a timeout that wins the race with admission
+		if (future.completeExceptionally(new NoSuchElementException("Time out while waiting on partition " + partition.tag()))) {
+			partition.counters().increment(Partition.Stats.TIMEOUTS);
+		}
+	}
+
+	private void remove(CompletableFuture<Void> future) {
+		lock.lock();
+		try {
+			asyncWaiters.removeIf(waiter -> waiter.future == future);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private synchronized ScheduledExecutorService scheduler() {
+		if (closed) {
+			throw new RejectedExecutionException("Pool closed");
+		}
+		if (scheduler == null) {
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+				Thread thread = new Thread(r, "Partition timeout thread");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.setRemoveOnCancelPolicy(true);
+			scheduler = executor;
+			ownsScheduler = true;
+		}
+		return scheduler;
+	}
+
+	private boolean admit(Partition partition) {
+		if (partition.atLimit()) {
+			return false;
+		}
+		boolean needsSurplus = partition.needsSurplus();
+		if (needsSurplus) {
+			if (surplusInUse >= surplus) {
+				return false;
+			}
+			surplusInUse++;
+		}
+		partition.take(needsSurplus);
+		return true;
+	}
+
+	void release(Partition partition) {
+		List<AsyncWaiter> admitted;
+		lock.lock();
+		try {
+			if (partition.free()) {
+				surplusInUse--;
+			}
+			admitted = admitAsyncWaiters();
+			// waiters of other partitions may be waiting on surplus
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		// complete outside the lock, as completion runs the borrow of the waiter
+		for (AsyncWaiter waiter : admitted) {
+			if (!waiter.future.complete(null)) {
+				// timed out or cancelled after admission
+				release(waiter.partition);
+			}
+		}
+	}
+
+	// called while holding the lock
+	private List<AsyncWaiter> admitAsyncWaiters() {
+		if (asyncWaiters.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<AsyncWaiter> admitted = new ArrayList<>();
+		for (Iterator<AsyncWaiter> it = asyncWaiters.iterator(); it.hasNext(); ) {
+			AsyncWaiter waiter = it.next();
+			if (waiter.future.isDone()) {
+				it.remove();
+			} else if (admit(waiter.partition)) {
+				it.remove();
+				admitted.add(waiter);
+			}
+		}
+		return admitted;
+	}
+
+	void close() {
+		List<AsyncWaiter> waiters;
+		lock.lock();
+		try {
+			closed = true;
+			waiters = new ArrayList<>(asyncWaiters);
+			asyncWaiters.clear();
+			// blocked borrowers fail on wake up
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		waiters.forEach(waiter -> waiter.future.completeExceptionally(new IllegalStateException("Pool closed")));
+		synchronized (this) {
+			if (ownsScheduler) {
+				scheduler.shutdown();
+			}
+		}
+	}
+
+	int inUse(Partition partition) {
+		lock.lock();
+		try {
+			return partition.currentInUse();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static final class AsyncWaiter {
+		private final Partition partition;
+		private final CompletableFuture<Void> future;
+
+		AsyncWaiter(Partition partition, CompletableFuture<Void> future) {
+			this.partition = partition;
+			this.future = future;
+		}
+	}
+
+	private static final class ThreadRule {
+		private final Pattern pattern;
+		private final Partition partition;
+
+		ThreadRule(Pattern pattern, Partition partition) {
+			this.pattern = pattern;
+			this.partition = partition;
+		}
+	}
+}
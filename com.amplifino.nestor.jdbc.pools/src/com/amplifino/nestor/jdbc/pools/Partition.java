@@ -0,0 +1,233 @@
+package com.amplifino.nestor.jdbc.pools;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import javax.sql.DataSource;
+
+import com.amplifino.counters.Accumulate;
+import com.amplifino.counters.Counters;
+import com.amplifino.counters.Counts;
+import com.amplifino.counters.CountsSupplier;
+import com.amplifino.nestor.jdbc.wrappers.CommonDataSourceWrapper;
+
+/**
+ * Bulkhead partition of a PoolDataSource, a quota of the pool's connections for one class of callers.
+ *
+ * A partition can always obtain its reserved connections,
+ * and shares the connections not reserved by any partition with the other partitions, up to its limit.
+ * Callers exceeding the quota wait until a connection of their own partition is closed or surplus becomes available,
+ * so that a partition draining its quota does not stall the other partitions.
+ * Waiting is bounded by the pool's maxWait, which covers both the wait for quota and the wait for a pooled connection.
+ */
+public final class Partition extends CommonDataSourceWrapper implements DataSource, CountsSupplier {
+
+	/**
+	 * tag of the partition used by callers not assigned to a partition
+	 */
+	public static final String DEFAULT = "default";
+
+	private final PoolDataSource pool;
+	private final Bulkhead bulkhead;
+	private final String tag;
+	private final int reserved;
+	private final int limit;
+	private final Counters<Stats> counters = Counters.of(Stats.class);
+	// created once, so that a lease only allocates the connection wrapper
+	private final Runnable release = this::release;
+	// guarded by the bulkhead lock
+	private int inUse = 0;
+
+	Partition(PoolDataSource pool, Bulkhead bulkhead, String tag, int reserved, int limit) {
+		super(pool);
+		this.pool = pool;
+		this.bulkhead = bulkhead;
+		this.tag = tag;
+		this.reserved = reserved;
+		this.limit = limit;
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return Optional.of(this)
+			.filter(iface::isInstance)
+			.map(iface::cast)
+			.orElseThrow(SQLException::new);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+
+	/**
+	 * returns a connection of the pool, counted against this partition's quota
+	 * @throws NoSuchElementException when the quota is not available within the pool's maxWait
+	 * @throws IllegalStateException when the pool is closed
+	 */
+	@Override
+	public Connection getConnection() throws SQLException {
+		return getConnection(pool.maxWaitNanos());
+	}
+
+	// waitNanos bounds the wait for quota and connection together, -1 waits without limit
+	Connection getConnection(long waitNanos) throws SQLException {
+		long start = System.nanoTime();
+		if (!bulkhead.acquire(this, waitNanos)) {
+			throw new NoSuchElementException("Time out while waiting on partition " + tag);
+		}
+		try {
+			return new ReleasingConnection(pool.borrow(start, waitNanos), release);
+		} catch (Throwable e) {
+			release();
+			throw e;
+		}
+	}
+
+	/**
+	 * obtains a connection of the pool, counted against this partition's quota, without blocking the calling thread.
+	 * The future fails with a NoSuchElementException when the quota or a connection is not available within the pool's maxWait.
+	 * Cancelling the future returns any quota or connection obtained concurrently.
+	 * @return a future for the connection
+	 */
+	public CompletableFuture<Connection> getConnectionAsync() {
+		long start = System.nanoTime();
+		CompletableFuture<Connection> result = new CompletableFuture<>();
+		CompletableFuture<Void> quota = bulkhead.acquireAsync(this);
+		// propagate cancellation to the quota waiter, no op if the quota is already admitted
+		result.whenComplete((connection, e) -> quota.cancel(false));
+		quota.whenComplete((admitted, e) -> {
+			if (e == null) {
+				connect(start, result);
+			} else {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+
+	private void connect(long start, CompletableFuture<Connection> result) {
+		if (result.isDone()) {
+			release();
+			return;
+		}
+		CompletableFuture<Connection> borrow = pool.borrowAsync(start);
+		result.whenComplete((connection, e) -> borrow.cancel(false));
+		borrow.whenComplete((connection, e) -> {
+			if (e != null) {
+				release();
+				result.completeExceptionally(e);
+				return;
+			}
+			Connection releasing = new ReleasingConnection(connection, release);
+			if (!result.complete(releasing)) {
+				try {
+					releasing.close();
+				} catch (SQLException ex) {
+				}
+			}
+		});
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		throw new UnsupportedOperationException();
+	}
+
+	private void release() {
+		bulkhead.release(this);
+	}
+
+	/**
+	 * @return the partition tag
+	 */
+	public String tag() {
+		return tag;
+	}
+
+	/**
+	 * @return the number of connections guaranteed to this partition
+	 */
+	public int reserved() {
+		return reserved;
+	}
+
+	/**
+	 * @return the maximum number of connections this partition can hold
+	 */
+	public int limit() {
+		return limit;
+	}
+
+	/**
+	 * @return the number of connections currently held by this partition
+	 */
+	public int inUse() {
+		return bulkhead.inUse(this);
+	}
+
+	// the following methods are called while holding the bulkhead lock
+
+	int currentInUse() {
+		return inUse;
+	}
+
+	boolean atLimit() {
+		return inUse >= limit;
+	}
+
+	boolean needsSurplus() {
+		return inUse >= reserved;
+	}
+
+	void take(boolean surplus) {
+		inUse++;
+		counters.increment(Stats.BORROWS).max(Stats.MAXINUSE, inUse);
+		if (surplus) {
+			counters.increment(Stats.SURPLUSBORROWS);
+		}
+	}
+
+	/**
+	 * @return true if the returned connection was taken from the surplus
+	 */
+	boolean free() {
+		return --inUse >= reserved;
+	}
+
+	Counters<Stats> counters() {
+		return counters;
+	}
+
+	@Override
+	public Counts counts() {
+		return counters.counts();
+	}
+
+	@Override
+	public String toString() {
+		return "Partition " + tag + " reserved: " + reserved + " limit: " + limit;
+	}
+
+	/**
+	 * Enumeration used for partition counts.
+	 * SURPLUSBORROWS counts the borrows beyond the reserved connections,
+	 * WAITS the borrowers that had to wait for quota, TIMEOUTS those that gave up after maxWait.
+	 * WAITNANOS is the total and MAXWAITNANOS the maximum time spent waiting for quota in nanoseconds,
+	 * MAXINUSE the maximum number of connections held at once.
+	 */
+	public enum Stats {
+		BORROWS,
+		SURPLUSBORROWS,
+		WAITS,
+		TIMEOUTS,
+		WAITNANOS,
+		@Accumulate(Accumulate.Operator.MAX)
+		MAXWAITNANOS,
+		@Accumulate(Accumulate.Operator.MAX)
+		MAXINUSE;
+	}
+}
@@ -3,10 +3,20 @@ package com.amplifino.nestor.jdbc.pools;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import javax.sql.ConnectionEvent;
@@ -14,11 +24,19 @@ import javax.sql.ConnectionEventListener;
 import javax.sql.ConnectionPoolDataSource;
 import javax.sql.DataSource;
 import javax.sql.PooledConnection;
+import javax.sql.StatementEventListener;
 
 import com.amplifino.counters.Counts;
 import com.amplifino.counters.CountsSupplier;
+import com.amplifino.counters.Histogram;
+import com.amplifino.counters.HistogramSnapshot;
+import com.amplifino.counters.HistogramsSupplier;
+import com.amplifino.counters.WindowedCountsSupplier;
 import com.amplifino.nestor.jdbc.wrappers.CommonDataSourceWrapper;
+import com.amplifino.pools.Lease;
+import com.amplifino.pools.LeasesSupplier;
 import com.amplifino.pools.Pool;
+import com.amplifino.pools.SizingPolicy;
 import com.amplifino.pools.PoolEntry;
 
 /**
@@ -30,14 +48,23 @@ import com.amplifino.pools.PoolEntry;
  * This is a type 2 DataSource implementation according to the DataSource javadoc.
  *
  */
-public final class PoolDataSource extends CommonDataSourceWrapper implements DataSource, CountsSupplier, AutoCloseable, ConnectionEventListener {
+public final class PoolDataSource extends CommonDataSourceWrapper implements DataSource, CountsSupplier, WindowedCountsSupplier, HistogramsSupplier, LeasesSupplier, AutoCloseable, ConnectionEventListener {
 
 	private final ConnectionPoolDataSource connectionPoolDataSource;
 	private Pool<PooledConnection> pool;
 	private OptionalInt isValidTimeout = OptionalInt.of(0);
 	private final Set<PooledConnection> failedConnections = ConcurrentHashMap.newKeySet();
+	// connections being checked by the keep alive, not borrowed from the pool
+	private final Set<PooledConnection> keepAliveConnections = ConcurrentHashMap.newKeySet();
 	private Optional<String> validationQuery = Optional.empty();
 	private long validationIdleTime = 0;
+	private final Histogram validation = Histogram.create();
+	private final List<StatementEventListener> statementEventListeners = new ArrayList<>();
+	// null unless partitions are configured
+	private Bulkhead bulkhead;
+	private long maxWaitNanos = -1;
+	// notified when a pooled connection reports a fatal error, set by a routing data source
+	private volatile Runnable connectionErrorListener;
 	
 	private PoolDataSource(ConnectionPoolDataSource connectionPoolDataSource) {
 		super(connectionPoolDataSource);
@@ -57,9 +84,31 @@ public final class PoolDataSource extends CommonDataSourceWrapper implements Dat
 		return iface.isInstance(this);
 	}
 
+	/**
+	 * returns a pooled connection.
+	 * If partitions are configured, the connection counts against the partition selected by the calling thread's name,
+	 * or the default partition
+	 */
 	@Override
 	public Connection getConnection() throws SQLException {
-		PoolEntry<PooledConnection> poolEntry = pool.borrowEntry();
+		return getConnection(maxWaitNanos);
+	}
+	
+	/**
+	 * returns a pooled connection, waiting at most the given time or maxWait if shorter
+	 * @param waitNanos max wait in nanoseconds, -1 to wait up to maxWait
+	 */
+	Connection getConnection(long waitNanos) throws SQLException {
+		long wait = maxWaitNanos < 0 || (waitNanos >= 0 && waitNanos < maxWaitNanos) ? waitNanos : maxWaitNanos;
+		return bulkhead == null ? borrow(System.nanoTime(), wait) : bulkhead.select(Thread.currentThread()).getConnection(wait);
+	}
+	
+	/**
+	 * borrows a connection, waiting at most what remains of the wait time since start
+	 */
+	Connection borrow(long start, long waitNanos) throws SQLException {
+		long wait = remainingWait(start, waitNanos);
+		PoolEntry<PooledConnection> poolEntry = wait < 0 ? pool.borrowEntry() : pool.borrowEntry(wait, TimeUnit.NANOSECONDS);
 		try {
 			return getConnection(poolEntry);
 		} catch (Throwable e) {
@@ -68,13 +117,91 @@ public final class PoolDataSource extends CommonDataSourceWrapper implements Dat
 				throw e;
 			}
 		}
-		return getConnection();
+		return borrow(start, waitNanos);
+	}
+	
+	// -1 if the wait is not bounded
+	private static long remainingWait(long start, long waitNanos) {
+		return waitNanos < 0 ? -1 : Math.max(0, waitNanos - (System.nanoTime() - start));
+	}
+	
+	/**
+	 * returns the partition with the given tag
+	 * @param tag the partition tag
+	 * @return the partition, empty if no such partition is configured
+	 */
+	public Optional<Partition> partition(String tag) {
+		return bulkhead == null ? Optional.empty() : bulkhead.get(tag);
+	}
+	
+	/**
+	 * @return the configured partitions, including the default partition, or an empty collection if the pool is not partitioned
+	 */
+	public Collection<Partition> partitions() {
+		return bulkhead == null ? Collections.emptyList() : bulkhead.partitions();
+	}
+	
+	/**
+	 * obtains a connection without blocking the calling thread while the pool is exhausted.
+	 * Waiters are served in request order, and fail with a NoSuchElementException when the pool's maxWait elapses.
+	 * Cancelling the future returns any connection obtained concurrently to the pool.
+	 * Note that the future is completed on an executor of the pool.
+	 * If partitions are configured, the connection counts against the partition selected by the calling thread's name,
+	 * or the default partition
+	 * @return a future for the connection
+	 */
+	public CompletableFuture<Connection> getConnectionAsync() {
+		return bulkhead == null ? borrowAsync(System.nanoTime()) : bulkhead.select(Thread.currentThread()).getConnectionAsync();
+	}
+	
+	/**
+	 * borrows a connection without blocking, waiting at most what remains of maxWait since start
+	 */
+	CompletableFuture<Connection> borrowAsync(long start) {
+		CompletableFuture<Connection> result = new CompletableFuture<>();
+		getConnectionAsync(result, start);
+		return result;
+	}
+	
+	private void getConnectionAsync(CompletableFuture<Connection> result, long start) {
+		long wait = remainingWait(start, maxWaitNanos);
+		CompletableFuture<PoolEntry<PooledConnection>> borrow = wait < 0 ? pool.borrowAsync() : pool.borrowAsync(wait, TimeUnit.NANOSECONDS);
+		// propagate cancellation to the pool waiter, no op if borrow is already done
+		result.whenComplete((connection, e) -> borrow.cancel(false));
+		borrow.whenComplete((poolEntry, e) -> {
+			if (e == null) {
+				connect(poolEntry, result, start);
+			} else {
+				result.completeExceptionally(e);
+			}
+		});
+	}
+	
+	private void connect(PoolEntry<PooledConnection> poolEntry, CompletableFuture<Connection> result, long start) {
+		Connection connection;
+		try {
+			connection = getConnection(poolEntry);
+		} catch (Throwable e) {
+			pool.evict(poolEntry.get());
+			if (poolEntry.isFresh()) {
+				result.completeExceptionally(e);
+			} else {
+				getConnectionAsync(result, start);
+			}
+			return;
+		}
+		if (!result.complete(connection)) {
+			try {
+				connection.close();
+			} catch (SQLException e) {				
+			}
+		}
 	}
 	
 	private Connection getConnection(PoolEntry<PooledConnection> poolEntry) throws SQLException {
 		Connection connection = poolEntry.get().getConnection();
 		try {
-			checkValid(connection, poolEntry.age());
+			checkValid(connection, poolEntry.validationAge());
 			return connection;
 		} catch (Throwable e) {
 			connection.close();
@@ -89,6 +216,35 @@ public final class PoolDataSource extends CommonDataSourceWrapper implements Dat
 		if (age < validationIdleTime) {
 			return;
 		}
+		long start = System.nanoTime();
+		try {
+			validate(connection);
+		} finally {
+			validation.record(System.nanoTime() - start);
+		}
+	}
+	
+	private boolean keepAlive(PooledConnection pooledConnection) {
+		keepAliveConnections.add(pooledConnection);
+		try {
+			try (Connection connection = pooledConnection.getConnection()) {
+				long start = System.nanoTime();
+				try {
+					validate(connection);
+				} finally {
+					validation.record(System.nanoTime() - start);
+				}
+			}
+			return !failedConnections.remove(pooledConnection);
+		} catch (SQLException e) {
+			failedConnections.remove(pooledConnection);
+			return false;
+		} finally {
+			keepAliveConnections.remove(pooledConnection);
+		}
+	}
+	
+	private void validate(Connection connection) throws SQLException {
 		if (isValidTimeout.isPresent()) {
 			if (!connection.isValid(isValidTimeout.getAsInt())) {
 				throw new SQLException("connection not valid");
@@ -109,6 +265,9 @@ public final class PoolDataSource extends CommonDataSourceWrapper implements Dat
 	@Override
 	public void connectionClosed(ConnectionEvent event) {
 		PooledConnection connection = (PooledConnection) event.getSource();
+		if (keepAliveConnections.contains(connection)) {
+			return;
+		}
 		if (failedConnections.remove(connection)) {
 			pool.evict(connection);
 		} else {
@@ -119,10 +278,25 @@ public final class PoolDataSource extends CommonDataSourceWrapper implements Dat
 	@Override
 	public void connectionErrorOccurred(ConnectionEvent event) {
 		failedConnections.add((PooledConnection) event.getSource());
+		Runnable listener = connectionErrorListener;
+		if (listener != null) {
+			listener.run();
+		}
+	}
+	
+	void onConnectionError(Runnable listener) {
+		connectionErrorListener = listener;
+	}
+	
+	long maxWaitNanos() {
+		return maxWaitNanos;
 	}
 	
 	@Override
 	public void close() {
+		if (bulkhead != null) {
+			bulkhead.close();
+		}
 		pool.close();
 	}
 	
@@ -130,6 +304,7 @@ public final class PoolDataSource extends CommonDataSourceWrapper implements Dat
 		try {
 			PooledConnection connection = connectionPoolDataSource.getPooledConnection();
 			connection.addConnectionEventListener(this);
+			statementEventListeners.forEach(connection::addStatementEventListener);
 			return connection;
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
@@ -138,6 +313,7 @@ public final class PoolDataSource extends CommonDataSourceWrapper implements Dat
 	
 	private void destroy(PooledConnection connection) {
 		connection.removeConnectionEventListener(this);
+		statementEventListeners.forEach(connection::removeStatementEventListener);
 		try {
 			connection.close();
 		} catch (SQLException e) {			
@@ -149,6 +325,27 @@ public final class PoolDataSource extends CommonDataSourceWrapper implements Dat
 		return pool.counts();
 	}
 	
+	@Override
+	public Counts window(long amount, TimeUnit unit) {
+		return pool.window(amount, unit);
+	}
+	
+	@Override
+	public List<Lease<PooledConnection>> leases() {
+		return pool.leases();
+	}
+	
+	/**
+	 * returns the pool latency histograms.
+	 * The VALIDATION histogram includes the connection validation performed by this data source
+	 */
+	@Override
+	public Map<Enum<?>, HistogramSnapshot> histograms() {
+		Map<Enum<?>, HistogramSnapshot> result = new LinkedHashMap<>(pool.histograms());
+		result.merge(Pool.Latencies.VALIDATION, validation.snapshot(), HistogramSnapshot::merge);
+		return Collections.unmodifiableMap(result);
+	}
+	
 	/**
 	 * return a PoolDataSource builder
 	 * @param connectionPoolDataSource factory object for obtaining pooled connections
@@ -165,6 +362,8 @@ public final class PoolDataSource extends CommonDataSourceWrapper implements Dat
 	public static final class Builder {
 		private final PoolDataSource poolDataSource;
 		private final Pool.Builder<PooledConnection> poolBuilder;
+		private int maxSize = Integer.MAX_VALUE;
+		private ScheduledExecutorService scheduler;
 		
 		private Builder(ConnectionPoolDataSource connectionPoolDataSource) {
 			this.poolDataSource = new PoolDataSource(connectionPoolDataSource);
@@ -178,6 +377,7 @@ public final class PoolDataSource extends CommonDataSourceWrapper implements Dat
 		 */
 		public Builder maxSize(int maxSize) {
 			poolBuilder.maxSize(maxSize);
+			this.maxSize = maxSize;
 			return this;
 		}
 		
@@ -190,6 +390,57 @@ public final class PoolDataSource extends CommonDataSourceWrapper implements Dat
 			poolBuilder.maxIdle(maxIdle);
 			return this;
 		}
+
+		/**
+		 * sets the number of idle connections kept ready by background allocation
+		 * @param minIdle the min idle count
+		 * @return this
+		 */
+		public Builder minIdle(int minIdle) {
+			poolBuilder.minIdle(minIdle);
+			return this;
+		}
+		
+		/**
+		 * sets the number of connections opened concurrently by background allocation
+		 * @param parallelism the number of concurrent allocations
+		 * @return this
+		 */
+		public Builder allocationParallelism(int parallelism) {
+			poolBuilder.allocationParallelism(parallelism);
+			return this;
+		}
+		
+		/**
+		 * sets the policy that adjusts the number of idle connections on every maintenance cycle
+		 * @param sizingPolicy the sizing policy
+		 * @return this
+		 */
+		public Builder sizingPolicy(SizingPolicy sizingPolicy) {
+			poolBuilder.sizingPolicy(sizingPolicy);
+			return this;
+		}
+
+		/**
+		 * enables lease tracking, logging a warning for connections that are not closed within the threshold
+		 * @param amount the leak threshold amount
+		 * @param unit the leak threshold unit
+		 * @return this
+		 */
+		public Builder leakThreshold(long amount, TimeUnit unit) {
+			poolBuilder.leakThreshold(amount, unit);
+			return this;
+		}
+		
+		/**
+		 * enables recording the stack of the thread obtaining a connection
+		 * @param sampleRate record the stack for one out of sampleRate connections
+		 * @return this
+		 */
+		public Builder leaseStackTraces(int sampleRate) {
+			poolBuilder.leaseStackTraces(sampleRate);
+			return this;
+		}
 		
 		/**
 		 * sets the amount of time a connection can remain idle in the pool
@@ -204,6 +455,7 @@ public final class PoolDataSource extends CommonDataSourceWrapper implements Dat
 		
 		public Builder maxWait(long amount, TimeUnit unit) {
 			poolBuilder.maxWait(amount, unit);
+			poolDataSource.maxWaitNanos = unit.toNanos(amount);
 			return this;
 		}
 		
@@ -258,6 +510,21 @@ public final class PoolDataSource extends CommonDataSourceWrapper implements Dat
 			return this;
 		}
 		
+		/**
+		 * enables background validation of idle connections in the maintenance cycle,
+		 * connections that fail are evicted before they are borrowed.
+		 * Borrowers only validate connections that were not validated within validationIdleTime,
+		 * so use a keep alive time below the validation idle time to take validation off the borrowing thread.
+		 * Requires a cycle time.
+		 * @param amount time since the last validation amount
+		 * @param unit time since the last validation unit
+		 * @return this
+		 */
+		public Builder keepAlive(long amount, TimeUnit unit) {
+			poolBuilder.keepAlive(poolDataSource::keepAlive, amount, unit);
+			return this;
+		}
+		
 		public Builder cycleTime(long amount, TimeUnit unit) {
 			poolBuilder.propertyCycle(amount, unit);
 			return this;
@@ -281,11 +548,102 @@ public final class PoolDataSource extends CommonDataSourceWrapper implements Dat
 			return this;
 		}
 		
+		/**
+		 * configure the pool to use a lock free idle structure with a per thread cache of the last used connection
+		 * @return this
+		 */
+		public Builder threadAffine() {
+			poolBuilder.threadAffine();
+			return this;
+		}
+		
+		/**
+		 * configure the executor triggering the maintenance cycle, and timing out async borrows and partition quota waits.
+		 * Pass a shared executor to avoid a scheduler thread per data source
+		 * @param executorService the scheduler
+		 * @return this
+		 */
+		public Builder scheduleExecutorService(ScheduledExecutorService executorService) {
+			poolBuilder.scheduleExecutorService(executorService);
+			this.scheduler = executorService;
+			return this;
+		}		
+		/**
+		 * configure the executor for the maintenance cycle with its keep alive checks, background allocation and the completion of async borrows.
+		 * Pass a shared bounded executor to avoid threads per data source
+		 * @param executorService the work executor
+		 * @return this
+		 */
+		public Builder workExecutorService(ExecutorService executorService) {
+			poolBuilder.workExecutorService(executorService);
+			return this;
+		}
+		
+		/**
+		 * configure the pool to shard its idle connections over a number of stripes, to reduce contention on hosts with many cores
+		 * @param stripes the number of stripes
+		 * @return this
+		 */
+		public Builder striped(int stripes) {
+			poolBuilder.striped(stripes);
+			return this;
+		}
+		
+		/**
+		 * adds a listener to the statement events of every pooled connection,
+		 * e.g. to keep statistics or to close statements that failed
+		 * @param listener the statement event listener
+		 * @return this
+		 */
+		public Builder statementEventListener(StatementEventListener listener) {
+			poolDataSource.statementEventListeners.add(listener);
+			return this;
+		}
+		
+		/**
+		 * adds a bulkhead partition, a quota of the pool's connections for one class of callers.
+		 * The partition can always obtain its reserved connections,
+		 * and shares the connections not reserved by any partition with the other partitions up to its limit.
+		 * Obtain connections of a partition with partition(tag), or assign threads with threadPartition.
+		 * Callers not assigned to a partition use the DEFAULT partition, which reserves no connections unless configured here.
+		 * The reserved connections of all partitions can not exceed maxSize.
+		 * @param tag the partition tag
+		 * @param reserved the number of connections guaranteed to the partition
+		 * @param limit the maximum number of connections the partition can hold
+		 * @return this
+		 */
+		public Builder partition(String tag, int reserved, int limit) {
+			bulkhead().partition(Objects.requireNonNull(tag), reserved, limit);
+			return this;
+		}
+		
+		/**
+		 * assigns threads calling getConnection to a partition by thread name.
+		 * Patterns are tested in the order they are added, the partition must have been added before.
+		 * @param threadNamePattern regular expression matching the complete thread name
+		 * @param tag the partition tag
+		 * @return this
+		 */
+		public Builder threadPartition(String threadNamePattern, String tag) {
+			bulkhead().threadPartition(threadNamePattern, tag);
+			return this;
+		}
+		
+		private Bulkhead bulkhead() {
+			if (poolDataSource.bulkhead == null) {
+				poolDataSource.bulkhead = new Bulkhead(poolDataSource);
+			}
+			return poolDataSource.bulkhead;
+		}
+		
 		/**
 		 * build a PoolDataSource
 		 * @return the new pool
 		 */
 		public PoolDataSource build() {
+			if (poolDataSource.bulkhead != null) {
+				poolDataSource.bulkhead.build(maxSize, poolDataSource.maxWaitNanos, scheduler);
+			}
 			poolDataSource.pool = poolBuilder.build();
 			return poolDataSource;
 		}
@@ -0,0 +1,33 @@
+package com.amplifino.nestor.jdbc.pools;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.amplifino.nestor.jdbc.wrappers.ConnectionWrapper;
+
+/**
+ * connection wrapper that runs a release action when closed for the first time,
+ * so that closing a connection twice does not release its quota twice.
+ */
+final class ReleasingConnection extends ConnectionWrapper {
+
+	private final Runnable release;
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	ReleasingConnection(Connection connection, Runnable release) {
+		super(connection);
+		this.release = release;
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (closed.compareAndSet(false, true)) {
+			try {
+				super.close();
+			} finally {
+				release.run();
+			}
+		}
+	}
+}
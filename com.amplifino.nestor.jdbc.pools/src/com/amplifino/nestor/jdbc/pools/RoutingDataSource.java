@@ -0,0 +1,319 @@
+package com.amplifino.nestor.jdbc.pools;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import com.amplifino.counters.Counters;
+import com.amplifino.counters.Counts;
+import com.amplifino.counters.CountsSupplier;
+import com.amplifino.nestor.jdbc.wrappers.CommonDataSourceWrapper;
+
+/**
+ * DataSource routing over a primary pool and a number of read replica pools.
+ *
+ * getConnection always returns a connection to the primary.
+ * getReadOnlyConnection, or getConnection on the readOnly() view, returns a read only connection to the replica with the least outstanding connections,
+ * so that a slow replica receives less work.
+ * A replica that fails to provide a connection, or whose connections report a fatal error, is quarantined for a configurable time.
+ * A replica whose pool is exhausted is not quarantined, but a read waits for it at most the replica wait before trying the next replica.
+ * When no replica is available, reads fall back to the primary.
+ *
+ * The pools are owned by the routing data source, close releases all of them.
+ */
+public final class RoutingDataSource extends CommonDataSourceWrapper implements DataSource, CountsSupplier, AutoCloseable {
+
+	private final PoolDataSource primary;
+	private Host[] replicas;
+	private long quarantineNanos = TimeUnit.SECONDS.toNanos(30);
+	private long replicaWaitNanos = TimeUnit.SECONDS.toNanos(1);
+	private final AtomicInteger next = new AtomicInteger();
+	private final Counters<Stats> counters = Counters.of(Stats.class);
+	private final DataSource readOnly;
+
+	private RoutingDataSource(PoolDataSource primary) {
+		super(primary);
+		this.primary = primary;
+		this.readOnly = new ReadOnlyDataSource();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return Optional.of(this)
+			.filter(iface::isInstance)
+			.map(iface::cast)
+			.orElseThrow(SQLException::new);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+
+	/**
+	 * returns a connection to the primary
+	 */
+	@Override
+	public Connection getConnection() throws SQLException {
+		counters.increment(Stats.WRITES);
+		return primary.getConnection();
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * returns a read only connection to the available replica with the least outstanding connections,
+	 * or a connection to the primary if no replica is available
+	 * @return the connection
+	 * @throws SQLException if the primary fails to provide a connection
+	 */
+	public Connection getReadOnlyConnection() throws SQLException {
+		counters.increment(Stats.READS);
+		// bit mask of the replicas tried by this read
+		long tried = 0;
+		for (int attempt = 0 ; attempt < replicas.length ; attempt++) {
+			int index = select(tried);
+			if (index < 0) {
+				break;
+			}
+			tried |= 1L << index;
+			Host host = replicas[index];
+			try {
+				return host.getConnection(replicaWaitNanos);
+			} catch (NoSuchElementException e) {
+				// the replica's pool is exhausted, the replica itself is fine
+				counters.increment(Stats.BUSY);
+			} catch (SQLException | RuntimeException e) {
+				quarantine(host);
+			}
+		}
+		counters.increment(Stats.FALLBACKS);
+		return primary.getConnection();
+	}
+
+	private void quarantine(Host host) {
+		counters.increment(Stats.FAILURES);
+		host.quarantine(quarantineNanos);
+		counters.increment(Stats.QUARANTINES);
+	}
+
+	/**
+	 * @return a DataSource view returning read only connections
+	 */
+	public DataSource readOnly() {
+		return readOnly;
+	}
+
+	// returns the index of the selected replica, or -1 if none is available
+	private int select(long tried) {
+		int result = -1;
+		long now = System.nanoTime();
+		// start at a rotating offset, so that idle replicas share the load
+		int offset = next.getAndIncrement() & Integer.MAX_VALUE;
+		for (int i = 0 ; i < replicas.length ; i++) {
+			int index = (offset + i) % replicas.length;
+			Host host = replicas[index];
+			if ((tried & (1L << index)) == 0 && host.isAvailable(now) && (result < 0 || host.outstanding() < replicas[result].outstanding())) {
+				result = index;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the primary pool
+	 */
+	public PoolDataSource primary() {
+		return primary;
+	}
+
+	/**
+	 * @return the replica pools
+	 */
+	public List<PoolDataSource> replicas() {
+		List<PoolDataSource> result = new ArrayList<>(replicas.length);
+		for (Host host : replicas) {
+			result.add(host.pool);
+		}
+		return result;
+	}
+
+	/**
+	 * returns the routing counts, the pools report their own counts
+	 */
+	@Override
+	public Counts counts() {
+		return counters.counts();
+	}
+
+	/**
+	 * closes the primary and replica pools
+	 */
+	@Override
+	public void close() {
+		for (Host host : replicas) {
+			host.pool.close();
+		}
+		primary.close();
+	}
+
+	public static Builder builder(PoolDataSource primary) {
+		return new Builder(primary);
+	}
+
+	/**
+	 * Enumeration used for routing counts.
+	 * FAILURES counts the replicas that failed to provide a connection or reported a connection error, QUARANTINES the resulting quarantines,
+	 * FALLBACKS the reads served by the primary because no replica was available,
+	 * BUSY the replicas skipped because their pool was exhausted for the replica wait.
+	 */
+	public enum Stats {
+		WRITES,
+		READS,
+		FALLBACKS,
+		FAILURES,
+		QUARANTINES,
+		BUSY;
+	}
+
+	private static final class Host {
+		private final PoolDataSource pool;
+		private final AtomicInteger outstanding = new AtomicInteger();
+		// created once, so that a lease only allocates the connection wrapper
+		private final Runnable release = outstanding::decrementAndGet;
+		private volatile long quarantinedUntil;
+		private volatile boolean quarantined = false;
+
+		Host(PoolDataSource pool) {
+			this.pool = pool;
+		}
+
+		Connection getConnection(long waitNanos) throws SQLException {
+			Connection connection = pool.getConnection(waitNanos);
+			try {
+				// the pooled connection resets the flag when closed
+				connection.setReadOnly(true);
+			} catch (SQLException | RuntimeException e) {
+				connection.close();
+				throw e;
+			}
+			outstanding.incrementAndGet();
+			return new ReleasingConnection(connection, release);
+		}
+
+		int outstanding() {
+			return outstanding.get();
+		}
+
+		boolean isAvailable(long now) {
+			if (quarantined && now - quarantinedUntil >= 0) {
+				quarantined = false;
+			}
+			return !quarantined;
+		}
+
+		void quarantine(long nanos) {
+			quarantinedUntil = System.nanoTime() + nanos;
+			quarantined = true;
+		}
+	}
+
+	private final class ReadOnlyDataSource extends CommonDataSourceWrapper implements DataSource {
+
+		ReadOnlyDataSource() {
+			super(primary);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			return getReadOnlyConnection();
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <T> T unwrap(Class<T> iface) throws SQLException {
+			return RoutingDataSource.this.unwrap(iface);
+		}
+
+		@Override
+		public boolean isWrapperFor(Class<?> iface) throws SQLException {
+			return RoutingDataSource.this.isWrapperFor(iface);
+		}
+	}
+
+	public static final class Builder {
+		private final RoutingDataSource routingDataSource;
+		private final List<PoolDataSource> replicas = new ArrayList<>();
+
+		private Builder(PoolDataSource primary) {
+			this.routingDataSource = new RoutingDataSource(Objects.requireNonNull(primary));
+		}
+
+		/**
+		 * adds a read replica pool
+		 * @param replica the replica pool
+		 * @return this
+		 */
+		public Builder replica(PoolDataSource replica) {
+			replicas.add(Objects.requireNonNull(replica));
+			return this;
+		}
+
+		/**
+		 * sets the time a replica is skipped after failing to provide a connection, default 30 seconds
+		 * @param amount quarantine time amount
+		 * @param unit quarantine time unit
+		 * @return this
+		 */
+		public Builder quarantine(long amount, TimeUnit unit) {
+			routingDataSource.quarantineNanos = unit.toNanos(amount);
+			return this;
+		}
+
+		/**
+		 * sets the maximum time a read waits for a connection of a busy replica before trying the next replica, default 1 second.
+		 * The replica pool's maxWait applies if shorter
+		 * @param amount replica wait amount
+		 * @param unit replica wait unit
+		 * @return this
+		 */
+		public Builder replicaWait(long amount, TimeUnit unit) {
+			if (amount < 0) {
+				throw new IllegalArgumentException();
+			}
+			routingDataSource.replicaWaitNanos = unit.toNanos(amount);
+			return this;
+		}
+
+		/**
+		 * build a RoutingDataSource
+		 * @return the new routing data source
+		 */
+		public RoutingDataSource build() {
+			if (replicas.size() > Long.SIZE) {
+				throw new IllegalStateException("More than " + Long.SIZE + " replicas");
+			}
+			routingDataSource.replicas = replicas.stream().map(Host::new).toArray(Host[]::new);
+			for (Host host : routingDataSource.replicas) {
+				// fatal errors on connections already handed out
+				host.pool.onConnectionError(() -> routingDataSource.quarantine(host));
+			}
+			return routingDataSource;
+		}
+	}
+}
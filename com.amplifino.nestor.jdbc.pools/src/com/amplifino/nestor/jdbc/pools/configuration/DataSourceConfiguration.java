@@ -15,10 +15,24 @@ public @interface DataSourceConfiguration {
 	int initialPoolSize() default 0;
 	int maxPoolSize() default 0;
 	int minPoolSize() default 0;
+	@AttributeDefinition(description="Number of idle connections kept ready by opening new connections in the background")
+	int minIdle() default 0;
+	@AttributeDefinition(description="Maximum number of connections opened concurrently in the background")
+	int allocationParallelism() default 1;
+	@AttributeDefinition(description="Adjust the number of idle connections to the observed wait time instead of keeping minIdle. Requires propertyCycle")
+	boolean adaptiveSizing() default false;
+	@AttributeDefinition(description="Time in seconds after which an unclosed connection is reported as possible leak, 0 to disable lease tracking. Requires propertyCycle")
+	int leakThreshold() default 0;
+	@AttributeDefinition(description="Record the stack of the thread obtaining a connection for one out of n connections, 0 to disable")
+	int leaseStackTraceSampleRate() default 0;
 	@AttributeDefinition(description="Maximum connection idle time in seconds")
 	int maxIdleTime() default 0;
 	@AttributeDefinition(description="Use first in first out scheduling if true, last in first out if false")
 	boolean fifo() default false;
+	@AttributeDefinition(description="Use a lock free pool with a per thread cache of the last used connection. Recommended for many concurrent threads")
+	boolean threadAffine() default false;
+	@AttributeDefinition(description="Number of stripes to shard idle connections over, -1 for one stripe per processor, 0 or 1 to disable. Not compatible with threadAffine")
+	int stripes() default 0;
 	String[] application();
 	@AttributeDefinition(description="Timeout in seconds to use on connection.isValid() call. Specify -1 to skip isValid() if your JDBC driver does not support isValid")
 	int isValidTimeout() default 0;
@@ -28,10 +42,24 @@ public @interface DataSourceConfiguration {
 	int validationIdleTime();
 	@AttributeDefinition(description="Time in seconds between scans for expired connections")
 	int propertyCycle();
+	@AttributeDefinition(description="Time in seconds after which idle connections are validated in the background, 0 to disable. Requires propertyCycle")
+	int keepAliveTime() default 0;
 	@AttributeDefinition(description="Ldap filter for DataSourceFactory")
 	String dataSourceFactory_target() default "(osgi.jdbc.driver.name=*)";
 	@AttributeDefinition(description="When using DATASOURCE or DRIVER the configured dataSource will return wrapped Connections")
 	FactoryMethod factoryMethod() default FactoryMethod.CONNECTIONPOOLDATASOURCE;
+	@AttributeDefinition(description="Number of idle prepared statements cached per connection, 0 to disable. Only for DATASOURCE and DRIVER")
+	int statementCacheSize() default 0;
+	@AttributeDefinition(description="Urls of read replicas. When set, an additional DataSource with property readOnly=true balances connections over the replicas, falling back to url")
+	String[] replicaUrls() default {};
+	@AttributeDefinition(description="Time in seconds a replica is skipped after failing to provide a connection")
+	int quarantineTime() default 30;
+	@AttributeDefinition(description="Time in milliseconds a read waits for a connection of a busy replica before trying the next replica")
+	int replicaWait() default 1000;
+	@AttributeDefinition(description="Bulkhead partitions as tag:reserved:limit. Each partition is registered as an additional DataSource with property application=tag. The reserved connections must not exceed maxPoolSize")
+	String[] partitions() default {};
+	@AttributeDefinition(description="Assign threads obtaining connections from the shared DataSource to a partition as tag=threadNameRegex")
+	String[] threadPartitions() default {};
 	boolean trace() default false;
 	String webconsole_configurationFactory_nameHint() default "DataSource {dataSourceName} for applications {application}";
 	
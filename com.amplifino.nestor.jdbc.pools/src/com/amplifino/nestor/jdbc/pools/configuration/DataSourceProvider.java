@@ -1,9 +1,14 @@
 package com.amplifino.nestor.jdbc.pools.configuration;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -11,6 +16,7 @@ import javax.sql.ConnectionPoolDataSource;
 import javax.sql.DataSource;
 
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -22,11 +28,16 @@ import org.osgi.service.component.annotations.ReferencePolicy;
 import org.osgi.service.jdbc.DataSourceFactory;
 import org.osgi.service.metatype.annotations.Designate;
 
+import com.amplifino.counters.CountsSupplier;
 import com.amplifino.nestor.adapters.ConnectionPoolDataSourceAdapter;
 import com.amplifino.nestor.adapters.ConnectionPoolDataSourceXaAdapter;
 import com.amplifino.nestor.adapters.DataSourceAdapter;
 import com.amplifino.nestor.jdbc.pools.DataSourceWrapper;
+import com.amplifino.nestor.jdbc.pools.Partition;
 import com.amplifino.nestor.jdbc.pools.PoolDataSource;
+import com.amplifino.nestor.jdbc.pools.RoutingDataSource;
+import com.amplifino.pools.Pool;
+import com.amplifino.pools.SizingPolicy;
 
 @Component(configurationPolicy=ConfigurationPolicy.REQUIRE)
 @Designate(ocd=DataSourceConfiguration.class, factory=true)
@@ -34,9 +45,19 @@ public class DataSourceProvider {
 
 	@Reference
 	private DataSourceFactory dataSourceFactory;
+	@Reference(target=Pool.MAINTENANCE_SCHEDULER_FILTER)
+	private ScheduledExecutorService scheduler;
+	@Reference(target=Pool.MAINTENANCE_WORKERS_FILTER)
+	private ExecutorService workers;
 	private final AtomicReference<DataSourceWrapper> wrapperReference = new AtomicReference<>();;
 	private PoolDataSource dataSource;
-	private ServiceRegistration<DataSource> registration;
+	private RoutingDataSource routingDataSource;
+	private ServiceRegistration<?> registration;
+	private ServiceRegistration<DataSource> readOnlyRegistration;
+	private final List<ServiceRegistration<?>> partitionRegistrations = new ArrayList<>();
+	private final List<ServiceRegistration<CountsSupplier>> countsRegistrations = new ArrayList<>();
+	// the pools created by activate, closed if activation fails
+	private final List<PoolDataSource> pools = new ArrayList<>();
 	private DataSourceConfiguration configuration;
 	private BundleContext context;
 	
@@ -44,10 +65,53 @@ public class DataSourceProvider {
 	public synchronized void activate(BundleContext context, DataSourceConfiguration configuration) throws SQLException {
 		this.context = context;
 		this.configuration = configuration;
-		ConnectionPoolDataSource connectionPoolDataSource = createConnectionPoolDataSource(configuration);
+		try {
+			dataSource = createPool(configuration.url(), configuration.dataSourceName());
+			String[] replicaUrls = Arrays.stream(configuration.replicaUrls())
+				.filter(url -> url != null && !url.trim().isEmpty())
+				.map(String::trim)
+				.toArray(String[]::new);
+			if (replicaUrls.length > 0) {
+				RoutingDataSource.Builder builder = RoutingDataSource.builder(dataSource)
+					.quarantine(configuration.quarantineTime(), TimeUnit.SECONDS)
+					.replicaWait(configuration.replicaWait(), TimeUnit.MILLISECONDS);
+				// the registered data source counts the routing, publish the pool counts separately
+				publish(configuration.dataSourceName(), dataSource);
+				for (int i = 0 ; i < replicaUrls.length ; i++) {
+					String name = configuration.dataSourceName() + "-replica" + (i + 1);
+					PoolDataSource replica = createPool(replicaUrls[i], name);
+					publish(name, replica);
+					builder.replica(replica);
+				}
+				routingDataSource = builder.build();
+			}
+			register();
+		} catch (SQLException | RuntimeException e) {
+			// deactivate is not called when activate fails
+			release();
+			throw e;
+		}
+	}
+	
+	private void release() {
+		if (registration != null) {
+			unregister();
+		}
+		countsRegistrations.forEach(ServiceRegistration::unregister);
+		countsRegistrations.clear();
+		pools.forEach(PoolDataSource::close);
+		pools.clear();
+		dataSource = null;
+		routingDataSource = null;
+	}
+	
+	private PoolDataSource createPool(String url, String name) throws SQLException {
+		ConnectionPoolDataSource connectionPoolDataSource = createConnectionPoolDataSource(configuration, url, name);
 		PoolDataSource.Builder builder = PoolDataSource.builder(connectionPoolDataSource)
-			.name(configuration.dataSourceName())
+			.name(name)
 			.initialSize(configuration.initialPoolSize())
+			.scheduleExecutorService(scheduler)
+			.workExecutorService(workers)
 			.validationIdleTime(configuration.validationIdleTime(), TimeUnit.SECONDS);
 		if (configuration.isValidTimeout() < 0) {
 			builder.skipIsValid();
@@ -63,26 +127,130 @@ public class DataSourceProvider {
 		if (configuration.minPoolSize() > 0) {
 			builder.maxIdle(configuration.minPoolSize());
 		}
+		if (configuration.minIdle() > 0) {
+			builder.minIdle(configuration.minIdle());
+		}
+		if (configuration.allocationParallelism() > 1) {
+			builder.allocationParallelism(configuration.allocationParallelism());
+		}
+		if (configuration.adaptiveSizing()) {
+			builder.sizingPolicy(SizingPolicy.adaptive());
+		}
+		if (configuration.leakThreshold() > 0) {
+			builder.leakThreshold(configuration.leakThreshold(), TimeUnit.SECONDS);
+		}
+		if (configuration.leaseStackTraceSampleRate() > 0) {
+			builder.leaseStackTraces(configuration.leaseStackTraceSampleRate());
+		}
 		if (configuration.maxIdleTime() > 0) {
 			builder.maxIdleTime(configuration.maxIdleTime(), TimeUnit.SECONDS);
 		}
 		if (configuration.propertyCycle() > 0) {
 			builder.cycleTime(configuration.propertyCycle(), TimeUnit.SECONDS);
 		}
+		if (configuration.keepAliveTime() > 0) {
+			builder.keepAlive(configuration.keepAliveTime(), TimeUnit.SECONDS);
+		}
  		if (configuration.fifo()) {
 			builder.fifo();
 		} else {
 			builder.lifo();
 		}
-		dataSource = builder.build();
-		register();
+		if (configuration.threadAffine()) {
+			builder.threadAffine();
+		}
+		if (configuration.stripes() > 1) {
+			builder.striped(configuration.stripes());
+		} else if (configuration.stripes() < 0) {
+			builder.striped(Runtime.getRuntime().availableProcessors());
+		}
+		// partitions only apply to the primary pool
+		if (name.equals(configuration.dataSourceName())) {
+			partitions(builder);
+		}
+		PoolDataSource pool = builder.build();
+		pools.add(pool);
+		return pool;
 	}
 	
-	private void register() {
+	private void partitions(PoolDataSource.Builder builder) {
+		for (String partition : configuration.partitions()) {
+			if (partition == null || partition.trim().isEmpty()) {
+				continue;
+			}
+			String[] parts = partition.trim().split(":");
+			if (parts.length < 2 || parts.length > 3) {
+				throw new IllegalArgumentException("Invalid partition " + partition + ", use tag:reserved:limit");
+			}
+			int reserved = Integer.parseInt(parts[1].trim());
+			int limit = parts.length == 3 ? Integer.parseInt(parts[2].trim()) : configuration.maxPoolSize() > 0 ? configuration.maxPoolSize() : Integer.MAX_VALUE;
+			builder.partition(parts[0].trim(), reserved, limit);
+		}
+		for (String threadPartition : configuration.threadPartitions()) {
+			if (threadPartition == null || threadPartition.trim().isEmpty()) {
+				continue;
+			}
+			int index = threadPartition.indexOf('=');
+			if (index <= 0) {
+				throw new IllegalArgumentException("Invalid thread partition " + threadPartition + ", use tag=threadNameRegex");
+			}
+			builder.threadPartition(threadPartition.substring(index + 1).trim(), threadPartition.substring(0, index).trim());
+		}
+	}
+	
+	private void publish(String name, CountsSupplier counts) {
+		countsRegistrations.add(context.registerService(CountsSupplier.class, counts, properties(name)));
+	}
+	
+	private Dictionary<String, Object> properties(String name) {
 		Dictionary<String, Object> dictionary = new Hashtable<>();
-		dictionary.put(DataSourceFactory.JDBC_DATABASE_NAME, configuration.dataSourceName());	
+		dictionary.put(DataSourceFactory.JDBC_DATABASE_NAME, name);	
 		dictionary.put("application", configuration.application());
-		registration = context.registerService(DataSource.class, wrap(dataSource),  dictionary);
+		return dictionary;
+	}
+	
+	private void register() {
+		DataSource service = wrap(routingDataSource == null ? dataSource : routingDataSource);
+		registration = context.registerService(serviceNames(service), service,  properties(configuration.dataSourceName()));
+		if (routingDataSource != null) {
+			Dictionary<String, Object> properties = properties(configuration.dataSourceName());
+			properties.put("readOnly", true);
+			// rank below the primary, so that references without a readOnly filter bind to the primary
+			properties.put(Constants.SERVICE_RANKING, -1);
+			readOnlyRegistration = context.registerService(DataSource.class, wrap(routingDataSource.readOnly()), properties);
+		}
+		for (Partition partition : dataSource.partitions()) {
+			if (partition.tag().equals(Partition.DEFAULT)) {
+				continue;
+			}
+			Dictionary<String, Object> properties = properties(configuration.dataSourceName());
+			properties.put("application", partition.tag());
+			properties.put("partition", partition.tag());
+			// rank above the shared data source, so that references filtering on the application bind to the partition
+			properties.put(Constants.SERVICE_RANKING, 1);
+			DataSource partitionService = wrap(partition);
+			partitionRegistrations.add(context.registerService(serviceNames(partitionService), partitionService, properties));
+		}
+	}
+	
+	private void unregister() {
+		registration.unregister();
+		registration = null;
+		if (readOnlyRegistration != null) {
+			readOnlyRegistration.unregister();
+			readOnlyRegistration = null;
+		}
+		partitionRegistrations.forEach(ServiceRegistration::unregister);
+		partitionRegistrations.clear();
+	}
+	
+	// publish the counts for metric exporters, unless a wrapper hides them
+	private String[] serviceNames(DataSource service) {
+		if (service instanceof CountsSupplier) {
+			return new String[] { DataSource.class.getName(), CountsSupplier.class.getName() };
+		} else {
+			return new String[] { DataSource.class.getName() };
+		}
 	}
 	
 	@Reference(cardinality=ReferenceCardinality.OPTIONAL, policy=ReferencePolicy.DYNAMIC) 
@@ -99,7 +267,7 @@ public class DataSourceProvider {
 	
 	private void refresh() {
 		if (registration != null && configuration.trace()) {			
-			registration.unregister();
+			unregister();
 			register();
 		}
 	}
@@ -109,9 +277,9 @@ public class DataSourceProvider {
 		return wrapper == null || !configuration.trace() ? dataSource : wrapper.wrap(dataSource);				
 	}
 	
-	private ConnectionPoolDataSource createConnectionPoolDataSource(DataSourceConfiguration configuration) throws SQLException {
+	private ConnectionPoolDataSource createConnectionPoolDataSource(DataSourceConfiguration configuration, String url, String name) throws SQLException {
 		Properties props = new Properties();
-		props.put(DataSourceFactory.JDBC_URL, configuration.url());
+		props.put(DataSourceFactory.JDBC_URL, url);
 		props.put(DataSourceFactory.JDBC_USER, configuration.user());
 		props.put(DataSourceFactory.JDBC_PASSWORD, configuration._password());
 		for (String extraProperty : configuration.additionalProperties()) {
@@ -122,20 +290,28 @@ public class DataSourceProvider {
 		}
 		switch(configuration.factoryMethod()) {
 			case DATASOURCE:
-				return ConnectionPoolDataSourceAdapter.on(dataSourceFactory.createDataSource(props));
+				return statementCaching(dataSourceFactory.createDataSource(props), configuration, name);
 			case CONNECTIONPOOLDATASOURCE:
 				return dataSourceFactory.createConnectionPoolDataSource(props);
 			case XADATASOURCE:
 				return ConnectionPoolDataSourceXaAdapter.on(dataSourceFactory.createXADataSource(props));
 			case DRIVER:
 				props.remove(DataSourceFactory.JDBC_URL);
-				return ConnectionPoolDataSourceAdapter.on(DataSourceAdapter.on(dataSourceFactory.createDriver(new Properties()), 
-					configuration.url(), props));
+				return statementCaching(DataSourceAdapter.on(dataSourceFactory.createDriver(new Properties()), 
+					url, props), configuration, name);
 			default:
 				throw new IllegalArgumentException();
 		}
 	}
 	
+	private ConnectionPoolDataSource statementCaching(DataSource dataSource, DataSourceConfiguration configuration, String name) {
+		ConnectionPoolDataSource connectionPoolDataSource = ConnectionPoolDataSourceAdapter.on(dataSource, configuration.statementCacheSize());
+		if (configuration.statementCacheSize() > 0) {
+			publish(name, (CountsSupplier) connectionPoolDataSource);
+		}
+		return connectionPoolDataSource;
+	}
+	
 	private String[] parseProperty(String property) {
 		String[] parts = property.split("=", 2);
 		if (parts.length != 2) {
@@ -146,8 +322,6 @@ public class DataSourceProvider {
 	
 	@Deactivate 
 	public synchronized void deactivate() {
-		dataSource.close();
-		registration.unregister();
-		registration = null;
+		release();
 	}
 }
@@ -2,7 +2,7 @@
  * Jdbc Connection Pool with DataSource interface
  */
 
-@Version("2.3.0")
+@Version("2.4.0")
 package com.amplifino.nestor.jdbc.pools;
 
 import org.osgi.annotation.versioning.Version;
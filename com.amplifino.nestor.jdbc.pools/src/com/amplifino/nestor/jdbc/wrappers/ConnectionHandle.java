@@ -3,21 +3,79 @@ package com.amplifino.nestor.jdbc.wrappers;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.Executor;
 
+import javax.sql.PooledConnection;
+import javax.sql.StatementEvent;
+import javax.sql.StatementEventListener;
+
+/**
+ * connection handed out by a pooled connection.
+ * The handle keeps track of the statements it created and closes them, and their last result set, when the handle is closed.
+ * Statements are kept in a small array compared by identity and guarded by a private lock,
+ * so that a handle can be shared between threads and every statement costs a single wrapper.
+ */
 public class ConnectionHandle extends ConnectionWrapper {
 	
-	private final Set<Statement> statements = new HashSet<>();
+	// session properties changed through this handle
+	private static final int AUTOCOMMIT = 1;
+	private static final int ISOLATION = 2;
+	private static final int READONLY = 4;
+	private static final int CATALOG = 8;
+	private static final int SCHEMA = 16;
+	private static final int CLIENTINFO = 32;
+	private static final int NETWORKTIMEOUT = 64;
+	
+	private final Object lock = new Object();
+	// open statements in statements[0 .. statementCount - 1], allocated on the first statement
+	private TrackedStatement[] statements;
+	private int statementCount = 0;
+	private boolean closed = false;
+	private int changed = 0;
+	// the values to restore, read before the first change
+	private boolean autoCommit;
+	private int isolation;
+	private boolean readOnly;
+	private String catalog;
+	private String schema;
+	private Properties clientInfo;
+	private int networkTimeout;
+	private Executor networkTimeoutExecutor;
+	private final PooledConnection pooledConnection;
+	private final Collection<StatementEventListener> statementEventListeners;
 	
 	public ConnectionHandle(Connection connection) {
-		super(connection);
+		this(connection, Connection::close);
 	}
 	
 	public ConnectionHandle(Connection connection, SqlConsumer<Connection> onClose) {
 		super(connection, onClose);
+		this.pooledConnection = null;
+		this.statementEventListeners = Collections.emptyList();
+	}
+	
+	/**
+	 * creates a handle that reports prepared statement events to the listeners.
+	 * statementClosed is sent when a prepared statement is closed, either by the application or by closing the handle,
+	 * statementErrorOccurred when executing a prepared statement throws a SQLException.
+	 * The statement in the event is the statement obtained from the wrapped connection.
+	 * @param connection the physical connection
+	 * @param onClose called when the handle is closed
+	 * @param pooledConnection the source of the events
+	 * @param statementEventListeners live view of the listeners, e.g. a CopyOnWriteArrayList
+	 */
+	public ConnectionHandle(Connection connection, SqlConsumer<Connection> onClose, PooledConnection pooledConnection, Collection<StatementEventListener> statementEventListeners) {
+		super(connection, onClose);
+		this.pooledConnection = pooledConnection;
+		this.statementEventListeners = statementEventListeners;
 	}
 	
 	@Override
@@ -35,9 +93,8 @@ public class ConnectionHandle extends ConnectionWrapper {
 		return track(super.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
 	}
 	
-	private Statement track(Statement statement) {
-		statements.add(statement);
-		return new StatementWrapper(statement, this::close);
+	private Statement track(Statement statement) throws SQLException {
+		return register(new TrackedStatementWrapper(statement, this));
 	}
 	
 	@Override
@@ -56,8 +113,7 @@ public class ConnectionHandle extends ConnectionWrapper {
 	};
 	
 	private CallableStatement trackCallable(CallableStatement statement) throws SQLException {
-		statements.add(statement);
-		return new CallableStatementWrapper(statement, this::close);
+		return register(new TrackedCallableStatement(statement, this));
 	}
 	
 	@Override
@@ -90,25 +146,227 @@ public class ConnectionHandle extends ConnectionWrapper {
 		return trackPrepared(super.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
 	}
 	
-	private PreparedStatement trackPrepared(PreparedStatement statement) {
-		statements.add(statement);
-		return new PreparedStatementWrapper(statement, this::close);
+	private PreparedStatement trackPrepared(PreparedStatement statement) throws SQLException {
+		return register(new TrackedPreparedStatement(statement, this));
+	}
+	
+	private <S extends TrackedStatement> S register(S statement) throws SQLException {
+		synchronized (lock) {
+			if (!closed) {
+				if (statements == null) {
+					statements = new TrackedStatement[4];
+				} else if (statementCount == statements.length) {
+					statements = Arrays.copyOf(statements, statementCount * 2);
+				}
+				statements[statementCount++] = statement;
+				return statement;
+			}
+		}
+		// the handle was closed by another thread
+		statement.closeTracked();
+		throw new SQLException("Connection is closed");
+	}
+	
+	private boolean untrack(TrackedStatement statement) {
+		synchronized (lock) {
+			// statements are usually closed in reverse order of creation
+			for (int i = statementCount - 1 ; i >= 0 ; i--) {
+				if (statements[i] == statement) {
+					statements[i] = statements[--statementCount];
+					statements[statementCount] = null;
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+	
+	private boolean change(int property) {
+		if ((changed & property) == 0) {
+			changed |= property;
+			return true;
+		} else {
+			return false;
+		}
+	}
+	
+	@Override
+	public void setAutoCommit(boolean autoCommit) throws SQLException {
+		if (change(AUTOCOMMIT)) {
+			this.autoCommit = super.getAutoCommit();
+		}
+		super.setAutoCommit(autoCommit);
+	}
+	
+	@Override
+	public void setTransactionIsolation(int level) throws SQLException {
+		if (change(ISOLATION)) {
+			this.isolation = super.getTransactionIsolation();
+		}
+		super.setTransactionIsolation(level);
+	}
+	
+	@Override
+	public void setReadOnly(boolean readOnly) throws SQLException {
+		if (change(READONLY)) {
+			this.readOnly = super.isReadOnly();
+		}
+		super.setReadOnly(readOnly);
+	}
+	
+	@Override
+	public void setCatalog(String catalog) throws SQLException {
+		if (change(CATALOG)) {
+			this.catalog = super.getCatalog();
+		}
+		super.setCatalog(catalog);
+	}
+	
+	@Override
+	public void setSchema(String schema) throws SQLException {
+		if (change(SCHEMA)) {
+			this.schema = super.getSchema();
+		}
+		super.setSchema(schema);
+	}
+	
+	@Override
+	public void setClientInfo(String name, String value) throws SQLClientInfoException {
+		saveClientInfo();
+		super.setClientInfo(name, value);
+	}
+	
+	@Override
+	public void setClientInfo(Properties properties) throws SQLClientInfoException {
+		saveClientInfo();
+		super.setClientInfo(properties);
+	}
+	
+	private void saveClientInfo() throws SQLClientInfoException {
+		if (change(CLIENTINFO)) {
+			try {
+				Properties properties = new Properties();
+				properties.putAll(super.getClientInfo());
+				this.clientInfo = properties;
+			} catch (SQLException e) {
+				changed &= ~CLIENTINFO;
+				throw new SQLClientInfoException(e.getMessage(), e.getSQLState(), e.getErrorCode(), Collections.emptyMap(), e);
+			}
+		}
+	}
+	
+	@Override
+	public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+		if (change(NETWORKTIMEOUT)) {
+			this.networkTimeout = super.getNetworkTimeout();
+		}
+		this.networkTimeoutExecutor = executor;
+		super.setNetworkTimeout(executor, milliseconds);
+	}
+	
+	/**
+	 * restores the session properties changed through this handle to their value before the first change:
+	 * auto commit, transaction isolation, read only, catalog, schema, client info and network timeout.
+	 * Properties that were not changed are not touched, so that a lease that did not change anything costs no round trips.
+	 * @throws SQLException if the connection fails to restore a property
+	 */
+	public void resetState() throws SQLException {
+		if (changed == 0) {
+			return;
+		}
+		int properties = changed;
+		changed = 0;
+		// restore auto commit first, so that the other properties are not changed in the middle of a transaction
+		if ((properties & AUTOCOMMIT) != 0 && super.getAutoCommit() != autoCommit) {
+			super.setAutoCommit(autoCommit);
+		}
+		if ((properties & ISOLATION) != 0) {
+			super.setTransactionIsolation(isolation);
+		}
+		if ((properties & READONLY) != 0) {
+			super.setReadOnly(readOnly);
+		}
+		if ((properties & CATALOG) != 0) {
+			super.setCatalog(catalog);
+		}
+		if ((properties & SCHEMA) != 0) {
+			super.setSchema(schema);
+		}
+		if ((properties & CLIENTINFO) != 0) {
+			super.setClientInfo(clientInfo);
+			clientInfo = null;
+		}
+		if ((properties & NETWORKTIMEOUT) != 0) {
+			super.setNetworkTimeout(networkTimeoutExecutor, networkTimeout);
+			networkTimeoutExecutor = null;
+		}
+	}
+	
+	@Override
+	public boolean isClosed() throws SQLException {
+		synchronized (lock) {
+			if (closed) {
+				return true;
+			}
+		}
+		return super.isClosed();
 	}
 	
 	@Override
 	public void close() throws SQLException {
-		for (Statement statement : statements) {
+		TrackedStatement[] open;
+		int openCount;
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			open = statements;
+			openCount = statementCount;
+			statements = null;
+			statementCount = 0;
+		}
+		for (int i = 0 ; i < openCount ; i++) {
 			try {
-				statement.close();
+				open[i].closeTracked();
 			} catch (SQLException e) {
 			}
+			statementClosed(open[i].statement());
 		}
 		super.close();
 	}
 	
-	private void close(Statement statement) throws SQLException {
-		statements.remove(statement);
-		statement.close();
+	void close(TrackedStatement statement) throws SQLException {
+		if (untrack(statement)) {
+			try {
+				statement.closeTracked();
+			} finally {
+				statementClosed(statement.statement());
+			}
+		}
+	}
+	
+	static void close(ResultSet resultSet) {
+		if (resultSet != null) {
+			try {
+				resultSet.close();
+			} catch (SQLException e) {
+			}
+		}
+	}
+	
+	private void statementClosed(Statement statement) {
+		if (pooledConnection != null && statement instanceof PreparedStatement && !statementEventListeners.isEmpty()) {
+			StatementEvent event = new StatementEvent(pooledConnection, (PreparedStatement) statement);
+			statementEventListeners.forEach(listener -> listener.statementClosed(event));
+		}
+	}
+	
+	void statementErrorOccurred(PreparedStatement statement, SQLException exception) {
+		if (!statementEventListeners.isEmpty()) {
+			StatementEvent event = new StatementEvent(pooledConnection, statement, exception);
+			statementEventListeners.forEach(listener -> listener.statementErrorOccurred(event));
+		}
 	}
 	
 	
@@ -0,0 +1,52 @@
+package com.amplifino.nestor.jdbc.wrappers;
+
+import java.sql.CallableStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+final class TrackedCallableStatement extends CallableStatementWrapper implements TrackedStatement {
+
+	private final CallableStatement statement;
+	private final ConnectionHandle handle;
+	// the last result set returned to the application
+	private volatile ResultSet resultSet;
+
+	TrackedCallableStatement(CallableStatement statement, ConnectionHandle handle) {
+		super(statement);
+		this.statement = statement;
+		this.handle = handle;
+	}
+
+	@Override
+	public Statement statement() {
+		return statement;
+	}
+
+	@Override
+	public ResultSet executeQuery() throws SQLException {
+		return resultSet = statement.executeQuery();
+	}
+
+	@Override
+	public ResultSet executeQuery(String sql) throws SQLException {
+		return resultSet = statement.executeQuery(sql);
+	}
+
+	@Override
+	public ResultSet getResultSet() throws SQLException {
+		return resultSet = statement.getResultSet();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		handle.close(this);
+	}
+
+	@Override
+	public void closeTracked() throws SQLException {
+		ConnectionHandle.close(resultSet);
+		resultSet = null;
+		statement.close();
+	}
+}
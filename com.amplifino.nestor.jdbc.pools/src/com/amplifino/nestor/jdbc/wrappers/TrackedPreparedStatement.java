@@ -0,0 +1,109 @@
+package com.amplifino.nestor.jdbc.wrappers;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * prepared statement of a connection handle, reporting execution errors as statement events
+ */
+final class TrackedPreparedStatement extends PreparedStatementWrapper implements TrackedStatement {
+
+	private final PreparedStatement statement;
+	private final ConnectionHandle handle;
+	// the last result set returned to the application
+	private volatile ResultSet resultSet;
+
+	TrackedPreparedStatement(PreparedStatement statement, ConnectionHandle handle) {
+		super(statement);
+		this.statement = statement;
+		this.handle = handle;
+	}
+
+	@Override
+	public Statement statement() {
+		return statement;
+	}
+
+	private SQLException error(SQLException e) {
+		handle.statementErrorOccurred(statement, e);
+		return e;
+	}
+
+	@Override
+	public boolean execute() throws SQLException {
+		try {
+			return statement.execute();
+		} catch (SQLException e) {
+			throw error(e);
+		}
+	}
+
+	@Override
+	public ResultSet executeQuery() throws SQLException {
+		try {
+			return resultSet = statement.executeQuery();
+		} catch (SQLException e) {
+			throw error(e);
+		}
+	}
+
+	@Override
+	public ResultSet executeQuery(String sql) throws SQLException {
+		return resultSet = statement.executeQuery(sql);
+	}
+
+	@Override
+	public ResultSet getResultSet() throws SQLException {
+		return resultSet = statement.getResultSet();
+	}
+
+	@Override
+	public int executeUpdate() throws SQLException {
+		try {
+			return statement.executeUpdate();
+		} catch (SQLException e) {
+			throw error(e);
+		}
+	}
+
+	@Override
+	public long executeLargeUpdate() throws SQLException {
+		try {
+			return statement.executeLargeUpdate();
+		} catch (SQLException e) {
+			throw error(e);
+		}
+	}
+
+	@Override
+	public int[] executeBatch() throws SQLException {
+		try {
+			return statement.executeBatch();
+		} catch (SQLException e) {
+			throw error(e);
+		}
+	}
+
+	@Override
+	public long[] executeLargeBatch() throws SQLException {
+		try {
+			return statement.executeLargeBatch();
+		} catch (SQLException e) {
+			throw error(e);
+		}
+	}
+
+	@Override
+	public void close() throws SQLException {
+		handle.close(this);
+	}
+
+	@Override
+	public void closeTracked() throws SQLException {
+		ConnectionHandle.close(resultSet);
+		resultSet = null;
+		statement.close();
+	}
+}
@@ -0,0 +1,21 @@
+package com.amplifino.nestor.jdbc.wrappers;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * statement handed out by a ConnectionHandle, closed by the handle when the application does not close it
+ */
+interface TrackedStatement {
+
+	/**
+	 * @return the statement obtained from the wrapped connection
+	 */
+	Statement statement();
+
+	/**
+	 * closes the last result set obtained from the statement and the statement itself
+	 * @throws SQLException if the statement fails to close
+	 */
+	void closeTracked() throws SQLException;
+}
@@ -1,7 +1,7 @@
 /**
  * Various Connection and DataSource wrappers
  */
-@Version("2.0.0")
+@Version("2.1.0")
 package com.amplifino.nestor.jdbc.wrappers;
 
 import org.osgi.annotation.versioning.Version;
@@ -0,0 +1,143 @@
+package com.amplifino.nestor.adapters;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.PooledConnection;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amplifino.counters.Counts;
+import com.amplifino.counters.CountsSupplier;
+
+public class StatementCachingConnectionTest {
+
+	private ConnectionPoolDataSource dataSource;
+	private PooledConnection pooledConnection;
+
+	@Before
+	public void setup() throws SQLException {
+		JdbcDataSource h2 = new JdbcDataSource();
+		h2.setURL("jdbc:h2:mem:");
+		dataSource = ConnectionPoolDataSourceAdapter.on(h2, 2);
+		pooledConnection = dataSource.getPooledConnection();
+		try (Connection connection = pooledConnection.getConnection()) {
+			try (Statement statement = connection.createStatement()) {
+				statement.executeUpdate("create table test (id integer not null primary key)");
+			}
+		}
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		pooledConnection.close();
+	}
+
+	private Counts counts() {
+		return ((CountsSupplier) dataSource).counts();
+	}
+
+	private void prepareAndClose(String sql) throws SQLException {
+		try (Connection connection = pooledConnection.getConnection()) {
+			connection.prepareStatement(sql).close();
+		}
+	}
+
+	@Test
+	public void testHitAndMiss() throws SQLException {
+		prepareAndClose("select 1");
+		Assert.assertEquals(1, counts().get(StatementCacheStats.MISSES));
+		prepareAndClose("select 1");
+		Assert.assertEquals(1, counts().get(StatementCacheStats.HITS));
+		// other options are another statement
+		try (Connection connection = pooledConnection.getConnection()) {
+			connection.prepareStatement("select 1", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY).close();
+		}
+		Assert.assertEquals(2, counts().get(StatementCacheStats.MISSES));
+		// an open statement is not shared
+		try (Connection connection = pooledConnection.getConnection()) {
+			PreparedStatement first = connection.prepareStatement("select 1");
+			PreparedStatement second = connection.prepareStatement("select 1");
+			Assert.assertEquals(3, counts().get(StatementCacheStats.MISSES));
+			first.close();
+			// an equal statement is already cached
+			second.close();
+			Assert.assertEquals(1, counts().get(StatementCacheStats.DISCARDS));
+		}
+		Assert.assertEquals(2, counts().get(StatementCacheStats.HITS));
+	}
+
+	@Test
+	public void testEviction() throws SQLException {
+		prepareAndClose("select 1");
+		prepareAndClose("select 2");
+		prepareAndClose("select 3");
+		// cache size 2, select 1 is the least recently used
+		Assert.assertEquals(1, counts().get(StatementCacheStats.EVICTIONS));
+		prepareAndClose("select 2");
+		Assert.assertEquals(1, counts().get(StatementCacheStats.HITS));
+		prepareAndClose("select 1");
+		Assert.assertEquals(4, counts().get(StatementCacheStats.MISSES));
+		// select 3 is now the least recently used
+		Assert.assertEquals(2, counts().get(StatementCacheStats.EVICTIONS));
+		prepareAndClose("select 2");
+		Assert.assertEquals(2, counts().get(StatementCacheStats.HITS));
+		prepareAndClose("select 3");
+		Assert.assertEquals(5, counts().get(StatementCacheStats.MISSES));
+	}
+
+	@Test
+	public void testDiscardOnError() throws SQLException {
+		String sql = "insert into test (id) values(?)";
+		try (Connection connection = pooledConnection.getConnection()) {
+			try (PreparedStatement statement = connection.prepareStatement(sql)) {
+				statement.setInt(1, 1);
+				statement.executeUpdate();
+			}
+			try (PreparedStatement statement = connection.prepareStatement(sql)) {
+				statement.setInt(1, 1);
+				statement.executeUpdate();
+				Assert.fail();
+			} catch (SQLException e) {
+			}
+		}
+		Assert.assertEquals(1, counts().get(StatementCacheStats.HITS));
+		Assert.assertEquals(1, counts().get(StatementCacheStats.DISCARDS));
+		prepareAndClose(sql);
+		Assert.assertEquals(2, counts().get(StatementCacheStats.MISSES));
+	}
+
+	@Test
+	public void testRestoreOptions() throws SQLException {
+		int maxRows;
+		int queryTimeout;
+		try (Connection connection = pooledConnection.getConnection()) {
+			PreparedStatement statement = connection.prepareStatement("select 1");
+			maxRows = statement.getMaxRows();
+			queryTimeout = statement.getQueryTimeout();
+			statement.setMaxRows(maxRows + 1);
+			statement.setQueryTimeout(queryTimeout + 5);
+			statement.close();
+		}
+		try (Connection connection = pooledConnection.getConnection()) {
+			try (PreparedStatement statement = connection.prepareStatement("select 1")) {
+				Assert.assertEquals(1, counts().get(StatementCacheStats.HITS));
+				Assert.assertEquals(maxRows, statement.getMaxRows());
+				Assert.assertEquals(queryTimeout, statement.getQueryTimeout());
+				// options that can not be restored
+				statement.setCursorName("cursor");
+			}
+		}
+		Assert.assertEquals(1, counts().get(StatementCacheStats.DISCARDS));
+		prepareAndClose("select 1");
+		Assert.assertEquals(2, counts().get(StatementCacheStats.MISSES));
+	}
+}
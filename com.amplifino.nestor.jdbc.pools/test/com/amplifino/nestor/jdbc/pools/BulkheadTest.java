@@ -0,0 +1,152 @@
+package com.amplifino.nestor.jdbc.pools;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BulkheadTest {
+
+	private JdbcDataSource dataSource;
+
+	@Before
+	public void setup() {
+		dataSource = new JdbcDataSource();
+		dataSource.setUrl("jdbc:h2:mem:bulkhead;DB_CLOSE_DELAY=-1");
+	}
+
+	// maxSize 3, partitions a and b reserve 1 each and share a surplus of 1
+	private PoolDataSource.Builder builder() {
+		return PoolDataSource.builder(dataSource)
+			.maxSize(3)
+			.partition("a", 1, 2)
+			.partition("b", 1, 2);
+	}
+
+	@Test
+	public void testQuota() throws SQLException {
+		PoolDataSource pool = builder().maxWait(50, TimeUnit.MILLISECONDS).build();
+		Partition a = pool.partition("a").get();
+		Connection first = a.getConnection();
+		Connection second = a.getConnection();
+		Assert.assertEquals(2, a.inUse());
+		Assert.assertEquals(2, a.counts().get(Partition.Stats.BORROWS));
+		Assert.assertEquals(1, a.counts().get(Partition.Stats.SURPLUSBORROWS));
+		// at limit
+		try {
+			a.getConnection();
+			Assert.fail();
+		} catch (NoSuchElementException e) {
+		}
+		Assert.assertEquals(1, a.counts().get(Partition.Stats.TIMEOUTS));
+		// b still obtains its reservation
+		Connection reserved = pool.partition("b").get().getConnection();
+		reserved.close();
+		second.close();
+		first.close();
+		Assert.assertEquals(0, a.inUse());
+		pool.close();
+	}
+
+	@Test
+	public void testSurplus() throws SQLException, InterruptedException, ExecutionException {
+		PoolDataSource pool = builder().maxWait(50, TimeUnit.MILLISECONDS).build();
+		Partition a = pool.partition("a").get();
+		Partition b = pool.partition("b").get();
+		Connection reserved = a.getConnection();
+		Connection surplus = a.getConnection();
+		Connection other = b.getConnection();
+		// the surplus is taken by a
+		long start = System.nanoTime();
+		try {
+			b.getConnection();
+			Assert.fail();
+		} catch (NoSuchElementException e) {
+		}
+		Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+		Assert.assertEquals(1, b.counts().get(Partition.Stats.TIMEOUTS));
+		// releasing the surplus admits a waiter of b
+		CompletableFuture<Connection> waiter = b.getConnectionAsync();
+		Assert.assertFalse(waiter.isDone());
+		surplus.close();
+		Connection borrowed = waiter.get();
+		Assert.assertEquals(2, b.inUse());
+		Assert.assertEquals(1, b.counts().get(Partition.Stats.SURPLUSBORROWS));
+		borrowed.close();
+		other.close();
+		reserved.close();
+		pool.close();
+	}
+
+	@Test
+	public void testTimeout() throws SQLException, InterruptedException {
+		PoolDataSource pool = builder().maxWait(50, TimeUnit.MILLISECONDS).build();
+		Partition a = pool.partition("a").get();
+		Connection first = a.getConnection();
+		Connection second = a.getConnection();
+		CompletableFuture<Connection> waiter = a.getConnectionAsync();
+		try {
+			waiter.get();
+			Assert.fail();
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof NoSuchElementException);
+		}
+		Assert.assertEquals(1, a.counts().get(Partition.Stats.WAITS));
+		// counted after the future failed
+		awaitCount(a, Partition.Stats.TIMEOUTS, 1);
+		// the timed out waiter holds no quota
+		first.close();
+		Connection third = a.getConnection();
+		third.close();
+		second.close();
+		Assert.assertEquals(0, a.inUse());
+		pool.close();
+	}
+
+	@Test
+	public void testClose() throws SQLException, InterruptedException {
+		// no maxWait, borrowers wait until quota is released or the pool is closed
+		PoolDataSource pool = builder().build();
+		Partition a = pool.partition("a").get();
+		Connection first = a.getConnection();
+		Connection second = a.getConnection();
+		CompletableFuture<Connection> waiter = a.getConnectionAsync();
+		CompletableFuture<Throwable> blocked = new CompletableFuture<>();
+		Thread thread = new Thread(() -> {
+			try {
+				a.getConnection().close();
+				blocked.complete(null);
+			} catch (Throwable e) {
+				blocked.complete(e);
+			}
+		});
+		thread.start();
+		awaitCount(a, Partition.Stats.WAITS, 2);
+		pool.close();
+		thread.join(1000);
+		Assert.assertFalse(thread.isAlive());
+		Assert.assertTrue(blocked.join() instanceof IllegalStateException);
+		Assert.assertTrue(waiter.isCompletedExceptionally());
+		try {
+			a.getConnection();
+			Assert.fail();
+		} catch (IllegalStateException e) {
+		}
+		second.close();
+		first.close();
+	}
+
+	private void awaitCount(Partition partition, Partition.Stats key, long count) throws InterruptedException {
+		for (int i = 0 ; i < 100 && partition.counts().get(key) < count; i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(count, partition.counts().get(key));
+	}
+}
@@ -0,0 +1,142 @@
+package com.amplifino.nestor.jdbc.pools;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.PooledConnection;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RoutingDataSourceTest {
+
+	private final FailingDataSource primary = new FailingDataSource("primary");
+	private final FailingDataSource replica1 = new FailingDataSource("replica1");
+	private final FailingDataSource replica2 = new FailingDataSource("replica2");
+
+	private RoutingDataSource.Builder builder(int replicaSize) {
+		return RoutingDataSource.builder(PoolDataSource.builder(primary).maxSize(4).build())
+			.replica(PoolDataSource.builder(replica1).maxSize(replicaSize).build())
+			.replica(PoolDataSource.builder(replica2).maxSize(replicaSize).build());
+	}
+
+	@Test
+	public void testLeastOutstanding() throws SQLException {
+		RoutingDataSource routing = builder(4).build();
+		Connection first = routing.getReadOnlyConnection();
+		Connection second = routing.getReadOnlyConnection();
+		Assert.assertNotEquals(host(first), host(second));
+		String secondHost = host(second);
+		second.close();
+		// the other replica still has an outstanding connection
+		for (int i = 0 ; i < 4 ; i++) {
+			try (Connection connection = routing.getReadOnlyConnection()) {
+				Assert.assertEquals(secondHost, host(connection));
+			}
+		}
+		first.close();
+		try (Connection connection = routing.getConnection()) {
+			Assert.assertEquals("primary", host(connection));
+		}
+		Assert.assertEquals(1, routing.counts().get(RoutingDataSource.Stats.WRITES));
+		Assert.assertEquals(6, routing.counts().get(RoutingDataSource.Stats.READS));
+		Assert.assertEquals(0, routing.counts().get(RoutingDataSource.Stats.FALLBACKS));
+		routing.close();
+	}
+
+	@Test
+	public void testQuarantine() throws SQLException, InterruptedException {
+		RoutingDataSource routing = builder(4).quarantine(100, TimeUnit.MILLISECONDS).build();
+		replica1.failing = true;
+		for (int i = 0 ; i < 4 ; i++) {
+			try (Connection connection = routing.getReadOnlyConnection()) {
+				Assert.assertEquals("replica2", host(connection));
+			}
+		}
+		Assert.assertEquals(1, routing.counts().get(RoutingDataSource.Stats.FAILURES));
+		Assert.assertEquals(1, routing.counts().get(RoutingDataSource.Stats.QUARANTINES));
+		// quarantined replicas are not tried, even when they recover
+		replica1.failing = false;
+		Connection first = routing.getReadOnlyConnection();
+		Connection second = routing.getReadOnlyConnection();
+		Assert.assertEquals("replica2", host(first));
+		Assert.assertEquals("replica2", host(second));
+		second.close();
+		first.close();
+		Thread.sleep(150);
+		// quarantine expired
+		first = routing.getReadOnlyConnection();
+		second = routing.getReadOnlyConnection();
+		Assert.assertNotEquals(host(first), host(second));
+		second.close();
+		first.close();
+		Assert.assertEquals(1, routing.counts().get(RoutingDataSource.Stats.QUARANTINES));
+		Assert.assertEquals(0, routing.counts().get(RoutingDataSource.Stats.FALLBACKS));
+		routing.close();
+	}
+
+	@Test
+	public void testFallback() throws SQLException {
+		RoutingDataSource routing = builder(1).replicaWait(20, TimeUnit.MILLISECONDS).build();
+		replica1.failing = true;
+		replica2.failing = true;
+		try (Connection connection = routing.getReadOnlyConnection()) {
+			Assert.assertEquals("primary", host(connection));
+		}
+		Assert.assertEquals(2, routing.counts().get(RoutingDataSource.Stats.QUARANTINES));
+		Assert.assertEquals(1, routing.counts().get(RoutingDataSource.Stats.FALLBACKS));
+		// both quarantined, the primary serves without trying the replicas
+		try (Connection connection = routing.readOnly().getConnection()) {
+			Assert.assertEquals("primary", host(connection));
+		}
+		Assert.assertEquals(2, routing.counts().get(RoutingDataSource.Stats.FAILURES));
+		Assert.assertEquals(2, routing.counts().get(RoutingDataSource.Stats.FALLBACKS));
+		routing.close();
+	}
+
+	@Test
+	public void testBusyFallback() throws SQLException {
+		RoutingDataSource routing = builder(1).replicaWait(20, TimeUnit.MILLISECONDS).build();
+		Connection first = routing.getReadOnlyConnection();
+		Connection second = routing.getReadOnlyConnection();
+		// both replica pools exhausted
+		try (Connection connection = routing.getReadOnlyConnection()) {
+			Assert.assertEquals("primary", host(connection));
+		}
+		Assert.assertEquals(2, routing.counts().get(RoutingDataSource.Stats.BUSY));
+		Assert.assertEquals(0, routing.counts().get(RoutingDataSource.Stats.QUARANTINES));
+		Assert.assertEquals(1, routing.counts().get(RoutingDataSource.Stats.FALLBACKS));
+		second.close();
+		first.close();
+		// busy replicas are not quarantined
+		try (Connection connection = routing.getReadOnlyConnection()) {
+			Assert.assertNotEquals("primary", host(connection));
+		}
+		routing.close();
+	}
+
+	private String host(Connection connection) throws SQLException {
+		// the url without settings
+		return connection.getMetaData().getURL().substring("jdbc:h2:mem:routing-".length());
+	}
+
+	private static final class FailingDataSource extends JdbcDataSource {
+		private static final long serialVersionUID = 1L;
+
+		private volatile boolean failing = false;
+
+		FailingDataSource(String name) {
+			setURL("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1");
+		}
+
+		@Override
+		public PooledConnection getPooledConnection() throws SQLException {
+			if (failing) {
+				throw new SQLException("Host down");
+			}
+			return super.getPooledConnection();
+		}
+	}
+}
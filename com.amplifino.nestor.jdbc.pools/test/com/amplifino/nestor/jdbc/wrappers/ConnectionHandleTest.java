@@ -0,0 +1,127 @@
+package com.amplifino.nestor.jdbc.wrappers;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amplifino.nestor.adapters.ConnectionPoolDataSourceAdapter;
+import com.amplifino.nestor.jdbc.pools.PoolDataSource;
+import com.amplifino.pools.Pool;
+
+public class ConnectionHandleTest {
+
+	@Test
+	public void testResetChanged() throws SQLException {
+		StubConnection stub = new StubConnection();
+		ConnectionHandle handle = new ConnectionHandle(stub.connection);
+		handle.setAutoCommit(false);
+		handle.setReadOnly(true);
+		handle.setReadOnly(false);
+		handle.setReadOnly(true);
+		stub.calls.clear();
+		handle.resetState();
+		Assert.assertEquals(Arrays.asList("getAutoCommit", "setAutoCommit", "setReadOnly"), stub.calls);
+		Assert.assertEquals(true, stub.state.get("AutoCommit"));
+		Assert.assertEquals(false, stub.state.get("ReadOnly"));
+		// nothing changed since the reset
+		stub.calls.clear();
+		handle.resetState();
+		Assert.assertEquals(Collections.emptyList(), stub.calls);
+	}
+
+	@Test
+	public void testResetUnchanged() throws SQLException {
+		StubConnection stub = new StubConnection();
+		ConnectionHandle handle = new ConnectionHandle(stub.connection);
+		handle.getAutoCommit();
+		handle.isReadOnly();
+		stub.calls.clear();
+		handle.resetState();
+		Assert.assertEquals(Collections.emptyList(), stub.calls);
+	}
+
+	@Test
+	public void testResetCommitted() throws SQLException {
+		StubConnection stub = new StubConnection();
+		ConnectionHandle handle = new ConnectionHandle(stub.connection);
+		handle.setAutoCommit(false);
+		handle.setAutoCommit(true);
+		stub.calls.clear();
+		handle.resetState();
+		// auto commit is back to its original value, no need to set it
+		Assert.assertEquals(Arrays.asList("getAutoCommit"), stub.calls);
+	}
+
+	@Test
+	public void testFailedResetEvicts() throws SQLException {
+		List<StubConnection> stubs = new ArrayList<>();
+		DataSource dataSource = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { DataSource.class }, (proxy, method, args) -> {
+			if (method.getName().equals("getConnection")) {
+				StubConnection stub = new StubConnection();
+				stubs.add(stub);
+				return stub.connection;
+			}
+			throw new UnsupportedOperationException(method.getName());
+		});
+		PoolDataSource pool = PoolDataSource.builder(ConnectionPoolDataSourceAdapter.on(dataSource)).skipIsValid().build();
+		Connection connection = pool.getConnection();
+		connection.setReadOnly(true);
+		stubs.get(0).failing = "setReadOnly";
+		try {
+			connection.close();
+			Assert.fail();
+		} catch (SQLException e) {
+		}
+		Assert.assertEquals(1, pool.counts().get(Pool.Stats.EVICTIONS));
+		Assert.assertTrue(stubs.get(0).state.containsKey("Closed"));
+		// a fresh physical connection
+		try (Connection next = pool.getConnection()) {
+			Assert.assertEquals(2, stubs.size());
+		}
+		Assert.assertEquals(1, pool.counts().get(Pool.Stats.EVICTIONS));
+		pool.close();
+	}
+
+	// records the calls on a connection with get and set properties
+	private static final class StubConnection {
+		private final List<String> calls = new ArrayList<>();
+		private final Map<String, Object> state = new HashMap<>();
+		private volatile String failing;
+		private final Connection connection;
+
+		StubConnection() {
+			state.put("AutoCommit", true);
+			state.put("ReadOnly", false);
+			connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+				String name = method.getName();
+				calls.add(name);
+				if (name.equals(failing)) {
+					throw new SQLException(name + " failed");
+				}
+				if (name.startsWith("set")) {
+					state.put(name.substring(3), args[0]);
+					return null;
+				} else if (name.startsWith("get")) {
+					return state.get(name.substring(3));
+				} else if (name.startsWith("is")) {
+					return state.getOrDefault(name.substring(2), false);
+				} else if (name.equals("close")) {
+					state.put("Closed", true);
+					return null;
+				}
+				throw new UnsupportedOperationException(name);
+			});
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.amplifino.nestor.jms.impl;
 
+import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 
 @ObjectClassDefinition
@@ -9,4 +10,6 @@ public @interface MessageProducerPoolConfiguration {
 	String destination();
 	int maxIdle() default 0;
 	int maxSize() default 0;
+	@AttributeDefinition(description="Number of stripes to shard idle producers over, -1 for one stripe per processor, 0 or 1 to disable")
+	int stripes() default 0;
 }
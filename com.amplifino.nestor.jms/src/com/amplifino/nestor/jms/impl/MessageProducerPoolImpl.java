@@ -12,15 +12,17 @@ import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.metatype.annotations.Designate;
 
+import com.amplifino.counters.Counts;
+import com.amplifino.counters.CountsSupplier;
 import com.amplifino.nestor.jms.MessageProducerLease;
 import com.amplifino.nestor.jms.MessageProducerPool;
 import com.amplifino.nestor.jms.MessageSend;
 import com.amplifino.nestor.jms.UncheckedJMSException;
 import com.amplifino.pools.Pool;
 
-@Component
+@Component(service={MessageProducerPool.class, CountsSupplier.class})
 @Designate(ocd=MessageProducerPoolConfiguration.class, factory=true)
-public class MessageProducerPoolImpl implements MessageProducerPool {
+public class MessageProducerPoolImpl implements MessageProducerPool, CountsSupplier {
 	
 	@Reference
 	private Connection connection;
@@ -43,6 +45,11 @@ public class MessageProducerPoolImpl implements MessageProducerPool {
 		if (config.maxSize() > 0) {
 			builder.maxSize(config.maxSize()); 
 		}
+		if (config.stripes() > 1) {
+			builder.striped(config.stripes());
+		} else if (config.stripes() < 0) {
+			builder.striped();
+		}
 		pool = builder.build();
 	}
 	
@@ -65,6 +72,11 @@ public class MessageProducerPoolImpl implements MessageProducerPool {
 		}
 	}
 	
+	@Override
+	public Counts counts() {
+		return pool.counts();
+	}
+	
 	private MessageProducerPair allocate() {
 		return new MessageProducerPair(connection, destination);
 	}
@@ -0,0 +1,91 @@
+package com.amplifino.nestor.metrics;
+
+import java.util.Arrays;
+
+import com.amplifino.counters.Accumulate;
+import com.amplifino.counters.CountsSupplier;
+
+/**
+ * the sources counting the keys of the same enum type.
+ * Metric names are derived once from the enum, e.g. Pool.Stats.BORROWS becomes pool_stats_borrows_total.
+ * Keys accumulated as maximum are exported as gauge instead of counter.
+ */
+final class MetricFamily {
+
+	private final Class<?> type;
+	private final String name;
+	private final Enum<?>[] keys;
+	private final String[] names;
+	private final boolean[] gauges;
+	private volatile MetricSource[] sources = new MetricSource[0];
+
+	MetricFamily(Class<? extends Enum<?>> type) {
+		this.type = type;
+		this.name = name(type);
+		this.keys = type.getEnumConstants();
+		this.names = new String[keys.length];
+		this.gauges = new boolean[keys.length];
+		for (int i = 0 ; i < keys.length ; i++) {
+			gauges[i] = Accumulate.Operator.of(keys[i]) == Accumulate.Operator.MAX;
+			names[i] = name + "_" + sanitize(keys[i].name().toLowerCase()) + (gauges[i] ? "" : "_total");
+		}
+	}
+
+	private static String name(Class<?> type) {
+		String simpleName = type.getSimpleName();
+		for (Class<?> enclosing = type.getEnclosingClass() ; enclosing != null ; enclosing = enclosing.getEnclosingClass()) {
+			simpleName = enclosing.getSimpleName() + "_" + simpleName;
+		}
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0 ; i < simpleName.length() ; i++) {
+			char c = simpleName.charAt(i);
+			if (Character.isUpperCase(c) && i > 0 && Character.isLowerCase(simpleName.charAt(i - 1))) {
+				builder.append('_');
+			}
+			builder.append(Character.toLowerCase(c));
+		}
+		return sanitize(builder.toString());
+	}
+
+	private static String sanitize(String name) {
+		return name.replaceAll("[^a-z0-9_]", "_");
+	}
+
+	Class<?> type() {
+		return type;
+	}
+
+	String name() {
+		return name;
+	}
+
+	Enum<?>[] keys() {
+		return keys;
+	}
+
+	String name(int index) {
+		return names[index];
+	}
+
+	boolean gauge(int index) {
+		return gauges[index];
+	}
+
+	MetricSource[] sources() {
+		return sources;
+	}
+
+	synchronized void add(MetricSource source) {
+		MetricSource[] current = sources;
+		MetricSource[] result = Arrays.copyOf(current, current.length + 1);
+		result[current.length] = source;
+		sources = result;
+	}
+
+	synchronized boolean remove(CountsSupplier supplier) {
+		sources = Arrays.stream(sources)
+			.filter(source -> source.supplier() != supplier)
+			.toArray(MetricSource[]::new);
+		return sources.length == 0;
+	}
+}
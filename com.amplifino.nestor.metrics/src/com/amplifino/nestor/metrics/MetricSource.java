@@ -0,0 +1,98 @@
+package com.amplifino.nestor.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.osgi.framework.Constants;
+import org.osgi.service.jdbc.DataSourceFactory;
+
+import com.amplifino.counters.CountsSupplier;
+
+/**
+ * a CountsSupplier service with its labels, formatted once when the service is bound
+ */
+final class MetricSource {
+
+	// service properties used for the name label, in order of preference
+	private static final String[] NAME_PROPERTIES = {
+		DataSourceFactory.JDBC_DATABASE_NAME, "name", Constants.SERVICE_PID, "component.name" };
+	private static final String APPLICATION_PROPERTY = "application";
+
+	private final CountsSupplier supplier;
+	private final String prometheusLabels;
+	private final String jsonLabels;
+
+	private MetricSource(CountsSupplier supplier, Map<String, String> labels) {
+		this.supplier = supplier;
+		this.prometheusLabels = prometheus(labels);
+		this.jsonLabels = json(labels);
+	}
+
+	static MetricSource of(CountsSupplier supplier, Map<String, Object> properties) {
+		Map<String, String> labels = new LinkedHashMap<>();
+		labels.put("name", Stream.of(NAME_PROPERTIES)
+			.map(properties::get)
+			.filter(Objects::nonNull)
+			.map(Object::toString)
+			.findFirst()
+			.orElse("service" + properties.get(Constants.SERVICE_ID)));
+		Optional.ofNullable(properties.get(APPLICATION_PROPERTY))
+			.map(Object::toString)
+			.filter(application -> !application.isEmpty())
+			.ifPresent(application -> labels.put(APPLICATION_PROPERTY, application));
+		return new MetricSource(supplier, labels);
+	}
+
+	CountsSupplier supplier() {
+		return supplier;
+	}
+
+	String prometheusLabels() {
+		return prometheusLabels;
+	}
+
+	String jsonLabels() {
+		return jsonLabels;
+	}
+
+	private static String prometheus(Map<String, String> labels) {
+		StringBuilder builder = new StringBuilder();
+		labels.forEach((key, value) -> {
+			if (builder.length() > 0) {
+				builder.append(',');
+			}
+			builder.append(key).append("=\"");
+			for (char c : value.toCharArray()) {
+				switch (c) {
+					case '\\':
+						builder.append("\\\\");
+						break;
+					case '"':
+						builder.append("\\\"");
+						break;
+					case '\n':
+						builder.append("\\n");
+						break;
+					default:
+						builder.append(c);
+				}
+			}
+			builder.append('"');
+		});
+		return builder.toString();
+	}
+
+	private static String json(Map<String, String> labels) {
+		StringBuilder builder = new StringBuilder();
+		labels.forEach((key, value) -> {
+			if (builder.length() > 0) {
+				builder.append(',');
+			}
+			builder.append(MetricsWriter.quote(key)).append(':').append(MetricsWriter.quote(value));
+		});
+		return builder.toString();
+	}
+}
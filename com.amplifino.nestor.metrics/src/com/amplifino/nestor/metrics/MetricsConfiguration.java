@@ -0,0 +1,14 @@
+package com.amplifino.nestor.metrics;
+
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+@ObjectClassDefinition(name="Metrics Exporter")
+public @interface MetricsConfiguration {
+
+	@AttributeDefinition(description="Base path of the metrics resource")
+	String osgi_jaxrs_resource_base() default "/metrics";
+	@AttributeDefinition(description="Prefix of the exported metric names")
+	String prefix() default "nestor";
+
+}
@@ -0,0 +1,91 @@
+package com.amplifino.nestor.metrics;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.jaxrs.whiteboard.JaxRSWhiteboardConstants;
+import org.osgi.service.metatype.annotations.Designate;
+
+import com.amplifino.counters.Counts;
+import com.amplifino.counters.CountsSupplier;
+
+/**
+ * publishes the counts of all CountsSupplier services.
+ * The resource base serves the Prometheus text format, json serves the same counts as a JSON array.
+ * Sources counting the same enum type share the metric names, and are told apart by their name and application labels.
+ */
+@Component(service=MetricsResource.class, property=JaxRSWhiteboardConstants.JAX_RS_RESOURCE_BASE + "=/metrics")
+@Designate(ocd=MetricsConfiguration.class)
+@Path("/")
+public class MetricsResource {
+
+	private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final List<MetricFamily> families = new CopyOnWriteArrayList<>();
+	private volatile String prefix;
+
+	@Activate
+	public void activate(MetricsConfiguration configuration) {
+		this.prefix = configuration.prefix();
+	}
+
+	@Reference(cardinality=ReferenceCardinality.MULTIPLE, policy=ReferencePolicy.DYNAMIC)
+	public synchronized void addCountsSupplier(CountsSupplier supplier, Map<String, Object> properties) {
+		type(supplier.counts()).ifPresent(type -> family(type).add(MetricSource.of(supplier, properties)));
+	}
+
+	public synchronized void removeCountsSupplier(CountsSupplier supplier) {
+		families.removeIf(family -> family.remove(supplier));
+	}
+
+	private Optional<Class<? extends Enum<?>>> type(Counts counts) {
+		return counts.asMap().keySet().stream()
+			.findFirst()
+			.map(key -> key.getDeclaringClass());
+	}
+
+	private MetricFamily family(Class<? extends Enum<?>> type) {
+		return families.stream()
+			.filter(family -> family.type() == type)
+			.findFirst()
+			.orElseGet(() -> {
+				MetricFamily family = new MetricFamily(type);
+				families.add(family);
+				return family;
+			});
+	}
+
+	@GET
+	@Produces(PROMETHEUS_TEXT)
+	public StreamingOutput prometheus() {
+		return output -> write(output).prometheus(families);
+	}
+
+	@GET
+	@Path("json")
+	@Produces(MediaType.APPLICATION_JSON)
+	public StreamingOutput json() {
+		return output -> write(output).json(families);
+	}
+
+	private MetricsWriter write(OutputStream output) {
+		return new MetricsWriter(new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)), prefix);
+	}
+}
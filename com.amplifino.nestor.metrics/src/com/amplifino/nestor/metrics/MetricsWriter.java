@@ -0,0 +1,124 @@
+package com.amplifino.nestor.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import com.amplifino.counters.Counts;
+
+/**
+ * streams count snapshots in Prometheus text or JSON format.
+ * Names and labels are preformatted, values are written digit by digit, so that a scrape only allocates the snapshots.
+ */
+final class MetricsWriter {
+
+	private final Writer writer;
+	private final String prefix;
+	private final char[] digits = new char[20];
+
+	MetricsWriter(Writer writer, String prefix) {
+		this.writer = writer;
+		this.prefix = prefix.isEmpty() ? prefix : prefix + "_";
+	}
+
+	void prometheus(Iterable<MetricFamily> families) throws IOException {
+		for (MetricFamily family : families) {
+			MetricSource[] sources = family.sources();
+			Counts[] counts = counts(sources);
+			for (int i = 0 ; i < family.keys().length ; i++) {
+				writer.write("# TYPE ");
+				writer.write(prefix);
+				writer.write(family.name(i));
+				writer.write(family.gauge(i) ? " gauge\n" : " counter\n");
+				for (int j = 0 ; j < sources.length ; j++) {
+					writer.write(prefix);
+					writer.write(family.name(i));
+					writer.write('{');
+					writer.write(sources[j].prometheusLabels());
+					writer.write("} ");
+					write(counts[j].get(family.keys()[i]));
+					writer.write('\n');
+				}
+			}
+		}
+		// the container closes the stream
+		writer.flush();
+	}
+
+	void json(Iterable<MetricFamily> families) throws IOException {
+		boolean first = true;
+		writer.write('[');
+		for (MetricFamily family : families) {
+			MetricSource[] sources = family.sources();
+			Counts[] counts = counts(sources);
+			for (int j = 0 ; j < sources.length ; j++) {
+				writer.write(first ? "\n{\"type\":\"" : ",\n{\"type\":\"");
+				first = false;
+				writer.write(family.name());
+				writer.write("\",\"labels\":{");
+				writer.write(sources[j].jsonLabels());
+				writer.write("},\"elapsed\":");
+				write(counts[j].elapsed(TimeUnit.MILLISECONDS));
+				writer.write(",\"counts\":{");
+				for (int i = 0 ; i < family.keys().length ; i++) {
+					if (i > 0) {
+						writer.write(',');
+					}
+					writer.write('"');
+					writer.write(family.keys()[i].name().toLowerCase());
+					writer.write("\":");
+					write(counts[j].get(family.keys()[i]));
+				}
+				writer.write("}}");
+			}
+		}
+		writer.write("\n]\n");
+		writer.flush();
+	}
+
+	private Counts[] counts(MetricSource[] sources) {
+		Counts[] counts = new Counts[sources.length];
+		for (int i = 0 ; i < sources.length ; i++) {
+			counts[i] = sources[i].supplier().counts();
+		}
+		return counts;
+	}
+
+	private void write(long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			writer.write(Long.toString(value));
+			return;
+		}
+		int position = digits.length;
+		long remainder = Math.abs(value);
+		do {
+			digits[--position] = (char) ('0' + remainder % 10);
+			remainder /= 10;
+		} while (remainder > 0);
+		if (value < 0) {
+			digits[--position] = '-';
+		}
+		writer.write(digits, position, digits.length - position);
+	}
+
+	static String quote(String value) {
+		StringBuilder builder = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			switch (c) {
+				case '"':
+					builder.append("\\\"");
+					break;
+				case '\\':
+					builder.append("\\\\");
+					break;
+				default:
+					if (c < ' ') {
+						builder.append(String.format("\\u%04x", (int) c));
+					} else {
+						builder.append(c);
+					}
+			}
+		}
+		return builder.append('"').toString();
+	}
+}
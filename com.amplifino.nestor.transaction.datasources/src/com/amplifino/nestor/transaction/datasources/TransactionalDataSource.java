@@ -4,11 +4,16 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import javax.sql.ConnectionEvent;
@@ -25,9 +30,16 @@ import javax.transaction.xa.XAResource;
 
 import com.amplifino.counters.Counts;
 import com.amplifino.counters.CountsSupplier;
+import com.amplifino.counters.Histogram;
+import com.amplifino.counters.HistogramSnapshot;
+import com.amplifino.counters.HistogramsSupplier;
+import com.amplifino.counters.WindowedCountsSupplier;
 import com.amplifino.nestor.jdbc.wrappers.CommonDataSourceWrapper;
 import com.amplifino.nestor.jdbc.wrappers.ConnectionInJtaTransactionWrapper;
+import com.amplifino.pools.Lease;
+import com.amplifino.pools.LeasesSupplier;
 import com.amplifino.pools.Pool;
+import com.amplifino.pools.SizingPolicy;
 import com.amplifino.pools.PoolEntry;
 
 /**
@@ -39,7 +51,7 @@ import com.amplifino.pools.PoolEntry;
  * This is a type 3 DataSpource implementation according to the DataSource javadoc. 
  * 
  */
-public final class TransactionalDataSource extends CommonDataSourceWrapper implements DataSource, ConnectionEventListener, CountsSupplier, AutoCloseable {
+public final class TransactionalDataSource extends CommonDataSourceWrapper implements DataSource, ConnectionEventListener, CountsSupplier, WindowedCountsSupplier, HistogramsSupplier, LeasesSupplier, AutoCloseable {
 
 	private final XADataSource xaDataSource;
 	private final TransactionManager transactionManager;
@@ -47,8 +59,11 @@ public final class TransactionalDataSource extends CommonDataSourceWrapper imple
 	private Pool<XAConnection> pool;	
 	private OptionalInt isValidTimeout = OptionalInt.of(0);
 	private final Set<XAConnection> failedConnections = ConcurrentHashMap.newKeySet();
+	// connections being checked by the keep alive, not borrowed from the pool
+	private final Set<XAConnection> keepAliveConnections = ConcurrentHashMap.newKeySet();
 	private Optional<String> validationQuery = Optional.empty();
 	private long validationIdleTime = 0;
+	private final Histogram validation = Histogram.create();
 	private boolean overruleIsSameRM = false;
 	
 	private TransactionalDataSource(XADataSource xaDataSource, TransactionManager transactionManager, TransactionSynchronizationRegistry synchronization) {
@@ -125,7 +140,7 @@ public final class TransactionalDataSource extends CommonDataSourceWrapper imple
 	private Connection getConnection(PoolEntry<XAConnection> poolEntry)  throws SQLException {
 		Connection connection = poolEntry.get().getConnection();
 		try {
-			checkValid(connection, poolEntry.age());
+			checkValid(connection, poolEntry.validationAge());
 		} catch (Throwable e) {
 			connection.close();
 			throw e;
@@ -176,6 +191,35 @@ public final class TransactionalDataSource extends CommonDataSourceWrapper imple
 		if (age < validationIdleTime) {
 			return;
 		}
+		long start = System.nanoTime();
+		try {
+			validate(connection);
+		} finally {
+			validation.record(System.nanoTime() - start);
+		}
+	}
+	
+	private boolean keepAlive(XAConnection xaConnection) {
+		keepAliveConnections.add(xaConnection);
+		try {
+			try (Connection connection = xaConnection.getConnection()) {
+				long start = System.nanoTime();
+				try {
+					validate(connection);
+				} finally {
+					validation.record(System.nanoTime() - start);
+				}
+			}
+			return !failedConnections.remove(xaConnection);
+		} catch (SQLException e) {
+			failedConnections.remove(xaConnection);
+			return false;
+		} finally {
+			keepAliveConnections.remove(xaConnection);
+		}
+	}
+	
+	private void validate(Connection connection) throws SQLException {
 		if (isValidTimeout.isPresent()) {
 			if (!connection.isValid(isValidTimeout.getAsInt())) {
 				throw new SQLException("connection not valid");
@@ -196,6 +240,9 @@ public final class TransactionalDataSource extends CommonDataSourceWrapper imple
 	@Override
 	public void connectionClosed(ConnectionEvent event) {
 		XAConnection connection = (XAConnection) event.getSource();
+		if (keepAliveConnections.contains(connection)) {
+			return;
+		}
 		if (failedConnections.remove(connection)) {
 			pool.evict(connection);
 		} else {
@@ -213,6 +260,27 @@ public final class TransactionalDataSource extends CommonDataSourceWrapper imple
 		return pool.counts();
 	}
 	
+	@Override
+	public Counts window(long amount, TimeUnit unit) {
+		return pool.window(amount, unit);
+	}
+	
+	@Override
+	public List<Lease<XAConnection>> leases() {
+		return pool.leases();
+	}
+	
+	/**
+	 * returns the pool latency histograms.
+	 * The VALIDATION histogram includes the connection validation performed by this data source
+	 */
+	@Override
+	public Map<Enum<?>, HistogramSnapshot> histograms() {
+		Map<Enum<?>, HistogramSnapshot> result = new LinkedHashMap<>(pool.histograms());
+		result.merge(Pool.Latencies.VALIDATION, validation.snapshot(), HistogramSnapshot::merge);
+		return Collections.unmodifiableMap(result);
+	}
+	
 	/**
 	 * closes the connection pool, releasing all pooled connections 
 	 */
@@ -263,6 +331,57 @@ public final class TransactionalDataSource extends CommonDataSourceWrapper imple
 			poolBuilder.maxIdle(maxIdle);
 			return this;
 		}
+
+		/**
+		 * sets the number of idle connections kept ready by background allocation
+		 * @param minIdle the min idle count
+		 * @return this
+		 */
+		public Builder minIdle(int minIdle) {
+			poolBuilder.minIdle(minIdle);
+			return this;
+		}
+		
+		/**
+		 * sets the number of connections opened concurrently by background allocation
+		 * @param parallelism the number of concurrent allocations
+		 * @return this
+		 */
+		public Builder allocationParallelism(int parallelism) {
+			poolBuilder.allocationParallelism(parallelism);
+			return this;
+		}
+		
+		/**
+		 * sets the policy that adjusts the number of idle connections on every maintenance cycle
+		 * @param sizingPolicy the sizing policy
+		 * @return this
+		 */
+		public Builder sizingPolicy(SizingPolicy sizingPolicy) {
+			poolBuilder.sizingPolicy(sizingPolicy);
+			return this;
+		}
+
+		/**
+		 * enables lease tracking, logging a warning for connections that are not closed within the threshold
+		 * @param amount the leak threshold amount
+		 * @param unit the leak threshold unit
+		 * @return this
+		 */
+		public Builder leakThreshold(long amount, TimeUnit unit) {
+			poolBuilder.leakThreshold(amount, unit);
+			return this;
+		}
+		
+		/**
+		 * enables recording the stack of the thread obtaining a connection
+		 * @param sampleRate record the stack for one out of sampleRate connections
+		 * @return this
+		 */
+		public Builder leaseStackTraces(int sampleRate) {
+			poolBuilder.leaseStackTraces(sampleRate);
+			return this;
+		}
 		
 		public Builder maxWait(long amount, TimeUnit unit) {
 			poolBuilder.maxWait(amount, unit);
@@ -326,6 +445,32 @@ public final class TransactionalDataSource extends CommonDataSourceWrapper imple
 			return this;
 		}
 		
+		/**
+		 * sets the minimum time since the last validation in order to validate a connection on borrow
+		 * @param amount validation idle time amount
+		 * @param unit validation idle time unit
+		 * @return this
+		 */
+		public Builder validationIdleTime(long amount, TimeUnit unit) {
+			transactionalDataSource.validationIdleTime = unit.toMillis(amount);
+			return this;
+		}
+		
+		/**
+		 * enables background validation of idle connections in the maintenance cycle,
+		 * connections that fail are evicted before they are borrowed.
+		 * Borrowers only validate connections that were not validated within validationIdleTime,
+		 * so use a keep alive time below the validation idle time to take validation off the borrowing thread.
+		 * Requires a property cycle.
+		 * @param amount time since the last validation amount
+		 * @param unit time since the last validation unit
+		 * @return this
+		 */
+		public Builder keepAlive(long amount, TimeUnit unit) {
+			poolBuilder.keepAlive(transactionalDataSource::keepAlive, amount, unit);
+			return this;
+		}
+		
 		public Builder propertyCycle(long amount, TimeUnit unit) {
 			poolBuilder.propertyCycle(amount, unit);
 			return this;
@@ -349,6 +494,46 @@ public final class TransactionalDataSource extends CommonDataSourceWrapper imple
 			return this;
 		}
 		
+		/**
+		 * configure the pool to use a lock free idle structure with a per thread cache of the last used connection
+		 * @return this
+		 */
+		public Builder threadAffine() {
+			poolBuilder.threadAffine();
+			return this;
+		}
+		
+		/**
+		 * configure the executor triggering the maintenance cycle and timing out async borrows.
+		 * Pass a shared executor to avoid a scheduler thread per data source
+		 * @param executorService the scheduler
+		 * @return this
+		 */
+		public Builder scheduleExecutorService(ScheduledExecutorService executorService) {
+			poolBuilder.scheduleExecutorService(executorService);
+			return this;
+		}		
+		/**
+		 * configure the executor for the maintenance cycle with its keep alive checks, background allocation and the completion of async borrows.
+		 * Pass a shared bounded executor to avoid threads per data source
+		 * @param executorService the work executor
+		 * @return this
+		 */
+		public Builder workExecutorService(ExecutorService executorService) {
+			poolBuilder.workExecutorService(executorService);
+			return this;
+		}
+		
+		/**
+		 * configure the pool to shard its idle connections over a number of stripes, to reduce contention on hosts with many cores
+		 * @param stripes the number of stripes
+		 * @return this
+		 */
+		public Builder striped(int stripes) {
+			poolBuilder.striped(stripes);
+			return this;
+		}
+		
 		public Builder overruleIsSameRM() {
 			transactionalDataSource.overruleIsSameRM = true;
 			return this;
@@ -15,10 +15,24 @@ public @interface TransactionalDataSourceConfiguration {
 	int initialPoolSize() default 0;
 	int maxPoolSize() default 0;
 	int minPoolSize() default 0;
+	@AttributeDefinition(description="Number of idle connections kept ready by opening new connections in the background")
+	int minIdle() default 0;
+	@AttributeDefinition(description="Maximum number of connections opened concurrently in the background")
+	int allocationParallelism() default 1;
+	@AttributeDefinition(description="Adjust the number of idle connections to the observed wait time instead of keeping minIdle. Requires propertyCycle")
+	boolean adaptiveSizing() default false;
+	@AttributeDefinition(description="Time in seconds after which an unclosed connection is reported as possible leak, 0 to disable lease tracking. Requires propertyCycle")
+	int leakThreshold() default 0;
+	@AttributeDefinition(description="Record the stack of the thread obtaining a connection for one out of n connections, 0 to disable")
+	int leaseStackTraceSampleRate() default 0;
 	@AttributeDefinition(description="Maximum connection idle time in seconds")
 	int maxIdleTime() default 0;
 	@AttributeDefinition(description="Use first in first out scheduling if true, last in first out if false")
 	boolean fifo() default false;
+	@AttributeDefinition(description="Use a lock free pool with a per thread cache of the last used connection. Recommended for many concurrent threads")
+	boolean threadAffine() default false;
+	@AttributeDefinition(description="Number of stripes to shard idle connections over, -1 for one stripe per processor, 0 or 1 to disable. Not compatible with threadAffine")
+	int stripes() default 0;
 	String[] application();
 	@AttributeDefinition(description="Timeout in seconds to use on connection.isValid() call. Specify -1 to skip isValid() if your JDBC driver does not support isValid")
 	int isValidTimeout() default 0;
@@ -28,11 +42,15 @@ public @interface TransactionalDataSourceConfiguration {
 	int validationIdleTime();
 	@AttributeDefinition(description="Time in seconds between scans for expired connections")
 	int propertyCycle();
+	@AttributeDefinition(description="Time in seconds after which idle connections are validated in the background, 0 to disable. Requires propertyCycle")
+	int keepAliveTime() default 0;
 	@AttributeDefinition(description="Ldap filter for DataSourceFactory")
 	String dataSourceFactory_target() default "(osgi.jdbc.driver.name=*)";
 	boolean overruleIsSameRM() default false;
 	@AttributeDefinition(description="For two phase commit XADATASOURCE is required")
 	FactoryMethod factoryMethod() default FactoryMethod.XADATASOURCE;
+	@AttributeDefinition(description="Number of idle prepared statements cached per connection, 0 to disable. Only for DATASOURCE and DRIVER")
+	int statementCacheSize() default 0;
 	String webconsole_configurationFactory_nameHint() default "DataSource {dataSourceName} for applications {application}";
 	
 	enum FactoryMethod {
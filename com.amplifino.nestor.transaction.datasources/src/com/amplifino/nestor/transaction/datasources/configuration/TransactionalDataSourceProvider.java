@@ -4,8 +4,11 @@ import java.sql.SQLException;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import javax.sql.ConnectionPoolDataSource;
 import javax.sql.DataSource;
 import javax.sql.XADataSource;
 import javax.transaction.TransactionManager;
@@ -21,10 +24,13 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.jdbc.DataSourceFactory;
 import org.osgi.service.metatype.annotations.Designate;
 
+import com.amplifino.counters.CountsSupplier;
 import com.amplifino.nestor.adapters.ConnectionPoolDataSourceAdapter;
 import com.amplifino.nestor.adapters.DataSourceAdapter;
 import com.amplifino.nestor.adapters.XADataSourceAdapter;
 import com.amplifino.nestor.transaction.datasources.TransactionalDataSource;
+import com.amplifino.pools.Pool;
+import com.amplifino.pools.SizingPolicy;
 
 @Component(name="com.amplifino.nestor.transaction.datasources", configurationPolicy=ConfigurationPolicy.REQUIRE)
 @Designate(ocd=TransactionalDataSourceConfiguration.class, factory=true)
@@ -36,26 +42,59 @@ public class TransactionalDataSourceProvider {
 	private TransactionSynchronizationRegistry synchronization;
 	@Reference
 	private DataSourceFactory dataSourceFactory;
+	@Reference(target=Pool.MAINTENANCE_SCHEDULER_FILTER)
+	private ScheduledExecutorService scheduler;
+	@Reference(target=Pool.MAINTENANCE_WORKERS_FILTER)
+	private ExecutorService workers;
 	private TransactionalDataSource dataSource;
-	private ServiceRegistration<DataSource> registration;
+	private ServiceRegistration<?> registration;
+	private CountsSupplier statementCounts;
+	private ServiceRegistration<CountsSupplier> statementCountsRegistration;
 	
 	@Activate
 	public void activate(BundleContext context, TransactionalDataSourceConfiguration configuration) throws SQLException {
 		XADataSource xaDataSource = createXADataSource(configuration);
 		TransactionalDataSource.Builder builder = TransactionalDataSource.builder(xaDataSource, transactionManager, synchronization)
 			.name(configuration.dataSourceName())
-			.initialSize(configuration.initialPoolSize());
+			.initialSize(configuration.initialPoolSize())
+			.scheduleExecutorService(scheduler)
+			.workExecutorService(workers)
+			.validationIdleTime(configuration.validationIdleTime(), TimeUnit.SECONDS);
 		if (configuration.isValidTimeout() < 0) {
 			builder.skipIsValid();
 		} else {
 			builder.isValidTimeout(configuration.isValidTimeout());
 		}
+		if (configuration.validationQuery() != null && !configuration.validationQuery().trim().isEmpty()) {
+			builder.validationQuery(configuration.validationQuery().trim());
+		}
+		if (configuration.propertyCycle() > 0) {
+			builder.propertyCycle(configuration.propertyCycle(), TimeUnit.SECONDS);
+		}
+		if (configuration.keepAliveTime() > 0) {
+			builder.keepAlive(configuration.keepAliveTime(), TimeUnit.SECONDS);
+		}
 		if (configuration.maxPoolSize() > 0) {
 			builder.maxSize(configuration.maxPoolSize());
 		}
 		if (configuration.minPoolSize() > 0) {
 			builder.maxIdle(configuration.minPoolSize());
 		}
+		if (configuration.minIdle() > 0) {
+			builder.minIdle(configuration.minIdle());
+		}
+		if (configuration.allocationParallelism() > 1) {
+			builder.allocationParallelism(configuration.allocationParallelism());
+		}
+		if (configuration.adaptiveSizing()) {
+			builder.sizingPolicy(SizingPolicy.adaptive());
+		}
+		if (configuration.leakThreshold() > 0) {
+			builder.leakThreshold(configuration.leakThreshold(), TimeUnit.SECONDS);
+		}
+		if (configuration.leaseStackTraceSampleRate() > 0) {
+			builder.leaseStackTraces(configuration.leaseStackTraceSampleRate());
+		}
 		if (configuration.maxIdleTime() > 0) {
 			builder.maxIdleTime(configuration.maxIdleTime(), TimeUnit.SECONDS);
 		}
@@ -64,6 +103,14 @@ public class TransactionalDataSourceProvider {
 		} else {
 			builder.lifo();
 		}
+		if (configuration.threadAffine()) {
+			builder.threadAffine();
+		}
+		if (configuration.stripes() > 1) {
+			builder.striped(configuration.stripes());
+		} else if (configuration.stripes() < 0) {
+			builder.striped(Runtime.getRuntime().availableProcessors());
+		}
 		if (configuration.overruleIsSameRM()) {
 			builder.overruleIsSameRM();
 		}
@@ -71,13 +118,20 @@ public class TransactionalDataSourceProvider {
 		Dictionary<String, Object> dictionary = new Hashtable<>();
 		dictionary.put(DataSourceFactory.JDBC_DATABASE_NAME, configuration.dataSourceName());	
 		dictionary.put("application", configuration.application());
-		registration = context.registerService(DataSource.class, dataSource,  dictionary);
+		registration = context.registerService(
+			new String[] { DataSource.class.getName(), CountsSupplier.class.getName() }, dataSource,  dictionary);
+		if (statementCounts != null) {
+			statementCountsRegistration = context.registerService(CountsSupplier.class, statementCounts, dictionary);
+		}
 	}
 	
 	@Deactivate 
 	public void deactivate() {
 		dataSource.close();
 		registration.unregister();
+		if (statementCountsRegistration != null) {
+			statementCountsRegistration.unregister();
+		}
 	}
 	
 	private XADataSource createXADataSource(TransactionalDataSourceConfiguration configuration) throws SQLException {
@@ -93,7 +147,7 @@ public class TransactionalDataSourceProvider {
 			}
 		switch (configuration.factoryMethod()) {
 			case DATASOURCE:
-				return XADataSourceAdapter.on(ConnectionPoolDataSourceAdapter.on(dataSourceFactory.createDataSource(props)));
+				return XADataSourceAdapter.on(statementCaching(dataSourceFactory.createDataSource(props), configuration));
 			case CONNECTIONPOOLDATASOURCE:
 				return XADataSourceAdapter.on(dataSourceFactory.createConnectionPoolDataSource(props));
 			case XADATASOURCE:
@@ -101,14 +155,23 @@ public class TransactionalDataSourceProvider {
 			case DRIVER:
 				props.remove(DataSourceFactory.JDBC_URL);
 				return XADataSourceAdapter.on(
-						ConnectionPoolDataSourceAdapter.on(
+						statementCaching(
 								DataSourceAdapter.on(
-										dataSourceFactory.createDriver(new Properties()), configuration.url(), props)));				
+										dataSourceFactory.createDriver(new Properties()), configuration.url(), props),
+								configuration));
 			default:
 				throw new IllegalArgumentException();
 		}
 	}
 	
+	private ConnectionPoolDataSource statementCaching(DataSource dataSource, TransactionalDataSourceConfiguration configuration) {
+		ConnectionPoolDataSource connectionPoolDataSource = ConnectionPoolDataSourceAdapter.on(dataSource, configuration.statementCacheSize());
+		if (configuration.statementCacheSize() > 0) {
+			statementCounts = (CountsSupplier) connectionPoolDataSource;
+		}
+		return connectionPoolDataSource;
+	}
+	
 	private String[] parseProperty(String property) {
 		String[] parts = property.split("=", 2);
 		if (parts.length != 2) {
@@ -1,7 +1,7 @@
 /**
  * Rdbms schema 
  */
-@Version("1.1.0")
+@Version("1.2.0")
 package com.amplifino.nestor.transaction.datasources;
 
 import org.osgi.annotation.versioning.*;
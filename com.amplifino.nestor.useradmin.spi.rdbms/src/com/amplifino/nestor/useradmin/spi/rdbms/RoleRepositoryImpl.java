@@ -23,6 +23,7 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.useradmin.Role;
 
 import com.amplifino.nestor.jdbc.api.Query;
+import com.amplifino.nestor.jdbc.api.QueryTemplate;
 import com.amplifino.nestor.rdbms.schema.Schema;
 import com.amplifino.nestor.rdbms.schema.SchemaService;
 import com.amplifino.nestor.rdbms.schema.Table;
@@ -41,6 +42,7 @@ public class RoleRepositoryImpl implements RoleRepository {
 	private SchemaService schemaService;
 	
 	private Schema schema;
+	private QueryTemplate roleByName;
 
 	@Activate
 	public void activate() { 
@@ -51,6 +53,7 @@ public class RoleRepositoryImpl implements RoleRepository {
 			tableBuilder.build();
 		}
 		this.schema = schemaBuilder.build();
+		this.roleByName = QueryTemplate.of(table(UserAdminSchema.USERADMIN_ROLES).selectSql() + " where name = ?", String.class);
 	}
 	
 	@Deactivate
@@ -64,12 +67,7 @@ public class RoleRepositoryImpl implements RoleRepository {
 	
 	@Override
 	public Optional<RoleEntity> getRole(String name) {
-		return 
-			Query.on(dataSource)
-				.text(table(UserAdminSchema.USERADMIN_ROLES).selectSql())
-				.text(" where name = ?")
-				.parameters(name)
-				.findFirst(this::parseRole);
+		return roleByName.findFirst(dataSource, this::parseRole, name);
 	}
 
 	@Override
@@ -4,6 +4,7 @@ import java.io.PrintWriter;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
@@ -14,7 +15,14 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.osgi.service.jdbc.DataSourceFactory;
 
+import com.amplifino.counters.Accumulate;
+import com.amplifino.counters.Counts;
 import com.amplifino.counters.CountsSupplier;
+import com.amplifino.counters.HistogramSnapshot;
+import com.amplifino.counters.HistogramsSupplier;
+import com.amplifino.counters.WindowedCountsSupplier;
+import com.amplifino.pools.Lease;
+import com.amplifino.pools.LeasesSupplier;
 
 @Component(property={
 	"felix.inventory.printer.name=DataSources",
@@ -36,11 +44,59 @@ public class DataSourcePrinter implements InventoryPrinter {
 				((CountsSupplier) entry.getValue()).counts().asMap()
 					.forEach((key, count) -> this.print(writer,  key, count));							
 			}
+			if (entry.getValue() instanceof WindowedCountsSupplier) {
+				Counts window = ((WindowedCountsSupplier) entry.getValue()).window(1, TimeUnit.MINUTES);
+				writer.println("\tlast " + window.elapsed(TimeUnit.SECONDS) + " s:");
+				window.asMap().forEach((key, count) -> this.print(writer, window, key));
+			}
+			if (entry.getValue() instanceof HistogramsSupplier) {
+				((HistogramsSupplier) entry.getValue()).histograms()
+					.forEach((key, snapshot) -> this.print(writer, key, snapshot));
+			}
+			if (entry.getValue() instanceof LeasesSupplier) {
+				((LeasesSupplier) entry.getValue()).leases()
+					.forEach(lease -> this.print(writer, lease));
+			}
 		writer.println();
 	}
 	
 	private void print(PrintWriter writer, Enum<?> key, long count) {
 		writer.println("\t" + key.name().toLowerCase() + ": " + count);
 	}
+	
+	private void print(PrintWriter writer, Counts window, Enum<?> key) {
+		if (Accumulate.Operator.of(key) == Accumulate.Operator.MAX) {
+			writer.println("\t\t" + key.name().toLowerCase() + ": " + window.get(key));
+		} else {
+			writer.println("\t\t" + key.name().toLowerCase() + ": " + window.get(key) + 
+				String.format(" (%.2f/s)", window.rate(key, TimeUnit.SECONDS)));
+		}
+	}
+	
+	private void print(PrintWriter writer, Enum<?> key, HistogramSnapshot snapshot) {
+		writer.println("\t" + key.name().toLowerCase() + " (\u03bcs):" +
+			" count: " + snapshot.count() +
+			" mean: " + micros((long) snapshot.mean()) +
+			" p50: " + micros(snapshot.percentile(50)) +
+			" p90: " + micros(snapshot.percentile(90)) +
+			" p99: " + micros(snapshot.percentile(99)) +
+			" p99.9: " + micros(snapshot.percentile(99.9)) +
+			" max: " + micros(snapshot.max()));
+	}
+	
+	private void print(PrintWriter writer, Lease<?> lease) {
+		writer.println("\tlease: age (ms): " + lease.age(TimeUnit.MILLISECONDS) +
+			" thread: " + lease.thread().orElse("unknown") +
+			(lease.suspect() ? " suspect leak" : ""));
+		lease.stackTrace().ifPresent(trace -> {
+			for (StackTraceElement element : trace) {
+				writer.println("\t\tat " + element);
+			}
+		});
+	}
+	
+	private long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
 
 }
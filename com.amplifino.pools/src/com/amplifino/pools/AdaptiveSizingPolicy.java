@@ -0,0 +1,43 @@
+package com.amplifino.pools;
+
+/**
+ * grows the idle target on pressure, and decays it toward the configured minIdle after a number of quiet cycles
+ */
+final class AdaptiveSizingPolicy implements SizingPolicy {
+
+	private final long waitThreshold;
+	private final int quietCycles;
+	private int target = 0;
+	private int quiet = 0;
+	private boolean shrink = false;
+
+	AdaptiveSizingPolicy(long waitThreshold, int quietCycles) {
+		this.waitThreshold = waitThreshold;
+		this.quietCycles = quietCycles;
+	}
+
+	@Override
+	public synchronized int minIdle(Sample sample) {
+		target = Math.max(target, sample.minIdle());
+		long misses = sample.allocations();
+		if (sample.suspends() > 0 && sample.waitNanos() >= sample.suspends() * waitThreshold) {
+			misses += sample.suspends();
+		}
+		shrink = false;
+		if (misses > 0) {
+			quiet = 0;
+			target = (int) Math.min(Math.min(sample.maxSize(), sample.maxIdle()), target + misses);
+		} else if (++quiet >= quietCycles) {
+			quiet = 0;
+			target = sample.minIdle() + (target - sample.minIdle()) / 2;
+			shrink = true;
+		}
+		return target;
+	}
+
+	@Override
+	public synchronized int maxIdle(Sample sample) {
+		return shrink ? target : sample.maxIdle();
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.amplifino.pools;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+final class DefaultLease<T> implements Lease<T> {
+
+	private final T member;
+	private final long ageNanos;
+	private final Optional<String> thread;
+	private final Optional<StackTraceElement[]> stackTrace;
+	private final boolean suspect;
+
+	DefaultLease(DefaultPoolEntry<T> entry, long leakThreshold) {
+		this.member = entry.get();
+		this.ageNanos = entry.leaseNanos();
+		this.thread = Optional.ofNullable(entry.borrower()).map(Thread::getName);
+		this.stackTrace = Optional.ofNullable(entry.borrowSite()).map(Throwable::getStackTrace);
+		this.suspect = leakThreshold > 0 && ageNanos > leakThreshold;
+	}
+
+	@Override
+	public T get() {
+		return member;
+	}
+
+	@Override
+	public long age(TimeUnit unit) {
+		return unit.convert(ageNanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public Optional<String> thread() {
+		return thread;
+	}
+
+	@Override
+	public Optional<StackTraceElement[]> stackTrace() {
+		return stackTrace;
+	}
+
+	@Override
+	public boolean suspect() {
+		return suspect;
+	}
+
+	@Override
+	public String toString() {
+		return member + " borrowed " + age(TimeUnit.MILLISECONDS) + " ms ago" + thread.map(name -> " by " + name).orElse("");
+	}
+}
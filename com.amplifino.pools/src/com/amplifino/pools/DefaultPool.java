@@ -1,15 +1,24 @@
 package com.amplifino.pools;
 
-import java.util.Deque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -19,104 +28,218 @@ import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.amplifino.counters.Accumulators;
 import com.amplifino.counters.Counts;
+import com.amplifino.counters.HistogramSnapshot;
+import com.amplifino.counters.Histograms;
+import com.amplifino.counters.WindowedAccumulators;
 
 final class DefaultPool<T> implements Pool<T> {
 	
-	private Deque<DefaultPoolEntry<T>> idles;
+	private IdleStore<T> idles;
 	private Semaphore semaphore;
 	private final AtomicInteger poolSize = new AtomicInteger(0);
 	private final AtomicBoolean closed = new AtomicBoolean();
 	private final CountDownLatch closeComplete = new CountDownLatch(1);
+	private final Queue<CompletableFuture<PoolEntry<T>>> waiters = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger fillers = new AtomicInteger();
+	private final AtomicInteger pendingFills = new AtomicInteger();
 	
 	private final Supplier<T> supplier;
 	private Consumer<T> destroyer = this::close;
 	private Predicate<T> onBorrow =  t -> true;
+	private boolean validateOnBorrow = false;
 	private Predicate<T> onRelease = t -> true;
-	private Strategy strategy = Strategy.LIFO;
+	private DequeIdleStore.Strategy strategy = DequeIdleStore.Strategy.LIFO;
+	private boolean threadAffine = false;
+	private int stripes = 1;
 	
 	private int initialSize = 0;
 	private int maxSize = Integer.MAX_VALUE;
 	private int maxIdle = Integer.MAX_VALUE;
+	private int minIdle = 0;
+	private volatile int targetIdle = 0;
+	private SizingPolicy sizingPolicy = SizingPolicy.fixed();
+	private Counts sizingCounts;
+	private HistogramSnapshot sizingWait;
+	private int allocationParallelism = 1;
 	private long maxWaitAmount = -1;
 	private TimeUnit maxWaitUnit;
 	
 	private long maxIdleTime = Long.MAX_VALUE;
 	private long minIdleTime = -1L;
+	private Predicate<T> keepAlive;
+	private long keepAliveTime = 0;
+	
+	private long leakThreshold = 0;
+	private int stackTraceSampleRate = 0;
+	private boolean trackLeases = false;
 	
 	private long cycleTime = 0;
 	private TimeUnit cycleUnit;
 	
 	private Logger logger = Logger.getLogger("com.amplifino.pools");
-	private Accumulators<Stats> counters = Accumulators.of(Stats.class);
+	// 15 minutes of history in 10 second intervals, striped per thread
+	private final WindowedAccumulators<Stats> counters = WindowedAccumulators.of(Stats.class, 10, TimeUnit.SECONDS, 90);
+	private final Histograms<Latencies> latencies = Histograms.of(Latencies.class);
 	private String name = "No name";
 	
-	private ScheduledExecutorService cycleExecutorService;
+	private ScheduledExecutorService executorService;
+	private boolean ownsExecutorService = false;
 	private ScheduledFuture<?> scheduledFuture;
+	private ExecutorService workExecutor;
+	private boolean ownsWorkExecutor = false;
+	private final AtomicBoolean cycling = new AtomicBoolean();
 
 	private DefaultPool(Supplier<T> supplier) {
 		this.supplier = supplier;
 	}
 	
-	private void init() {
-		if (cycleTime > 0) {
-			cycleExecutorService = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "Cycle thread for pool " + name));
-		}
-		init(cycleExecutorService);
-	}
-	
-	private void init(ScheduledExecutorService executorService) {
+	private void init(ScheduledExecutorService executorService, ExecutorService workExecutor) {
 		if (initialSize > maxIdle) {
 			throw new IllegalStateException("Initial size " + initialSize + " exceeds max idle size " + maxIdle);
 		}
 		if (initialSize > maxSize) {
 			throw new IllegalStateException("Initial size " + initialSize + " exceeds max pool size " + maxSize);
 		}
-		idles = new LinkedBlockingDeque<>(maxIdle);
+		if (minIdle > maxIdle) {
+			throw new IllegalStateException("Min idle " + minIdle + " exceeds max idle size " + maxIdle);
+		}
+		if (minIdle > maxSize) {
+			throw new IllegalStateException("Min idle " + minIdle + " exceeds max pool size " + maxSize);
+		}
+		if (threadAffine && stripes > 1) {
+			throw new IllegalStateException("A pool cannot be both thread affine and striped");
+		}
+		this.executorService = executorService;
+		this.workExecutor = workExecutor;
+		targetIdle = minIdle;
+		sizingCounts = counters.counts();
+		sizingWait = latencies.snapshots().get(Latencies.BORROWWAIT);
+		idles = createIdleStore();
 		semaphore = new Semaphore(maxSize, true);
 		try {
 			for (int i = 0 ; i < initialSize ; i++) {
-				doRelease(allocate());
+				doRelease(allocate().get());
 			}
 		} catch (Throwable e) {
 			logger.log(Level.WARNING, logMessage("initial size allocation failed"), e);
 		}
 		if (cycleTime > 0 ) {
-			scheduledFuture = executorService.scheduleAtFixedRate(this::cycle, cycleTime, cycleTime, cycleUnit);
+			// jitter the first cycle, so that pools created together on a shared scheduler do not cycle in bursts
+			long period = cycleUnit.toNanos(cycleTime);
+			long delay = period + ThreadLocalRandom.current().nextLong(period);
+			scheduledFuture = executorService().scheduleAtFixedRate(this::triggerCycle, delay, period, TimeUnit.NANOSECONDS);
+		}
+		prewarm();
+	}
+	
+	private IdleStore<T> createIdleStore() {
+		if (threadAffine) {
+			return new ThreadAffineIdleStore<>(maxIdle);
+		} else if (stripes > 1) {
+			// every stripe holds at least one idle member
+			return new StripedIdleStore<>(Math.min(stripes, maxIdle), maxIdle, strategy);
+		} else {
+			return new DequeIdleStore<>(maxIdle, strategy);
+		}
+	}
+	
+	private synchronized ScheduledExecutorService executorService() {
+		if (executorService == null) {
+			// the scheduler only triggers work, blocking work runs on the allocation executor
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> new Thread(r, "Scheduler thread for pool " + name));
+			// async borrow timeouts are cancelled on completion, do not keep them queued until expiry
+			executor.setRemoveOnCancelPolicy(true);
+			executorService = executor;
+			ownsExecutorService = true;
+		}
+		return executorService;
+	}
+	
+	/**
+	 * returns the executor for work that may block on the pooled resource:
+	 * background allocation, the scheduled cycles with their keep alive checks and the completion of async borrows.
+	 * This is the configured work executor, or an executor owned by the pool,
+	 * so that a pool waiting on an unreachable resource does not hold up the scheduler.
+	 */
+	private synchronized ExecutorService workExecutor() {
+		if (closed.get()) {
+			throw new RejectedExecutionException("Pool closed");
+		}
+		if (workExecutor == null) {
+			// one thread more than the fillers, so that a slow keep alive check does not hold up background allocation
+			int threads = allocationParallelism + 1;
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), this::newWorkThread);
+			executor.allowCoreThreadTimeOut(true);
+			workExecutor = executor;
+			ownsWorkExecutor = true;
 		}
+		return workExecutor;
 	}
 	
-	private boolean acquire() {
+	private Thread newWorkThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "Work thread for pool " + name);
+		thread.setDaemon(true);
+		return thread;
+	}
+	
+	private synchronized void shutdownExecutors() {
+		if (ownsExecutorService) {
+			executorService.shutdown();
+		}
+		if (ownsWorkExecutor) {
+			workExecutor.shutdown();
+		}
+	}
+	
+	// an amount of -1 waits without limit
+	private boolean acquire(long amount, TimeUnit timeUnit) {
 		if (semaphore.tryAcquire()) {
+			latencies.record(Latencies.BORROWWAIT, 0);
 			return true;
 		} else {
 			counters.increment(Stats.SUSPENDS);
+			long start = System.nanoTime();
 			try {
-				if (maxWaitAmount == -1) {
+				if (amount == -1) {
 					semaphore.acquire();
 					return true;
 				} else {
-					return semaphore.tryAcquire(maxWaitAmount, maxWaitUnit);
+					return semaphore.tryAcquire(amount, timeUnit);
 				}
 			} catch (InterruptedException e) {
 				Thread.currentThread().interrupt();
 				throw new IllegalThreadStateException("Thread interrupted");
+			} finally {
+				latencies.record(Latencies.BORROWWAIT, System.nanoTime() - start);
 			}
 		}
 	}
 	
 	@Override
 	public PoolEntry<T> borrowEntry() {		
+		return doBorrowEntry(maxWaitAmount, maxWaitUnit);
+	}
+	
+	@Override
+	public PoolEntry<T> borrowEntry(long amount, TimeUnit timeUnit) {
+		if (amount < 0) {
+			throw new IllegalArgumentException();
+		}
+		return doBorrowEntry(amount, Objects.requireNonNull(timeUnit));
+	}
+	
+	// an amount of -1 waits without limit
+	private PoolEntry<T> doBorrowEntry(long amount, TimeUnit timeUnit) {
 		if (closed.get()) {
 			throw new IllegalStateException("Pool closed");
 		}
-		if (acquire()) {
+		if (acquire(amount, timeUnit)) {
 			try {
 				return takeEntry();
 			} catch(Throwable e) {
 				counters.increment(Stats.FAILURES);
-				semaphore.release();
+				releasePermit();
 				throw e;
 			}		
 		} else {
@@ -133,6 +256,11 @@ final class DefaultPool<T> implements Pool<T> {
 			DefaultPoolEntry<T> candidate = doBorrow();
 			if (activate(candidate)) {
 				counters.increment(Stats.BORROWS);
+				candidate.borrowed();
+				if (trackLeases) {
+					candidate.track(Thread.currentThread(), borrowSite());
+				}
+				prewarm();
 				return candidate;
 			} else {
 				destroy(candidate.get());
@@ -149,12 +277,151 @@ final class DefaultPool<T> implements Pool<T> {
 	public T borrow() {
 		return borrowEntry().get();
 	}
+	
+	@Override
+	public CompletableFuture<PoolEntry<T>> borrowAsync() {
+		return doBorrowAsync(maxWaitAmount, maxWaitUnit);
+	}
+	
+	@Override
+	public CompletableFuture<PoolEntry<T>> borrowAsync(long amount, TimeUnit timeUnit) {
+		if (amount < 0) {
+			throw new IllegalArgumentException();
+		}
+		return doBorrowAsync(amount, Objects.requireNonNull(timeUnit));
+	}
+	
+	// an amount of -1 waits without limit
+	private CompletableFuture<PoolEntry<T>> doBorrowAsync(long amount, TimeUnit timeUnit) {
+		CompletableFuture<PoolEntry<T>> future = new CompletableFuture<>();
+		if (closed.get()) {
+			future.completeExceptionally(new IllegalStateException("Pool closed"));
+			return future;
+		}
+		if (waiters.isEmpty() && semaphore.tryAcquire()) {
+			latencies.record(Latencies.BORROWWAIT, 0);
+			completeAsync(future);
+			dispatch();
+			return future;
+		}
+		counters.increment(Stats.SUSPENDS);
+		long start = System.nanoTime();
+		future.whenComplete((entry, e) -> latencies.record(Latencies.BORROWWAIT, System.nanoTime() - start));
+		if (trackLeases) {
+			// the entry is taken by the releasing thread, record the requester instead
+			Thread thread = Thread.currentThread();
+			Throwable site = borrowSite();
+			future.thenAccept(entry -> ((DefaultPoolEntry<T>) entry).track(thread, site));
+		}
+		if (amount != -1) {
+			try {
+				ScheduledFuture<?> timeout = executorService().schedule(() -> timeout(future), amount, timeUnit);
+				future.whenComplete((entry, e) -> timeout.cancel(false));
+			} catch (RejectedExecutionException e) {
+				// executor shut down by a concurrent close
+				future.completeExceptionally(new IllegalStateException("Pool closed"));
+				return future;
+			}
+		}
+		waiters.add(future);
+		future.whenComplete((entry, e) -> {
+			if (e != null) {
+				waiters.remove(future);
+			}
+		});
+		// a permit may have been released before the waiter was queued
+		dispatch();
+		return future;
+	}
+	
+	/**
+	 * hands out permits to async waiters in queue order.
+	 * Uses the timed tryAcquire, as the untimed version ignores fairness and would steal permits from blocked borrowers.
+	 * Runs on releasing threads, the waiters are completed on the allocation executor.
+	 */
+	private void dispatch() {
+		if (closed.get()) {
+			failWaiters();
+			return;
+		}
+		while (!waiters.isEmpty() && tryAcquireFair()) {
+			CompletableFuture<PoolEntry<T>> waiter = waiters.poll();
+			if (waiter == null || waiter.isDone()) {
+				semaphore.release();
+			} else {
+				completeAsync(waiter);
+			}
+		}
+	}
+	
+	private boolean tryAcquireFair() {
+		try {
+			return semaphore.tryAcquire(0, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	/**
+	 * completes the waiter on the allocation executor,
+	 * as taking the entry may allocate or validate a member, and completion runs the dependent actions of the waiter.
+	 * Caller holds a permit.
+	 */
+	private void completeAsync(CompletableFuture<PoolEntry<T>> future) {
+		try {
+			workExecutor().execute(() -> complete(future));
+		} catch (RejectedExecutionException e) {
+			// executor shut down by a concurrent close
+			semaphore.release();
+			future.completeExceptionally(new IllegalStateException("Pool closed"));
+		}
+	}
+	
+	// caller holds a permit
+	private void complete(CompletableFuture<PoolEntry<T>> future) {
+		DefaultPoolEntry<T> entry;
+		try {
+			entry = takeEntry();
+		} catch (Throwable e) {
+			counters.increment(Stats.FAILURES);
+			// hand the permit to the next waiter
+			releasePermit();
+			future.completeExceptionally(e);
+			return;
+		}
+		if (!future.complete(entry)) {
+			// cancelled or timed out while taking the entry
+			counters.increment(Stats.RELEASES);
+			doRelease(entry.get());
+			releasePermit();
+		}
+	}
+	
+	private void timeout(CompletableFuture<PoolEntry<T>> future) {
+		// only count a timeout that wins the race with completion
+		if (future.completeExceptionally(new NoSuchElementException("Time out while waiting on pool"))) {
+			counters.increment(Stats.TIMEOUTS).increment(Stats.FAILURES);
+		}
+	}
+	
+	private void failWaiters() {
+		for (CompletableFuture<PoolEntry<T>> waiter = waiters.poll(); waiter != null; waiter = waiters.poll()) {
+			waiter.completeExceptionally(new IllegalStateException("Pool closed"));
+		}
+	}
+	
+	private void releasePermit() {
+		semaphore.release();
+		dispatch();
+	}
 
 	@Override
 	public void release(T borrowed) {
 		counters.increment(Stats.RELEASES);
+		recordHoldTime(borrowed);
 		doRelease(borrowed);
-		semaphore.release();
+		releasePermit();
 		if (closed.get()) {
 			tryClose();
 		}
@@ -163,8 +430,9 @@ final class DefaultPool<T> implements Pool<T> {
 	@Override
 	public void evict(T borrowed) {
 		counters.increment(Stats.RELEASES).increment(Stats.EVICTIONS);
+		recordHoldTime(borrowed);
 		destroy(borrowed);
-		semaphore.release();
+		releasePermit();
 		if (closed.get()) {
 			tryClose();
 		}
@@ -178,9 +446,8 @@ final class DefaultPool<T> implements Pool<T> {
 		if (scheduledFuture != null) {
 			scheduledFuture.cancel(false);
 		}
-		if (cycleExecutorService != null) {
-			cycleExecutorService.shutdown();
-		}
+		shutdownExecutors();
+		failWaiters();
 		logger.info(logMessage("Close requested"));
 		tryClose();
 	}
@@ -192,9 +459,7 @@ final class DefaultPool<T> implements Pool<T> {
 	
 	private synchronized void tryClose() {
 		if (idles.size() == poolSize.get()) {
-			for ( DefaultPoolEntry<T> entry = idles.pollLast() ; entry != null; entry = idles.pollLast()) {
-				destroy(entry.get());				
-			}
+			idles.drain(this::destroy);
 			// possible a pool entry could be "stolen" by a thread that obtained a permit before the close,
 			// and borrowed after the close. extra test on poolSize == 0.
 			if (poolSize.get() == 0) {
@@ -235,12 +500,58 @@ final class DefaultPool<T> implements Pool<T> {
 		return counters.counts();
 	}
 	
+	@Override
+	public Counts window(long amount, TimeUnit unit) {
+		return counters.window(amount, unit);
+	}
+	
+	@Override
+	public Map<Enum<?>, HistogramSnapshot> histograms() {
+		return latencies.snapshots();
+	}
+	
+	@Override
+	public List<Lease<T>> leases() {
+		List<Lease<T>> result = new ArrayList<>();
+		idles.leases(entry -> result.add(new DefaultLease<>(entry, leakThreshold)));
+		return result;
+	}
+	
+	private Throwable borrowSite() {
+		if (stackTraceSampleRate > 0 && ThreadLocalRandom.current().nextInt(stackTraceSampleRate) == 0) {
+			return new Throwable("Borrow site");
+		} else {
+			return null;
+		}
+	}
+	
+	private void detectLeaks() {
+		if (leakThreshold > 0) {
+			idles.leases(this::detectLeak);
+		}
+	}
+	
+	private void detectLeak(DefaultPoolEntry<T> entry) {
+		if (entry.borrower() != null && entry.leaseNanos() > leakThreshold && entry.report()) {
+			counters.increment(Stats.LEAKSUSPECTS);
+			logger.log(Level.WARNING, logMessage("Possible leak: " + new DefaultLease<>(entry, leakThreshold)), entry.borrowSite());
+		}
+	}
+	
+	private void recordHoldTime(T borrowed) {
+		DefaultPoolEntry<T> entry = idles.lease(borrowed);
+		if (entry != null) {
+			latencies.record(Latencies.HOLD, entry.leaseNanos());
+		}
+	}
+	
 	private DefaultPoolEntry<T> doBorrow() {
-		return Optional.ofNullable(idles.pollLast()).orElseGet(() -> new DefaultPoolEntry<>(this.allocate(), true));
+		DefaultPoolEntry<T> entry = idles.poll();
+		return entry == null ? allocate() : entry;
 	}
 	
 	private void doRelease(T borrowed) {
-		if (!passivate(borrowed) || !strategy.offer(idles, new DefaultPoolEntry<>(borrowed, false))) {
+		if (!passivate(borrowed) || !idles.offer(borrowed)) {
 			destroy(borrowed);
 		}
 	}
@@ -251,7 +562,7 @@ final class DefaultPool<T> implements Pool<T> {
 			return false;
 		}
 		try {
-			boolean result = !entry.older(minIdleTime) || onBorrow.test(entry.get());
+			boolean result = !validateOnBorrow || entry.validationAge() <= minIdleTime || validate(onBorrow, entry.get());
 			if (!result) {
 				counters.increment(Stats.INVALIDONBORROW);
 			}
@@ -263,6 +574,15 @@ final class DefaultPool<T> implements Pool<T> {
 		}
 	}
 	
+	private boolean validate(Predicate<T> predicate, T member) {
+		long start = System.nanoTime();
+		try {
+			return predicate.test(member);
+		} finally {
+			latencies.record(Latencies.VALIDATION, System.nanoTime() - start);
+		}
+	}
+	
 	private String logHeader() {
 		return "Pool " + name + ": ";
 	}
@@ -285,17 +605,109 @@ final class DefaultPool<T> implements Pool<T> {
 		}
 	}
 	
-	private T allocate() {
+	private DefaultPoolEntry<T> allocate() {
+		long start = System.nanoTime();
 		T t = Objects.requireNonNull(supplier.get());
+		long nanos = System.nanoTime() - start;
+		counters.accumulate(Stats.ALLOCATIONNANOS, nanos).accumulate(Stats.MAXALLOCATIONNANOS, nanos);
 		int newSize = poolSize.incrementAndGet();
-		logger.info(logMessage("Pool size increased to " + newSize));
+		if (logger.isLoggable(Level.INFO)) {
+			logger.info(logMessage("Pool size increased to " + newSize));
+		}
 		counters.increment(Stats.ALLOCATIONS).accumulate(Stats.MAXSIZE, newSize);
-		return t;		
+		return idles.fresh(t);		
+	}
+	
+	/**
+	 * starts background fillers on the allocation executor if the idle count dropped below the target
+	 */
+	private void prewarm() {
+		if (targetIdle == 0 || closed.get()) {
+			return;
+		}
+		int wanted = Math.min(idleDeficit(), allocationParallelism);
+		for (int current = fillers.get(); current < wanted; current = fillers.get()) {
+			if (fillers.compareAndSet(current, current + 1)) {
+				try {
+					workExecutor().execute(this::fill);
+				} catch (RejectedExecutionException e) {
+					// executor shut down by a concurrent close
+					fillers.decrementAndGet();
+					return;
+				}
+			}
+		}
+	}
+	
+	private int idleDeficit() {
+		int pending = pendingFills.get();
+		return Math.min(targetIdle - idles.size(), maxSize - poolSize.get()) - pending;
+	}
+	
+	private boolean reserveFill() {
+		int current;
+		do {
+			current = pendingFills.get();
+			if (Math.min(targetIdle - idles.size(), maxSize - poolSize.get()) - current <= 0) {
+				return false;
+			}
+		} while (!pendingFills.compareAndSet(current, current + 1));
+		return true;
+	}
+	
+	private void fill() {
+		try {
+			while (!closed.get() && reserveFill()) {
+				try {
+					// a filler holds a permit while allocating, so waiting borrowers keep precedence
+					if (!tryAcquireFair()) {
+						return;
+					}
+					try {
+						doRelease(allocate().get());
+						counters.increment(Stats.PREWARMS);
+					} finally {
+						releasePermit();
+					}
+				} finally {
+					pendingFills.decrementAndGet();
+				}
+			}
+		} catch (Throwable e) {
+			logger.log(Level.WARNING, logMessage("background allocation failed"), e);
+		} finally {
+			fillers.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * consults the sizing policy with the activity since the previous call
+	 */
+	private synchronized void resize() {
+		Counts counts = counters.counts();
+		HistogramSnapshot wait = latencies.snapshots().get(Latencies.BORROWWAIT);
+		Sample sample = new Sample(counts.delta(sizingCounts), wait.sum() - sizingWait.sum());
+		sizingCounts = counts;
+		sizingWait = wait;
+		int bound = Math.min(maxIdle, maxSize);
+		targetIdle = Math.max(0, Math.min(bound, sizingPolicy.minIdle(sample)));
+		int idleLimit = Math.max(targetIdle, sizingPolicy.maxIdle(sample));
+		if (idles.size() > idleLimit) {
+			idles.trim(idleLimit, this::shrink);
+		}
+	}
+	
+	private void shrink(T t) {
+		counters.increment(Stats.SHRINKS);
+		destroy(t);
 	}
 	
 	private void destroy(T t) {
+		idles.remove(t);
 		int currentSize = poolSize.decrementAndGet();
-		logger.info(logMessage("Pool size decreased to " + currentSize));
+		if (logger.isLoggable(Level.INFO)) {
+			logger.info(logMessage("Pool size decreased to " + currentSize));
+		}
 		counters.increment(Stats.DESTROYS);
 		try {
 			destroyer.accept(t);
@@ -304,21 +716,27 @@ final class DefaultPool<T> implements Pool<T> {
 		}
 	}
 	
-	private boolean cycleOne() {
-		DefaultPoolEntry<T> oldestEntry = strategy.peekOldest(idles);
-		if (oldestEntry == null || !oldestEntry.older(maxIdleTime)) {
-			return false;
-		} else {
-			oldestEntry = strategy.pollOldest(idles);
-			if (oldestEntry == null) {
-				return false;
-			} else {
-				boolean expired = oldestEntry.older(maxIdleTime);
-				if (expired || !strategy.offerOld(idles,  oldestEntry)) {
-					destroy(oldestEntry.get());
-				}
-				return expired;
-			} 
+	/**
+	 * runs a scheduled cycle on the allocation executor, skipping the trigger while the previous cycle is still running
+	 */
+	private void triggerCycle() {
+		if (cycling.compareAndSet(false, true)) {
+			try {
+				workExecutor().execute(this::scheduledCycle);
+			} catch (RejectedExecutionException e) {
+				// executor shut down by a concurrent close
+				cycling.set(false);
+			}
+		}
+	}
+	
+	private void scheduledCycle() {
+		try {
+			cycle();
+		} catch (Throwable e) {
+			logger.log(Level.WARNING, logMessage("maintenance cycle failed"), e);
+		} finally {
+			cycling.set(false);
 		}
 	}
 	
@@ -327,14 +745,42 @@ final class DefaultPool<T> implements Pool<T> {
 		if (closed.get()) {
 			return;
 		}
-		while (cycleOne());
+		idles.expire(maxIdleTime, this::destroy);
+		if (keepAlive != null) {
+			idles.keepAlive(keepAliveTime, this::keepAlive, this::destroy);
+		}
+		if (closed.get()) {
+			// a close during the pass could not complete while members were taken out for the test
+			tryClose();
+			return;
+		}
 		try {
 			while (poolSize.get() < initialSize) {
-				doRelease(allocate());
+				doRelease(allocate().get());
 			}
 		} catch (Throwable e) {
 			logger.log(Level.WARNING, logMessage("exception while restoring pool size to " + initialSize), e);
 		}
+		// safety net for permits that became available without a release, e.g. a blocked borrower timing out
+		dispatch();
+		resize();
+		prewarm();
+		detectLeaks();
+	}
+	
+	private boolean keepAlive(T member) {
+		counters.increment(Stats.KEEPALIVES);
+		try {
+			boolean result = validate(keepAlive, member);
+			if (!result) {
+				counters.increment(Stats.INVALIDONKEEPALIVE);
+			}
+			return result && !closed.get();
+		} catch (Throwable e) {
+			logger.log(Level.WARNING, logMessage("Error in keep alive check of " + member), e);
+			counters.increment(Stats.INVALIDONKEEPALIVE);
+			return false;
+		}
 	}
 	
 	@Override
@@ -342,10 +788,69 @@ final class DefaultPool<T> implements Pool<T> {
 		return poolSize.get();
 	}
 	
+	private final class Sample implements SizingPolicy.Sample {
+		
+		private final int size = poolSize.get();
+		private final int idle = idles.size();
+		private final Counts delta;
+		private final long waitNanos;
+		
+		Sample(Counts delta, long waitNanos) {
+			this.delta = delta;
+			this.waitNanos = waitNanos;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public int idle() {
+			return idle;
+		}
+
+		@Override
+		public int maxSize() {
+			return maxSize;
+		}
+
+		@Override
+		public int minIdle() {
+			return minIdle;
+		}
+
+		@Override
+		public int maxIdle() {
+			return maxIdle;
+		}
+
+		@Override
+		public long borrows() {
+			return delta.get(Stats.BORROWS);
+		}
+
+		@Override
+		public long allocations() {
+			return Math.max(0, delta.get(Stats.ALLOCATIONS) - delta.get(Stats.PREWARMS));
+		}
+
+		@Override
+		public long suspends() {
+			return delta.get(Stats.SUSPENDS);
+		}
+
+		@Override
+		public long waitNanos() {
+			return waitNanos;
+		}
+	}
+	
 	static final class DefaultBuilder<T> implements Pool.Builder<T> {
 		
 		private DefaultPool<T> pool; 
 		private ScheduledExecutorService executorService;
+		private ExecutorService workExecutor;
 		
 		DefaultBuilder(Supplier<T> supplier) {
 			pool = new DefaultPool<>(supplier);
@@ -366,6 +871,7 @@ final class DefaultPool<T> implements Pool<T> {
 		@Override
 		public Builder<T> onBorrow(Predicate<T> predicate) {
 			pool.onBorrow = Objects.requireNonNull(predicate);
+			pool.validateOnBorrow = true;
 			return this;
 		}
 		
@@ -396,6 +902,30 @@ final class DefaultPool<T> implements Pool<T> {
 			return this;
 		}
 
+		@Override
+		public Builder<T> minIdle(int minIdle) {
+			if (minIdle < 0) {
+				throw new IllegalArgumentException();
+			}
+			pool.minIdle = minIdle;
+			return this;
+		}
+		
+		@Override
+		public Builder<T> sizingPolicy(SizingPolicy sizingPolicy) {
+			pool.sizingPolicy = Objects.requireNonNull(sizingPolicy);
+			return this;
+		}
+		
+		@Override
+		public Builder<T> allocationParallelism(int parallelism) {
+			if (parallelism <= 0) {
+				throw new IllegalArgumentException();
+			}
+			pool.allocationParallelism = parallelism;
+			return this;
+		}
+
 		@Override
 		public Builder<T> maxWait(long amount, TimeUnit timeUnit) {
 			if (amount < 0) {
@@ -414,13 +944,53 @@ final class DefaultPool<T> implements Pool<T> {
 		
 		@Override
 		public Builder<T> fifo() {
-			pool.strategy = Strategy.FIFO;
+			pool.strategy = DequeIdleStore.Strategy.FIFO;
 			return this;
 		}
 		
 		@Override
 		public Builder<T> lifo() {
-			pool.strategy = Strategy.LIFO;
+			pool.strategy = DequeIdleStore.Strategy.LIFO;
+			return this;
+		}
+		
+		@Override
+		public Builder<T> threadAffine() {
+			pool.threadAffine = true;
+			return this;
+		}
+		
+		@Override
+		public Builder<T> striped(int stripes) {
+			if (stripes <= 0) {
+				throw new IllegalArgumentException();
+			}
+			pool.stripes = stripes;
+			return this;
+		}
+		
+		@Override
+		public Builder<T> striped() {
+			return striped(Runtime.getRuntime().availableProcessors());
+		}
+		
+		@Override
+		public Builder<T> leakThreshold(long amount, TimeUnit timeUnit) {
+			if (amount <= 0) {
+				throw new IllegalArgumentException();
+			}
+			pool.leakThreshold = timeUnit.toNanos(amount);
+			pool.trackLeases = true;
+			return this;
+		}
+		
+		@Override
+		public Builder<T> leaseStackTraces(int sampleRate) {
+			if (sampleRate < 0) {
+				throw new IllegalArgumentException();
+			}
+			pool.stackTraceSampleRate = sampleRate;
+			pool.trackLeases = pool.trackLeases || sampleRate > 0;
 			return this;
 		}
 		
@@ -442,6 +1012,16 @@ final class DefaultPool<T> implements Pool<T> {
 			return this;
 		}
 		
+		@Override
+		public Builder<T> keepAlive(Predicate<T> predicate, long amount, TimeUnit timeUnit) {
+			if (amount < 0) {
+				throw new IllegalArgumentException();
+			}
+			pool.keepAlive = Objects.requireNonNull(predicate);
+			pool.keepAliveTime = timeUnit.toMillis(amount);
+			return this;
+		}
+		
 		@Override
 		public Builder<T> propertyCycle(long amount, TimeUnit timeUnit) {
 			if (amount <= 0) {
@@ -458,13 +1038,15 @@ final class DefaultPool<T> implements Pool<T> {
 			return this;
 		}
 		
+		@Override
+		public Builder<T> workExecutorService(ExecutorService executorService) {
+			this.workExecutor = Objects.requireNonNull(executorService);
+			return this;
+		}
+		
 		@Override
 		public Pool<T> build() {
-			if (executorService == null) {
-				pool.init();
-			} else {
-				pool.init(executorService);
-			}
+			pool.init(executorService, workExecutor);
 			// set pool field to null to avoid further modification of pool through this builder
 			Pool<T> result = this.pool;
 			this.pool = null;
@@ -472,54 +1054,4 @@ final class DefaultPool<T> implements Pool<T> {
 		}
 		
 	}
-
-	private static enum Strategy {
-		FIFO {
-			@Override
-			<T> boolean offer(Deque<T> deque, T element) {
-				return deque.offerFirst(element);
-			}
-			
-			@Override
-			<T> T peekOldest(Deque<T> deque) {
-				return deque.peekFirst();
-			}
-			
-			@Override
-			<T> T pollOldest(Deque<T> deque) {
-				return deque.pollFirst();
-			}
-			
-			@Override
-			<T> boolean offerOld(Deque<T> deque, T element) {
-				return deque.offerLast(element);
-			}
-		},
-		LIFO {
-			@Override
-			<T> boolean offer(Deque<T> deque, T element) {
-				return deque.offerLast(element);
-			}
-			
-			@Override
-			<T> T peekOldest(Deque<T> deque) {
-				return deque.peekLast();
-			}
-			
-			@Override
-			<T> T pollOldest(Deque<T> deque) {
-				return deque.pollFirst();
-			}
-			
-			@Override
-			<T> boolean offerOld(Deque<T> deque, T element) {
-				return deque.offerFirst(element);
-			}
-		};
-
-		abstract <T> boolean offer(Deque<T> deque , T  element);
-		abstract <T> T peekOldest(Deque<T> deque);
-		abstract <T> T pollOldest(Deque<T> deque);
-		abstract <T> boolean offerOld(Deque<T> deque, T element);
-	}
 }
@@ -1,35 +1,131 @@
 package com.amplifino.pools;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 final class DefaultPoolEntry<T> implements PoolEntry<T>{
-	
+
+	private static final int IDLE = 0;
+	private static final int BORROWED = 1;
+	private static final int REMOVED = 2;
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<DefaultPoolEntry> STATE = AtomicIntegerFieldUpdater.newUpdater(DefaultPoolEntry.class, "state");
+
 	private final T pooled;
-	private final long poolTime;
-	private final boolean fresh;
+	// poolTime and fresh are only written before the volatile write of state that publishes the entry as idle
+	private long poolTime;
+	// written on release and by the keep alive check, while the entry is not available to borrowers
+	private long validationTime;
+	private boolean fresh;
+	private volatile int state = BORROWED;
+	// written by the borrowing thread, read on release
+	private long borrowTime;
+	// lease tracking, borrower is written last so that readers seeing the borrower also see the other fields
+	private Throwable borrowSite;
+	private boolean reported;
+	private volatile Thread borrower;
 
 	DefaultPoolEntry(T pooled, boolean fresh) {
 		this.pooled = pooled;
 		this.poolTime = System.currentTimeMillis();
+		this.validationTime = poolTime;
 		this.fresh = fresh;
+		this.borrowTime = System.nanoTime();
 	}
-	
+
 	@Override
 	public T get() {
 		return pooled;
 	}
-	
+
 	@Override
 	public long age() {
 		return System.currentTimeMillis() - poolTime;
 	}
-	
+
+	long poolTime() {
+		return poolTime;
+	}
+
 	@Override
 	public boolean older(long age) {
 		return age() > age;
 	}
-	
+
+	@Override
+	public long validationAge() {
+		return System.currentTimeMillis() - validationTime;
+	}
+
 	@Override
 	public boolean isFresh() {
 		return fresh;
 	}
+
+	void borrowed() {
+		borrowTime = System.nanoTime();
+	}
 	
+	void track(Thread thread, Throwable site) {
+		borrowSite = site;
+		reported = false;
+		borrower = thread;
+	}
+	
+	Thread borrower() {
+		return borrower;
+	}
+	
+	Throwable borrowSite() {
+		return borrower == null ? null : borrowSite;
+	}
+	
+	/**
+	 * @return true the first time it is called for a lease, 
+	 * only called by the maintenance cycle
+	 */
+	boolean report() {
+		if (reported) {
+			return false;
+		} else {
+			reported = true;
+			return true;
+		}
+	}
+	
+	long leaseNanos() {
+		return System.nanoTime() - borrowTime;
+	}
+
+	boolean isIdle() {
+		return state == IDLE;
+	}
+	
+	boolean isBorrowed() {
+		return state == BORROWED;
+	}
+
+	boolean claim() {
+		return STATE.compareAndSet(this, IDLE, BORROWED);
+	}
+
+	void unclaim() {
+		state = IDLE;
+	}
+
+	void idle() {
+		poolTime = System.currentTimeMillis();
+		validationTime = poolTime;
+		fresh = false;
+		borrower = null;
+		state = IDLE;
+	}
+
+	void validated() {
+		validationTime = System.currentTimeMillis();
+	}
+
+	void remove() {
+		state = REMOVED;
+	}
+
 }
@@ -0,0 +1,238 @@
+package com.amplifino.pools;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * idle store keeping the idle entries in a deque guarded by its monitor.
+ *
+ * Every member keeps its entry for its whole life time, borrowing and releasing only moves the entry in and out of the deque,
+ * so that a borrow release cycle does not allocate.
+ */
+final class DequeIdleStore<T> implements IdleStore<T> {
+
+	private final Deque<DefaultPoolEntry<T>> idles = new ArrayDeque<>();
+	// entries of all members, idle or borrowed
+	private final MemberEntries<T> entries;
+	private final int maxIdle;
+	private final Strategy strategy;
+	private volatile int size = 0;
+
+	DequeIdleStore(int maxIdle, Strategy strategy) {
+		this(maxIdle, strategy, new MemberEntries<>());
+	}
+
+	// stripes of a StripedIdleStore share the entry map, as a member may be released to another stripe
+	DequeIdleStore(int maxIdle, Strategy strategy, MemberEntries<T> entries) {
+		this.maxIdle = maxIdle;
+		this.strategy = strategy;
+		this.entries = entries;
+	}
+
+	@Override
+	public DefaultPoolEntry<T> poll() {
+		DefaultPoolEntry<T> entry;
+		synchronized (idles) {
+			entry = idles.pollLast();
+			if (entry == null) {
+				return null;
+			}
+			size--;
+		}
+		entry.claim();
+		return entry;
+	}
+
+	@Override
+	public DefaultPoolEntry<T> fresh(T member) {
+		DefaultPoolEntry<T> entry = new DefaultPoolEntry<>(member, true);
+		entries.put(member, entry);
+		return entry;
+	}
+
+	@Override
+	public boolean offer(T member) {
+		DefaultPoolEntry<T> entry = entries.get(member);
+		if (entry == null) {
+			entry = new DefaultPoolEntry<>(member, false);
+			entries.put(member, entry);
+		}
+		synchronized (idles) {
+			if (size >= maxIdle) {
+				// the member may be offered to another store or destroyed
+				return false;
+			}
+			entry.idle();
+			strategy.offer(idles, entry);
+			size++;
+		}
+		return true;
+	}
+
+	@Override
+	public DefaultPoolEntry<T> lease(T member) {
+		return entries.get(member);
+	}
+
+	@Override
+	public void leases(Consumer<DefaultPoolEntry<T>> consumer) {
+		entries.forEach(entry -> {
+			if (entry.isBorrowed()) {
+				consumer.accept(entry);
+			}
+		});
+	}
+
+	@Override
+	public void remove(T member) {
+		DefaultPoolEntry<T> entry = entries.remove(member);
+		if (entry != null) {
+			entry.remove();
+		}
+	}
+
+	@Override
+	public void expire(long maxIdleTime, Consumer<T> consumer) {
+		for (DefaultPoolEntry<T> entry = pollExpired(maxIdleTime); entry != null; entry = pollExpired(maxIdleTime)) {
+			consumer.accept(entry.get());
+		}
+	}
+
+	private DefaultPoolEntry<T> pollExpired(long maxIdleTime) {
+		synchronized (idles) {
+			DefaultPoolEntry<T> oldestEntry = strategy.peekOldest(idles);
+			if (oldestEntry == null || !oldestEntry.older(maxIdleTime)) {
+				return null;
+			}
+			oldestEntry = strategy.pollOldest(idles);
+			if (oldestEntry.older(maxIdleTime)) {
+				size--;
+				return oldestEntry;
+			} else {
+				strategy.offerOld(idles, oldestEntry);
+				return null;
+			}
+		}
+	}
+
+	@Override
+	public void keepAlive(long validationAge, Predicate<T> predicate, Consumer<T> consumer) {
+		// take the entries out of the deque while they are tested, so that borrowers cannot poll them
+		List<DefaultPoolEntry<T>> candidates = new ArrayList<>();
+		synchronized (idles) {
+			for (Iterator<DefaultPoolEntry<T>> it = idles.iterator(); it.hasNext(); ) {
+				DefaultPoolEntry<T> entry = it.next();
+				if (entry.validationAge() > validationAge) {
+					it.remove();
+					size--;
+					candidates.add(entry);
+				}
+			}
+		}
+		for (DefaultPoolEntry<T> entry : candidates) {
+			if (!predicate.test(entry.get()) || !reoffer(entry)) {
+				consumer.accept(entry.get());
+			}
+		}
+	}
+
+	/**
+	 * puts a validated entry back with its original idle time, so that maxIdleTime still applies
+	 */
+	private boolean reoffer(DefaultPoolEntry<T> entry) {
+		entry.validated();
+		synchronized (idles) {
+			// releases may have filled the store while the entry was tested
+			if (size >= maxIdle) {
+				return false;
+			}
+			strategy.offerOld(idles, entry);
+			size++;
+		}
+		return true;
+	}
+
+	@Override
+	public void trim(int maxIdle, Consumer<T> consumer) {
+		for (DefaultPoolEntry<T> entry = pollSurplus(maxIdle); entry != null; entry = pollSurplus(maxIdle)) {
+			consumer.accept(entry.get());
+		}
+	}
+
+	private DefaultPoolEntry<T> pollSurplus(int maxIdle) {
+		synchronized (idles) {
+			if (size <= maxIdle) {
+				return null;
+			}
+			size--;
+			return strategy.pollOldest(idles);
+		}
+	}
+
+	@Override
+	public void drain(Consumer<T> consumer) {
+		for (DefaultPoolEntry<T> entry = poll(); entry != null; entry = poll()) {
+			consumer.accept(entry.get());
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	static enum Strategy {
+		FIFO {
+			@Override
+			<T> boolean offer(Deque<T> deque, T element) {
+				return deque.offerFirst(element);
+			}
+
+			@Override
+			<T> T peekOldest(Deque<T> deque) {
+				return deque.peekFirst();
+			}
+
+			@Override
+			<T> T pollOldest(Deque<T> deque) {
+				return deque.pollFirst();
+			}
+
+			@Override
+			<T> boolean offerOld(Deque<T> deque, T element) {
+				return deque.offerLast(element);
+			}
+		},
+		LIFO {
+			@Override
+			<T> boolean offer(Deque<T> deque, T element) {
+				return deque.offerLast(element);
+			}
+
+			@Override
+			<T> T peekOldest(Deque<T> deque) {
+				return deque.peekLast();
+			}
+
+			@Override
+			<T> T pollOldest(Deque<T> deque) {
+				return deque.pollFirst();
+			}
+
+			@Override
+			<T> boolean offerOld(Deque<T> deque, T element) {
+				return deque.offerFirst(element);
+			}
+		};
+
+		abstract <T> boolean offer(Deque<T> deque , T  element);
+		abstract <T> T peekOldest(Deque<T> deque);
+		abstract <T> T pollOldest(Deque<T> deque);
+		abstract <T> boolean offerOld(Deque<T> deque, T element);
+	}
+}
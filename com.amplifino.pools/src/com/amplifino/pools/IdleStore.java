@@ -0,0 +1,87 @@
+package com.amplifino.pools;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * holds the idle members of a DefaultPool
+ *
+ * @param <T> pooled type
+ */
+interface IdleStore<T> {
+
+	/**
+	 * claims an idle entry
+	 * @return the claimed entry, or null if no idle entry is available
+	 */
+	DefaultPoolEntry<T> poll();
+
+	/**
+	 * registers a newly allocated member
+	 * @param member the new member
+	 * @return the entry for the new member, in borrowed state
+	 */
+	DefaultPoolEntry<T> fresh(T member);
+
+	/**
+	 * returns a borrowed member to the idle store
+	 * @param member the borrowed member
+	 * @return false if the store has no room for the member
+	 */
+	boolean offer(T member);
+
+	/**
+	 * returns the entry of a borrowed member
+	 * @param member the borrowed member
+	 * @return the entry, or null if the member is unknown
+	 */
+	DefaultPoolEntry<T> lease(T member);
+
+	/**
+	 * passes the entries of all borrowed members to the consumer
+	 * @param consumer called for every borrowed entry
+	 */
+	void leases(Consumer<DefaultPoolEntry<T>> consumer);
+
+	/**
+	 * notifies the store that the member is being destroyed
+	 * @param member the destroyed member
+	 */
+	void remove(T member);
+
+	/**
+	 * removes the idle entries that have been idle longer than the argument and passes them to the consumer
+	 * @param maxIdleTime max idle time in milliseconds
+	 * @param consumer called for every expired member
+	 */
+	void expire(long maxIdleTime, Consumer<T> consumer);
+
+	/**
+	 * tests the idle entries that have not been validated for longer than the argument.
+	 * An entry is not available to borrowers while it is tested.
+	 * Entries that pass are marked validated and stay idle, entries that fail are removed and passed to the consumer,
+	 * as are entries that pass but no longer fit in the store
+	 * @param validationAge max time since the last validation in milliseconds
+	 * @param predicate the keep alive test
+	 * @param consumer called for every member that failed the test or exceeds maxIdle
+	 */
+	void keepAlive(long validationAge, Predicate<T> predicate, Consumer<T> consumer);
+
+	/**
+	 * removes the oldest idle entries until no more than the argument remain, and passes them to the consumer
+	 * @param maxIdle the number of idle entries to keep
+	 * @param consumer called for every removed member
+	 */
+	void trim(int maxIdle, Consumer<T> consumer);
+
+	/**
+	 * removes all idle entries and passes them to the consumer
+	 * @param consumer called for every idle member
+	 */
+	void drain(Consumer<T> consumer);
+
+	/**
+	 * @return the number of idle entries
+	 */
+	int size();
+}
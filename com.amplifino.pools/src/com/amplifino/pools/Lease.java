@@ -0,0 +1,39 @@
+package com.amplifino.pools;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Snapshot of an outstanding pool lease, for diagnosing leaks
+ *
+ * @param <T> the pooled type
+ */
+@ProviderType
+public interface Lease<T> {
+
+	/**
+	 * return the borrowed member
+	 * @return the member
+	 */
+	T get();
+	/**
+	 * return the time elapsed since the member was borrowed
+	 * @param unit the time unit
+	 * @return the lease age
+	 */
+	long age(TimeUnit unit);
+	/**
+	 * @return the name of the borrowing thread, empty if lease tracking is not enabled
+	 */
+	Optional<String> thread();
+	/**
+	 * @return the stack of the borrowing thread, empty if lease tracking is not enabled or the lease was not sampled
+	 */
+	Optional<StackTraceElement[]> stackTrace();
+	/**
+	 * @return true if the lease is older than the pool's leak threshold
+	 */
+	boolean suspect();
+}
@@ -0,0 +1,18 @@
+package com.amplifino.pools;
+
+import java.util.List;
+
+import org.osgi.annotation.versioning.ConsumerType;
+
+/**
+ * Interface indicating that the implementor tracks outstanding pool leases
+ *
+ */
+@ConsumerType
+public interface LeasesSupplier {
+	/**
+	 * return a snapshot of the outstanding leases
+	 * @return the outstanding leases
+	 */
+	List<? extends Lease<?>> leases();
+}
@@ -0,0 +1,71 @@
+package com.amplifino.pools;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * the entries of the pool members, keyed by member identity.
+ *
+ * Members that are equal are still distinct pool members, so keys are compared with ==.
+ * The map is split in segments, each guarded by its own monitor, so that releases of different members rarely contend.
+ * Lookups and updates of existing keys do not allocate.
+ */
+final class MemberEntries<T> {
+
+	private final IdentityHashMap<T, DefaultPoolEntry<T>>[] segments;
+	private final int mask;
+
+	@SuppressWarnings("unchecked")
+	MemberEntries() {
+		// twice the processor count, rounded up to a power of two
+		int segmentCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+		this.segments = (IdentityHashMap<T, DefaultPoolEntry<T>>[]) new IdentityHashMap<?, ?>[segmentCount];
+		for (int i = 0 ; i < segmentCount ; i++) {
+			segments[i] = new IdentityHashMap<>();
+		}
+		this.mask = segmentCount - 1;
+	}
+
+	private IdentityHashMap<T, DefaultPoolEntry<T>> segment(T member) {
+		int hash = System.identityHashCode(member);
+		return segments[(hash ^ (hash >>> 16)) & mask];
+	}
+
+	DefaultPoolEntry<T> get(T member) {
+		IdentityHashMap<T, DefaultPoolEntry<T>> segment = segment(member);
+		synchronized (segment) {
+			return segment.get(member);
+		}
+	}
+
+	void put(T member, DefaultPoolEntry<T> entry) {
+		IdentityHashMap<T, DefaultPoolEntry<T>> segment = segment(member);
+		synchronized (segment) {
+			segment.put(member, entry);
+		}
+	}
+
+	DefaultPoolEntry<T> remove(T member) {
+		IdentityHashMap<T, DefaultPoolEntry<T>> segment = segment(member);
+		synchronized (segment) {
+			return segment.remove(member);
+		}
+	}
+
+	/**
+	 * passes all entries to the consumer, the consumer is called outside the segment monitors
+	 * @param consumer called for every entry
+	 */
+	void forEach(Consumer<DefaultPoolEntry<T>> consumer) {
+		List<DefaultPoolEntry<T>> snapshot = new ArrayList<>();
+		for (IdentityHashMap<T, DefaultPoolEntry<T>> segment : segments) {
+			synchronized (segment) {
+				snapshot.addAll(segment.values());
+			}
+			snapshot.forEach(consumer);
+			snapshot.clear();
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package com.amplifino.pools;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -9,7 +12,11 @@ import java.util.logging.Logger;
 
 import org.osgi.annotation.versioning.ProviderType;
 
+import com.amplifino.counters.Accumulate;
+import com.amplifino.counters.Counts;
 import com.amplifino.counters.CountsSupplier;
+import com.amplifino.counters.HistogramsSupplier;
+import com.amplifino.counters.WindowedCountsSupplier;
 
 /**
  * Generic Object Pool
@@ -17,7 +24,28 @@ import com.amplifino.counters.CountsSupplier;
  * @param <T> Pooled Object type
  */
 @ProviderType
-public interface Pool<T> extends CountsSupplier {
+public interface Pool<T> extends CountsSupplier, WindowedCountsSupplier, HistogramsSupplier, LeasesSupplier {
+	
+	/**
+	 * service property of the shared pool maintenance ScheduledExecutorService service
+	 */
+	String SCHEDULER_PROPERTY = "com.amplifino.pools.scheduler";
+	/**
+	 * value of SCHEDULER_PROPERTY for the shared pool maintenance scheduler
+	 */
+	String MAINTENANCE_SCHEDULER = "maintenance";
+	/**
+	 * service filter selecting the shared pool maintenance scheduler
+	 */
+	String MAINTENANCE_SCHEDULER_FILTER = "(" + SCHEDULER_PROPERTY + "=" + MAINTENANCE_SCHEDULER + ")";
+	/**
+	 * value of SCHEDULER_PROPERTY for the shared pool worker ExecutorService
+	 */
+	String MAINTENANCE_WORKERS = "workers";
+	/**
+	 * service filter selecting the shared pool worker executor
+	 */
+	String MAINTENANCE_WORKERS_FILTER = "(" + SCHEDULER_PROPERTY + "=" + MAINTENANCE_WORKERS + ")";
 	
 	/**
 	 * borrow a pool member
@@ -30,6 +58,35 @@ public interface Pool<T> extends CountsSupplier {
 	 * @return the borrowed pool entry
 	 */
 	PoolEntry<T> borrowEntry();
+	/**
+	 * borrow a pool member entry, waiting at most the given time instead of the configured maxWait.
+	 * To be used for pool users that already spent part of their wait time, e.g. on a quota of their own.
+	 * Fails with a NoSuchElementException when no member becomes available in time
+	 * @param amount max wait time amount, 0 to fail immediately when the pool is exhausted
+	 * @param timeUnit max wait time unit
+	 * @return the borrowed pool entry
+	 */
+	PoolEntry<T> borrowEntry(long amount, TimeUnit timeUnit);
+	/**
+	 * borrow a pool member entry without blocking the calling thread.
+	 * If the pool is exhausted, the returned future completes when a member is released. 
+	 * Waiters are served in request order.
+	 * The future completes exceptionally with a NoSuchElementException when maxWait elapses,
+	 * and with an IllegalStateException when the pool is closed.
+	 * Cancelling the future removes the waiter, no pool capacity is lost.
+	 * The member is taken, and the future completed, on an executor owned by the pool,
+	 * so that neither the caller nor a releasing thread allocates or validates members for async borrowers.
+	 * Long running dependent actions should still use one of the CompletableFuture async methods, not to hold up that executor.
+	 * @return a future for the borrowed pool entry
+	 */
+	CompletableFuture<PoolEntry<T>> borrowAsync();
+	/**
+	 * borrow a pool member entry without blocking the calling thread, waiting at most the given time instead of the configured maxWait
+	 * @param amount max wait time amount, 0 to fail when the pool is exhausted
+	 * @param timeUnit max wait time unit
+	 * @return a future for the borrowed pool entry
+	 */
+	CompletableFuture<PoolEntry<T>> borrowAsync(long amount, TimeUnit timeUnit);
 	
 	/**
 	 * return a previously borrowed member to the pool 
@@ -69,6 +126,25 @@ public interface Pool<T> extends CountsSupplier {
 	 */
 	void cycle();
 	
+	/**
+	 * returns the counts of the most recent time window.
+	 * The pool keeps 15 minutes of history with a 10 second granularity.
+	 * @param amount window length amount
+	 * @param unit window length unit
+	 * @return the window counts
+	 */
+	@Override
+	Counts window(long amount, TimeUnit unit);
+	
+	/**
+	 * returns the outstanding leases. For monitoring purpose only.
+	 * The borrowing thread and stack are only available if lease tracking is enabled
+	 * 
+	 * @return the outstanding leases
+	 */
+	@Override
+	List<Lease<T>> leases();
+	
 	/**
 	 * returns the current pool size. For monitoring purpose only.
 	 * 
@@ -128,6 +204,30 @@ public interface Pool<T> extends CountsSupplier {
 		 * @return this
 		 */
 		Builder<T> maxIdle(int maxIdle);
+		/**
+		 * sets the minimum number of idle members.
+		 * When the idle count drops below this number, new members are allocated in the background on the pool's allocation executor,
+		 * so borrowers do not pay the allocation latency.
+		 * Background allocation never grows the pool beyond its maximum size.
+		 * @param minIdle min idle count
+		 * @return this
+		 */
+		Builder<T> minIdle(int minIdle);
+		/**
+		 * sets the policy that adjusts the number of idle members on every maintenance cycle.
+		 * The default policy keeps the configured minIdle and maxIdle.
+		 * Adaptive policies require a propertyCycle, or cycle() to be called by an external scheduler.
+		 * @param sizingPolicy the sizing policy
+		 * @return this
+		 */
+		Builder<T> sizingPolicy(SizingPolicy sizingPolicy);
+		/**
+		 * sets the maximum number of members allocated concurrently in the background to restore the minimum idle count.
+		 * The pool allocates on an executor of its own, with this number of threads plus one for the maintenance cycle.
+		 * @param parallelism the number of concurrent background allocations, defaults to 1
+		 * @return this
+		 */
+		Builder<T> allocationParallelism(int parallelism);
 		/**
 		 * sets the maximum amount of time a caller will wait for a free pool member 
 		 * @param amount max idle time amount
@@ -152,6 +252,44 @@ public interface Pool<T> extends CountsSupplier {
 		 * @return this
 		 */
 		Builder<T> lifo();
+		/**
+		 * configures the pool to keep its idle members in a lock free structure,
+		 * remembering the last member used by each thread.
+		 * A thread borrowing the member it just released does not contend with other threads.
+		 * Borrowers only queue when the pool has reached its maximum size.
+		 * The fifo and lifo allocation strategies do not apply in this mode.
+		 * @return this
+		 */
+		Builder<T> threadAffine();
+		/**
+		 * configures the pool to shard its idle members over a number of stripes.
+		 * A borrower takes from the stripe selected by its thread, and steals from the other stripes when its stripe is empty.
+		 * The pool still never exceeds its maximum size, maxIdle is spread over the stripes.
+		 * Can not be combined with threadAffine.
+		 * @param stripes the number of stripes, 1 disables striping
+		 * @return this
+		 */
+		Builder<T> striped(int stripes);
+		/**
+		 * configures the pool to use a stripe per available processor
+		 * @return this
+		 */
+		Builder<T> striped();
+		/**
+		 * enables lease tracking, recording the borrowing thread of every outstanding lease.
+		 * The maintenance cycle logs a warning and counts a LEAKSUSPECTS event for every lease older than the argument.
+		 * @param amount leak threshold amount
+		 * @param timeUnit leak threshold unit
+		 * @return this
+		 */
+		Builder<T> leakThreshold(long amount, TimeUnit timeUnit);
+		/**
+		 * enables lease tracking, recording the stack of the borrowing thread for a sample of the leases.
+		 * Taking a stack trace is expensive, use a high sample rate for pools with a high borrow rate.
+		 * @param sampleRate record the stack for one out of sampleRate leases on average, 0 to disable, 1 for every lease
+		 * @return this
+		 */
+		Builder<T> leaseStackTraces(int sampleRate);
 		/**
 		 * Overrides the default logger instance
 		 * @param logger the pool logger
@@ -165,12 +303,24 @@ public interface Pool<T> extends CountsSupplier {
 		 */
 		Builder<T> name(String name);
 		/**
-		 * sets the minimum idle time in order to test the pool member with onBorrow
+		 * sets the minimum time since the last validation in order to test the pool member with onBorrow.
+		 * Releasing a member or passing a keep alive check counts as validation
 		 * @param amount idle time amount
 		 * @param timeUnit idle time unit
 		 * @return this
 		 */
 		Builder<T> minIdleTime(long amount, TimeUnit timeUnit);
+		/**
+		 * enables keep alive checks of idle members in the maintenance cycle.
+		 * Idle members that have not been validated for the given time are tested while unavailable to borrowers,
+		 * members failing the test are destroyed before anyone borrows them.
+		 * Combined with minIdleTime, borrowers skip the onBorrow test for recently checked members.
+		 * @param predicate the keep alive test
+		 * @param amount time since the last validation amount
+		 * @param timeUnit time since the last validation unit
+		 * @return this
+		 */
+		Builder<T> keepAlive(Predicate<T> predicate, long amount, TimeUnit timeUnit);
 		/**
 		 * sets the cycle time (interval between scans for idle pool members that are older than maxIdle)
 		 * @param amount delay between cycles		
@@ -179,11 +329,27 @@ public interface Pool<T> extends CountsSupplier {
 		 */
 		Builder<T> propertyCycle(long amount, TimeUnit timeUnit);
 		/**
-		 * sets the executor service to use for the cycle task
+		 * sets the executor service that schedules the cycle task and async borrow timeouts.
+		 * The executor can be shared by many pools, in an OSGi framework the pools bundle registers one as a service selected by MAINTENANCE_SCHEDULER_FILTER.
+		 * The scheduler only triggers work: the cycle, with its keep alive checks, and background allocation run on the work executor,
+		 * so that a pool waiting on an unreachable resource does not hold up the scheduler.
+		 * The pool does not shut down the executor on close.
+		 * If not set, the pool creates its own scheduler when needed.
 		 * @param executorService used to perform cycle tasks
 		 * @return this
 		 */
 		Builder<T> scheduleExecutorService(ScheduledExecutorService executorService);
+		/**
+		 * sets the executor service for work that may block on the pooled resource:
+		 * the cycle with its keep alive checks, background allocation and the completion of async borrows.
+		 * The executor can be shared by many pools, in an OSGi framework the pools bundle registers a bounded one selected by MAINTENANCE_WORKERS_FILTER.
+		 * A pool runs at most one cycle and allocationParallelism background allocations at a time on it.
+		 * The pool does not shut down the executor on close.
+		 * If not set, the pool creates its own executor when needed.
+		 * @param executorService used for blocking pool work
+		 * @return this
+		 */
+		Builder<T> workExecutorService(ExecutorService executorService);
 		/**
 		 * build and start the pool
 		 * @return the pool
@@ -192,7 +358,12 @@ public interface Pool<T> extends CountsSupplier {
 	}
 	
 	/**
-	 * Enumeration used for Pool Statistics Counts
+	 * Enumeration used for Pool Statistics Counts.
+	 * PREWARMS counts the background allocations, 
+	 * ALLOCATIONNANOS is the total and MAXALLOCATIONNANOS the maximum time spent creating a member in nanoseconds,
+	 * LEAKSUSPECTS counts the leases that exceeded the leak threshold,
+	 * SHRINKS counts the idle members destroyed by the sizing policy,
+	 * KEEPALIVES counts the keep alive checks and INVALIDONKEEPALIVE the members that failed them.
 	 *
 	 */
 	enum Stats {
@@ -201,13 +372,34 @@ public interface Pool<T> extends CountsSupplier {
 		BORROWS,
 		RELEASES,
 		SUSPENDS,
+		@Accumulate(Accumulate.Operator.MAX)
 		MAXSIZE,
 		INVALIDONBORROW,
 		INVALIDONRELEASE,
 		IDLETIMEEXCEEDED,
 		EVICTIONS,
 		TIMEOUTS,
-		FAILURES;
+		FAILURES,
+		PREWARMS,
+		ALLOCATIONNANOS,
+		@Accumulate(Accumulate.Operator.MAX)
+		MAXALLOCATIONNANOS,
+		LEAKSUSPECTS,
+		SHRINKS,
+		KEEPALIVES,
+		INVALIDONKEEPALIVE;
+	}
+	
+	/**
+	 * Enumeration used for Pool latency histograms, all values are in nanoseconds.
+	 * BORROWWAIT is the time a borrower waits for a permit, 0 if the pool was not exhausted,
+	 * HOLD the time between borrow and release,
+	 * VALIDATION the time spent in the onBorrow and keep alive predicates.
+	 */
+	enum Latencies {
+		BORROWWAIT,
+		HOLD,
+		VALIDATION;
 	}
 
 }
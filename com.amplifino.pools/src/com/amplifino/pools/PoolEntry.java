@@ -28,6 +28,13 @@ public interface PoolEntry<T> {
 	 */
 	boolean older(long ms);
 	
+	/**
+	 * return the time in milliseconds since the member was last known to be valid,
+	 * i.e. since it was returned to the pool or passed a keep alive check
+	 * @return the time since the last validation
+	 */
+	long validationAge();
+	
 	/**
 	 * @return true if this is a newly allocated pool member, false if it comes from the idle pool
 	 */
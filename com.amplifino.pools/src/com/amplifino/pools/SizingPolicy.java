@@ -0,0 +1,112 @@
+package com.amplifino.pools;
+
+import java.util.concurrent.TimeUnit;
+
+import org.osgi.annotation.versioning.ConsumerType;
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Decides how many idle members a pool keeps ready.
+ *
+ * The pool consults its policy on every maintenance cycle, passing a sample of the pool activity since the previous cycle.
+ * Idle members below the minimum are allocated in the background, idle members above the maximum are destroyed.
+ * The results are bounded by the pool's maxSize and maxIdle.
+ * A policy instance may keep state between cycles and should not be shared between pools.
+ */
+@ConsumerType
+public interface SizingPolicy {
+
+	/**
+	 * returns the number of idle members to keep ready
+	 * @param sample the pool activity since the previous cycle
+	 * @return the minimum idle count
+	 */
+	int minIdle(Sample sample);
+
+	/**
+	 * returns the number of idle members to keep after the cycle, the pool destroys the oldest idle members above this number.
+	 * @param sample the pool activity since the previous cycle
+	 * @return the maximum idle count
+	 */
+	default int maxIdle(Sample sample) {
+		return sample.maxIdle();
+	}
+
+	/**
+	 * returns the default policy, keeping the configured minIdle and maxIdle
+	 * @return the static policy
+	 */
+	static SizingPolicy fixed() {
+		return Sample::minIdle;
+	}
+
+	/**
+	 * returns an adaptive policy that reacts to any borrower waiting for a permit
+	 * and decays after 3 quiet cycles
+	 * @return a new adaptive policy
+	 */
+	static SizingPolicy adaptive() {
+		return adaptive(0, TimeUnit.NANOSECONDS, 3);
+	}
+
+	/**
+	 * returns an adaptive policy.
+	 * The policy grows the idle target by the number of borrows that could not be served from an idle member,
+	 * because they had to allocate a new member or had to wait for a permit longer than the wait threshold on average.
+	 * After the given number of cycles without such borrows, the policy halves the distance between the target and the configured minIdle,
+	 * and destroys the idle members exceeding the target.
+	 * @param waitThreshold average wait time amount that counts as pressure
+	 * @param unit wait time unit
+	 * @param quietCycles number of cycles without pressure before shrinking
+	 * @return a new adaptive policy
+	 */
+	static SizingPolicy adaptive(long waitThreshold, TimeUnit unit, int quietCycles) {
+		if (waitThreshold < 0 || quietCycles <= 0) {
+			throw new IllegalArgumentException();
+		}
+		return new AdaptiveSizingPolicy(unit.toNanos(waitThreshold), quietCycles);
+	}
+
+	/**
+	 * Pool activity since the previous cycle
+	 */
+	@ProviderType
+	interface Sample {
+		/**
+		 * @return the current pool size
+		 */
+		int size();
+		/**
+		 * @return the current idle count
+		 */
+		int idle();
+		/**
+		 * @return the configured max pool size
+		 */
+		int maxSize();
+		/**
+		 * @return the configured min idle count
+		 */
+		int minIdle();
+		/**
+		 * @return the configured max idle count
+		 */
+		int maxIdle();
+		/**
+		 * @return the number of borrows
+		 */
+		long borrows();
+		/**
+		 * @return the number of members allocated by borrowers, as no idle member was available
+		 */
+		long allocations();
+		/**
+		 * @return the number of borrowers that had to wait for a permit
+		 */
+		long suspends();
+		/**
+		 * @return the total time borrowers waited for a permit in nanoseconds
+		 */
+		long waitNanos();
+	}
+}
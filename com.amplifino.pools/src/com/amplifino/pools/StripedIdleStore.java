@@ -0,0 +1,121 @@
+package com.amplifino.pools;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * idle store sharding the idle members over a number of deques.
+ *
+ * A thread uses the stripe selected by its id, and steals from the sibling stripes when its own stripe is empty or full.
+ * The stripes share a single map of member entries, as a member may be released by another thread than the borrower.
+ */
+final class StripedIdleStore<T> implements IdleStore<T> {
+
+	private final DequeIdleStore<T>[] stripes;
+	private final MemberEntries<T> entries = new MemberEntries<>();
+
+	@SuppressWarnings("unchecked")
+	StripedIdleStore(int stripeCount, int maxIdle, DequeIdleStore.Strategy strategy) {
+		this.stripes = (DequeIdleStore<T>[]) new DequeIdleStore<?>[stripeCount];
+		for (int i = 0 ; i < stripeCount ; i++) {
+			// spread maxIdle over the stripes, the first stripes take the remainder
+			int stripeIdle = maxIdle == Integer.MAX_VALUE ? maxIdle : maxIdle / stripeCount + (i < maxIdle % stripeCount ? 1 : 0);
+			stripes[i] = new DequeIdleStore<>(stripeIdle, strategy, entries);
+		}
+	}
+
+	private int home() {
+		return (int) (Thread.currentThread().getId() % stripes.length);
+	}
+
+	@Override
+	public DefaultPoolEntry<T> poll() {
+		int home = home();
+		for (int i = 0 ; i < stripes.length ; i++) {
+			DefaultPoolEntry<T> entry = stripes[(home + i) % stripes.length].poll();
+			if (entry != null) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public DefaultPoolEntry<T> fresh(T member) {
+		return stripes[home()].fresh(member);
+	}
+
+	@Override
+	public boolean offer(T member) {
+		int home = home();
+		for (int i = 0 ; i < stripes.length ; i++) {
+			if (stripes[(home + i) % stripes.length].offer(member)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// the entry map is shared, any stripe can serve the member lookups
+
+	@Override
+	public DefaultPoolEntry<T> lease(T member) {
+		return stripes[0].lease(member);
+	}
+
+	@Override
+	public void leases(Consumer<DefaultPoolEntry<T>> consumer) {
+		stripes[0].leases(consumer);
+	}
+
+	@Override
+	public void remove(T member) {
+		stripes[0].remove(member);
+	}
+
+	@Override
+	public void expire(long maxIdleTime, Consumer<T> consumer) {
+		for (DequeIdleStore<T> stripe : stripes) {
+			stripe.expire(maxIdleTime, consumer);
+		}
+	}
+
+	@Override
+	public void keepAlive(long validationAge, Predicate<T> predicate, Consumer<T> consumer) {
+		for (DequeIdleStore<T> stripe : stripes) {
+			stripe.keepAlive(validationAge, predicate, consumer);
+		}
+	}
+
+	@Override
+	public void trim(int maxIdle, Consumer<T> consumer) {
+		// remove one member per stripe in turn, so that the stripes stay balanced
+		boolean trimmed = true;
+		while (trimmed && size() > maxIdle) {
+			trimmed = false;
+			for (DequeIdleStore<T> stripe : stripes) {
+				int stripeSize = stripe.size();
+				if (stripeSize > 0 && size() > maxIdle) {
+					stripe.trim(stripeSize - 1, consumer);
+					trimmed = true;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void drain(Consumer<T> consumer) {
+		for (DequeIdleStore<T> stripe : stripes) {
+			stripe.drain(consumer);
+		}
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (DequeIdleStore<T> stripe : stripes) {
+			size += stripe.size();
+		}
+		return size;
+	}
+}
@@ -0,0 +1,214 @@
+package com.amplifino.pools;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * lock free idle store.
+ *
+ * All members stay registered in a copy on write array for their whole life time,
+ * borrowing and releasing only flips the entry state using compare and set.
+ * Each thread remembers the last entry it used, so that a thread borrowing what it just released
+ * does not need to scan the shared array. A scan starts at a random offset, so that threads do not all contend on the first entries.
+ */
+final class ThreadAffineIdleStore<T> implements IdleStore<T> {
+
+	@SuppressWarnings("unchecked")
+	private volatile DefaultPoolEntry<T>[] entries = (DefaultPoolEntry<T>[]) new DefaultPoolEntry<?>[0];
+	private final ThreadLocal<DefaultPoolEntry<T>> recent = new ThreadLocal<>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+	private final int maxIdle;
+
+	ThreadAffineIdleStore(int maxIdle) {
+		this.maxIdle = maxIdle;
+	}
+
+	@Override
+	public DefaultPoolEntry<T> poll() {
+		DefaultPoolEntry<T> entry = recent.get();
+		if (entry != null && entry.claim()) {
+			idleCount.decrementAndGet();
+			return entry;
+		}
+		DefaultPoolEntry<T>[] candidates = entries;
+		int offset = candidates.length == 0 ? 0 : ThreadLocalRandom.current().nextInt(candidates.length);
+		for (int i = 0 ; i < candidates.length ; i++) {
+			DefaultPoolEntry<T> candidate = candidates[(offset + i) % candidates.length];
+			if (candidate.claim()) {
+				idleCount.decrementAndGet();
+				recent.set(candidate);
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public DefaultPoolEntry<T> fresh(T member) {
+		DefaultPoolEntry<T> entry = new DefaultPoolEntry<>(member, true);
+		register(entry);
+		recent.set(entry);
+		return entry;
+	}
+
+	@Override
+	public boolean offer(T member) {
+		DefaultPoolEntry<T> entry = find(member);
+		if (entry == null) {
+			return false;
+		}
+		if (!reserveIdle()) {
+			return false;
+		}
+		recent.set(entry);
+		entry.idle();
+		return true;
+	}
+
+	// count the member as idle, unless that would exceed maxIdle
+	private boolean reserveIdle() {
+		for (int count = idleCount.get() ; count < maxIdle ; count = idleCount.get()) {
+			if (idleCount.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private synchronized void register(DefaultPoolEntry<T> entry) {
+		DefaultPoolEntry<T>[] current = entries;
+		DefaultPoolEntry<T>[] result = Arrays.copyOf(current, current.length + 1);
+		result[current.length] = entry;
+		entries = result;
+	}
+
+	private synchronized void unregister(DefaultPoolEntry<T> entry) {
+		DefaultPoolEntry<T>[] current = entries;
+		for (int i = 0 ; i < current.length ; i++) {
+			if (current[i] == entry) {
+				DefaultPoolEntry<T>[] result = Arrays.copyOf(current, current.length - 1);
+				System.arraycopy(current, i + 1, result, i, current.length - i - 1);
+				entries = result;
+				return;
+			}
+		}
+	}
+
+	@Override
+	public DefaultPoolEntry<T> lease(T member) {
+		return find(member);
+	}
+
+	@Override
+	public void leases(Consumer<DefaultPoolEntry<T>> consumer) {
+		for (DefaultPoolEntry<T> entry : entries) {
+			if (entry.isBorrowed()) {
+				consumer.accept(entry);
+			}
+		}
+	}
+
+	@Override
+	public void remove(T member) {
+		DefaultPoolEntry<T> entry = find(member);
+		if (entry != null) {
+			entry.remove();
+			unregister(entry);
+			if (recent.get() == entry) {
+				recent.remove();
+			}
+		}
+	}
+
+	@Override
+	public void expire(long maxIdleTime, Consumer<T> consumer) {
+		for (DefaultPoolEntry<T> entry : entries) {
+			if (entry.isIdle() && entry.older(maxIdleTime) && entry.claim()) {
+				if (entry.older(maxIdleTime)) {
+					idleCount.decrementAndGet();
+					consumer.accept(entry.get());
+				} else {
+					// borrowed and released again between test and claim
+					entry.unclaim();
+				}
+			}
+		}
+	}
+
+	@Override
+	public void keepAlive(long validationAge, Predicate<T> predicate, Consumer<T> consumer) {
+		for (DefaultPoolEntry<T> entry : entries) {
+			// claiming the entry keeps borrowers away during the test
+			if (entry.isIdle() && entry.validationAge() > validationAge && entry.claim()) {
+				if (predicate.test(entry.get())) {
+					entry.validated();
+					entry.unclaim();
+				} else {
+					idleCount.decrementAndGet();
+					consumer.accept(entry.get());
+				}
+			}
+		}
+	}
+
+	@Override
+	public void trim(int maxIdle, Consumer<T> consumer) {
+		// entries are registered in allocation order, select the entry idle for the longest time on every pass
+		DefaultPoolEntry<T>[] candidates = entries.clone();
+		int remaining = candidates.length;
+		while (idleCount.get() > maxIdle) {
+			int oldest = -1;
+			for (int i = 0 ; i < remaining ; i++) {
+				if (candidates[i].isIdle() && (oldest < 0 || candidates[i].poolTime() < candidates[oldest].poolTime())) {
+					oldest = i;
+				}
+			}
+			if (oldest < 0) {
+				return;
+			}
+			DefaultPoolEntry<T> entry = candidates[oldest];
+			candidates[oldest] = candidates[--remaining];
+			if (entry.claim()) {
+				idleCount.decrementAndGet();
+				consumer.accept(entry.get());
+			}
+		}
+	}
+
+	@Override
+	public void drain(Consumer<T> consumer) {
+		for (DefaultPoolEntry<T> entry : entries) {
+			if (entry.claim()) {
+				idleCount.decrementAndGet();
+				consumer.accept(entry.get());
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (DefaultPoolEntry<T> entry : entries) {
+			if (entry.isIdle()) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	private DefaultPoolEntry<T> find(T member) {
+		DefaultPoolEntry<T> entry = recent.get();
+		if (entry != null && entry.get() == member) {
+			return entry;
+		}
+		for (DefaultPoolEntry<T> candidate : entries) {
+			if (candidate.get() == member) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+}
@@ -10,8 +10,20 @@
  *  
  * It also defaults to a LIFO (Last in, First Out) allocation strategy.
  * This typically results in better cache hits   
+ * 
+ * Pools with many concurrent borrowers can be configured to be thread affine,
+ * replacing the idle deque by a lock free structure and a per thread cache of the last used member.
+ * Alternatively, pools can be striped, sharding the idle members over several deques selected by thread, while still honoring the maximum size.
+ * 
+ * Besides the event counts, pools keep latency histograms of borrow wait time, hold time and validation time.
+ * 
+ * A SizingPolicy can adjust the number of idle members on every cycle, e.g. growing it when borrowers have to wait and shrinking it when the pool is quiet.
+ * 
+ * When a leak threshold is configured, the pool tracks the borrowed members and reports leases exceeding the threshold during cycle().
+ * 
+ * A keep alive check tests idle members during cycle(), destroying broken members before they are borrowed.
  */
-@Version("1.3.0")
+@Version("1.4.0")
 package com.amplifino.pools;
 
 import org.osgi.annotation.versioning.Version;
@@ -0,0 +1,13 @@
+package com.amplifino.pools.scheduler;
+
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+@ObjectClassDefinition(name="Pool Maintenance Scheduler Configuration")
+public @interface MaintenanceSchedulerConfiguration {
+
+	@AttributeDefinition(description="Number of threads shared by all pools to trigger maintenance cycles and expire async borrows")
+	int threads() default 2;
+	@AttributeDefinition(description="Number of threads shared by all pools to run maintenance cycles, keep alive checks, background allocation and the completion of async borrows")
+	int workerThreads() default 4;
+}
@@ -0,0 +1,71 @@
+package com.amplifino.pools.scheduler;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.metatype.annotations.Designate;
+
+import com.amplifino.pools.Pool;
+
+/**
+ * registers a ScheduledExecutorService and a bounded worker ExecutorService shared by all pools, 
+ * so that a process with many pools does not run threads per pool.
+ * The registered services ignore shutdown, the executors are terminated when the component is deactivated.
+ */
+@Component(name="com.amplifino.pools.scheduler")
+@Designate(ocd=MaintenanceSchedulerConfiguration.class)
+public class MaintenanceSchedulerProvider {
+
+	private ScheduledThreadPoolExecutor scheduler;
+	private ThreadPoolExecutor workers;
+	private ServiceRegistration<ScheduledExecutorService> schedulerRegistration;
+	private ServiceRegistration<ExecutorService> workersRegistration;
+	
+	@Activate
+	public void activate(BundleContext context, MaintenanceSchedulerConfiguration configuration) {
+		scheduler = new ScheduledThreadPoolExecutor(Math.max(1, configuration.threads()), threadFactory("Pool maintenance thread "));
+		// async borrow timeouts are cancelled on completion, do not keep them queued until expiry
+		scheduler.setRemoveOnCancelPolicy(true);
+		int workerThreads = Math.max(1, configuration.workerThreads());
+		workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory("Pool worker thread "));
+		workers.allowCoreThreadTimeOut(true);
+		schedulerRegistration = context.registerService(ScheduledExecutorService.class, new SharedScheduledExecutorService(scheduler), properties(Pool.MAINTENANCE_SCHEDULER));
+		workersRegistration = context.registerService(ExecutorService.class, new SharedExecutorService<>(workers), properties(Pool.MAINTENANCE_WORKERS));
+	}
+	
+	private Dictionary<String, Object> properties(String value) {
+		Dictionary<String, Object> dictionary = new Hashtable<>();
+		dictionary.put(Pool.SCHEDULER_PROPERTY, value);
+		return dictionary;
+	}
+	
+	private static ThreadFactory threadFactory(String prefix) {
+		AtomicInteger threadCount = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+	
+	@Deactivate
+	public void deactivate() {
+		schedulerRegistration.unregister();
+		workersRegistration.unregister();
+		scheduler.shutdownNow();
+		workers.shutdownNow();
+	}
+}
@@ -0,0 +1,95 @@
+package com.amplifino.pools.scheduler;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * executor service view handed to the pools, delegating to an executor owned by the provider.
+ * Shutdown calls are ignored, as the executor is shared and only the provider terminates it.
+ */
+class SharedExecutorService<E extends ExecutorService> implements ExecutorService {
+
+	final E executor;
+
+	SharedExecutorService(E executor) {
+		this.executor = executor;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		executor.execute(command);
+	}
+
+	/**
+	 * no op, the executor is shut down by its provider
+	 */
+	@Override
+	public void shutdown() {
+	}
+
+	/**
+	 * no op, the executor is shut down by its provider
+	 * @return an empty list
+	 */
+	@Override
+	public List<Runnable> shutdownNow() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return executor.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return executor.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	@Override
+	public <T> Future<T> submit(Callable<T> task) {
+		return executor.submit(task);
+	}
+
+	@Override
+	public <T> Future<T> submit(Runnable task, T result) {
+		return executor.submit(task, result);
+	}
+
+	@Override
+	public Future<?> submit(Runnable task) {
+		return executor.submit(task);
+	}
+
+	@Override
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+		return executor.invokeAll(tasks);
+	}
+
+	@Override
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException {
+		return executor.invokeAll(tasks, timeout, unit);
+	}
+
+	@Override
+	public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+		return executor.invokeAny(tasks);
+	}
+
+	@Override
+	public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		return executor.invokeAny(tasks, timeout, unit);
+	}
+}
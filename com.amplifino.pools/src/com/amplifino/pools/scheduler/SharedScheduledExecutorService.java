@@ -0,0 +1,36 @@
+package com.amplifino.pools.scheduler;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * scheduled executor service view handed to the pools, shutdown calls are ignored
+ */
+final class SharedScheduledExecutorService extends SharedExecutorService<ScheduledExecutorService> implements ScheduledExecutorService {
+
+	SharedScheduledExecutorService(ScheduledExecutorService executor) {
+		super(executor);
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+		return executor.schedule(command, delay, unit);
+	}
+
+	@Override
+	public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+		return executor.schedule(callable, delay, unit);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+		return executor.scheduleAtFixedRate(command, initialDelay, period, unit);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+		return executor.scheduleWithFixedDelay(command, initialDelay, delay, unit);
+	}
+}
@@ -1,10 +1,23 @@
 package com.amplifino.pools;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -12,6 +25,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.amplifino.counters.Counts;
+import com.amplifino.counters.HistogramSnapshot;
 
 public class PoolTester {
 	
@@ -264,4 +278,762 @@ public class PoolTester {
 		Assert.assertEquals(0, counts.get(Pool.Stats.RELEASES));
 	}
 	
+	@Test
+	public void testThreadAffine() {
+		Pool<Object> pool = Pool.builder(Object::new).threadAffine().build();
+		Object object = pool.borrow();
+		pool.release(object);
+		Assert.assertSame(object, pool.borrow());
+		Object other = pool.borrow();
+		Assert.assertNotSame(object, other);
+		pool.release(object);
+		pool.release(other);
+		Counts counts = pool.counts();
+		Assert.assertEquals(2, counts.get(Pool.Stats.ALLOCATIONS));
+		Assert.assertEquals(3, counts.get(Pool.Stats.BORROWS));
+		Assert.assertEquals(3, counts.get(Pool.Stats.RELEASES));
+		Assert.assertEquals(2, counts.get(Pool.Stats.MAXSIZE));
+		pool.close();
+		Assert.assertEquals(0, pool.size());
+	}
+	
+	@Test
+	public void testThreadAffineMaxIdle() {
+		final int maxIdle = 5;
+		final int borrows = 7;
+		Pool<Object> pool = Pool.builder(Object::new).threadAffine().maxIdle(maxIdle).build();
+		List<Object> objects = IntStream.range(0,  borrows)
+				.mapToObj(i -> pool.borrow())
+				.collect(Collectors.toList());
+		objects.forEach(pool::release);
+		Counts counts = pool.counts();
+		Assert.assertEquals(borrows - maxIdle, counts.get(Pool.Stats.DESTROYS));
+		Assert.assertEquals(maxIdle, pool.size());
+	}
+	
+	@Test
+	public void testThreadAffineMaxIdleConcurrency() throws InterruptedException {
+		final int maxIdle = 2;
+		final int threads = 16;
+		Pool<Object> pool = Pool.builder(Object::new).threadAffine().maxIdle(maxIdle).build();
+		List<Object> objects = IntStream.range(0, threads)
+				.mapToObj(i -> pool.borrow())
+				.collect(Collectors.toList());
+		// release all members at once, the idle count must not overshoot maxIdle
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		objects.forEach(object -> executor.execute(() -> {
+			try {
+				start.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			pool.release(object);
+		}));
+		start.countDown();
+		executor.shutdown();
+		Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		Assert.assertEquals(maxIdle, pool.size());
+		Assert.assertEquals(threads - maxIdle, pool.counts().get(Pool.Stats.DESTROYS));
+		pool.close();
+	}
+	
+	@Test
+	public void testThreadAffineTrim() throws InterruptedException {
+		AtomicInteger maxIdle = new AtomicInteger(Integer.MAX_VALUE);
+		List<Object> destroyed = new CopyOnWriteArrayList<>();
+		Pool<Object> pool = Pool.builder(Object::new)
+			.threadAffine()
+			.destroy(destroyed::add)
+			.sizingPolicy(new SizingPolicy() {
+				@Override
+				public int minIdle(Sample sample) {
+					return 0;
+				}
+				@Override
+				public int maxIdle(Sample sample) {
+					return maxIdle.get();
+				}
+			})
+			.build();
+		List<Object> objects = IntStream.range(0, 3).mapToObj(i -> pool.borrow()).collect(Collectors.toList());
+		// release in reverse allocation order, the first allocated member is idle for the shortest time
+		for (int i = 2 ; i >= 0 ; i--) {
+			pool.release(objects.get(i));
+			Thread.sleep(5L);
+		}
+		maxIdle.set(1);
+		pool.cycle();
+		Assert.assertEquals(Arrays.asList(objects.get(2), objects.get(1)), destroyed);
+		Assert.assertEquals(1, pool.size());
+		Assert.assertEquals(2, pool.counts().get(Pool.Stats.SHRINKS));
+		pool.close();
+	}
+	
+	@Test
+	public void testThreadAffineMaxIdleTime() throws InterruptedException {
+		Pool<Object> pool = Pool.builder(Object::new).threadAffine().maxIdleTime(10, TimeUnit.MILLISECONDS).build();
+		pool.release(pool.borrow());
+		Thread.sleep(100L);
+		pool.cycle();
+		Counts counts = pool.counts();
+		Assert.assertEquals(1, counts.get(Pool.Stats.DESTROYS));
+		Assert.assertEquals(0, pool.size());
+	}
+	
+	@Test(expected=NoSuchElementException.class)
+	public void testThreadAffineMaxSize() {
+		final int maxSize = 10;
+		Pool<Object> pool = Pool.builder(Object::new).threadAffine().maxSize(maxSize).maxWait(1, TimeUnit.MILLISECONDS).build();
+		IntStream.range(0, maxSize  + 1).forEach( i -> pool.borrow());
+	}
+	
+	@Test
+	public void testThreadAffineConcurrency() throws InterruptedException {
+		final int maxSize = 4;
+		final int threads = 16;
+		final int borrows = 10000;
+		AtomicInteger outstanding = new AtomicInteger();
+		AtomicInteger violations = new AtomicInteger();
+		Pool<Object> pool = Pool.builder(Object::new).threadAffine().maxSize(maxSize).build();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		IntStream.range(0, threads).forEach(i -> executor.execute(() -> {
+			for (int j = 0 ; j < borrows ; j++) {
+				Object lease = pool.borrow();
+				if (outstanding.incrementAndGet() > maxSize) {
+					violations.incrementAndGet();
+				}
+				outstanding.decrementAndGet();
+				pool.release(lease);
+			}
+		}));
+		executor.shutdown();
+		Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		Counts counts = pool.counts();
+		Assert.assertEquals(0, violations.get());
+		Assert.assertEquals(threads * borrows, counts.get(Pool.Stats.BORROWS));
+		Assert.assertEquals(threads * borrows, counts.get(Pool.Stats.RELEASES));
+		Assert.assertTrue(pool.size() <= maxSize);
+		pool.close();
+		Assert.assertTrue(pool.await(1, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testBorrowAsync() throws InterruptedException, ExecutionException, TimeoutException {
+		Pool<Object> pool = Pool.builder(Object::new).maxSize(1).build();
+		CompletableFuture<PoolEntry<Object>> first = pool.borrowAsync();
+		Object lease = first.get(1, TimeUnit.SECONDS).get();
+		CompletableFuture<PoolEntry<Object>> second = pool.borrowAsync();
+		CompletableFuture<PoolEntry<Object>> third = pool.borrowAsync();
+		Assert.assertFalse(second.isDone());
+		Assert.assertFalse(third.isDone());
+		pool.release(lease);
+		Assert.assertSame(lease, second.get(1, TimeUnit.SECONDS).get());
+		Assert.assertFalse(third.isDone());
+		pool.release(lease);
+		Assert.assertSame(lease, third.get(1, TimeUnit.SECONDS).get());
+		pool.release(lease);
+		Counts counts = pool.counts();
+		Assert.assertEquals(1, counts.get(Pool.Stats.ALLOCATIONS));
+		Assert.assertEquals(3, counts.get(Pool.Stats.BORROWS));
+		Assert.assertEquals(3, counts.get(Pool.Stats.RELEASES));
+		Assert.assertEquals(2, counts.get(Pool.Stats.SUSPENDS));
+		pool.close();
+	}
+	
+	@Test
+	public void testBorrowAsyncTimeout() throws InterruptedException {
+		Pool<Object> pool = Pool.builder(Object::new).maxSize(1).maxWait(10, TimeUnit.MILLISECONDS).build();
+		Object lease = pool.borrow();
+		CompletableFuture<PoolEntry<Object>> future = pool.borrowAsync();
+		try {
+			future.get();
+			Assert.fail();
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof NoSuchElementException);
+		}
+		pool.release(lease);
+		Assert.assertSame(lease, pool.borrow());
+		// the timeout is counted after it completed the waiter
+		awaitCount(pool, Pool.Stats.FAILURES, 1);
+		Assert.assertEquals(1, pool.counts().get(Pool.Stats.TIMEOUTS));
+		Assert.assertEquals(2, pool.counts().get(Pool.Stats.BORROWS));
+	}
+	
+	@Test
+	public void testBorrowWithin() throws InterruptedException, TimeoutException {
+		Pool<Object> pool = Pool.builder(Object::new).maxSize(1).build();
+		Object member = pool.borrow();
+		long start = System.nanoTime();
+		try {
+			pool.borrowEntry(50, TimeUnit.MILLISECONDS);
+			Assert.fail();
+		} catch (NoSuchElementException e) {
+			Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+		}
+		CompletableFuture<PoolEntry<Object>> future = pool.borrowAsync(50, TimeUnit.MILLISECONDS);
+		try {
+			future.get(1, TimeUnit.SECONDS);
+			Assert.fail();
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof NoSuchElementException);
+		}
+		// the async timeout is counted after it completed the waiter
+		awaitCount(pool, Pool.Stats.TIMEOUTS, 2);
+		pool.release(member);
+		Assert.assertSame(member, pool.borrowEntry(0, TimeUnit.MILLISECONDS).get());
+		pool.release(member);
+		pool.close();
+	}
+	
+	@Test
+	public void testBorrowAsyncCancel() {
+		Pool<Object> pool = Pool.builder(Object::new).maxSize(1).maxWait(1, TimeUnit.SECONDS).build();
+		Object lease = pool.borrow();
+		CompletableFuture<PoolEntry<Object>> future = pool.borrowAsync();
+		Assert.assertTrue(future.cancel(false));
+		pool.release(lease);
+		// no permit leaked to the cancelled waiter
+		Assert.assertSame(lease, pool.borrow());
+		pool.release(lease);
+		Assert.assertEquals(2, pool.counts().get(Pool.Stats.BORROWS));
+		pool.close();
+	}
+	
+	@Test
+	public void testBorrowAsyncClose() throws InterruptedException {
+		Pool<Object> pool = Pool.builder(Object::new).maxSize(1).build();
+		Object lease = pool.borrow();
+		CompletableFuture<PoolEntry<Object>> future = pool.borrowAsync();
+		pool.close();
+		Assert.assertTrue(future.isCompletedExceptionally());
+		pool.release(lease);
+		Assert.assertTrue(pool.await(1, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testBorrowAsyncConcurrency() throws InterruptedException {
+		final int maxSize = 4;
+		final int borrows = 10000;
+		AtomicInteger outstanding = new AtomicInteger();
+		AtomicInteger violations = new AtomicInteger();
+		Pool<Object> pool = Pool.builder(Object::new).maxSize(maxSize).build();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<CompletableFuture<Void>> futures = IntStream.range(0, borrows)
+			.mapToObj(i -> pool.borrowAsync().thenAcceptAsync(entry -> {
+				if (outstanding.incrementAndGet() > maxSize) {
+					violations.incrementAndGet();
+				}
+				outstanding.decrementAndGet();
+				pool.release(entry.get());
+			}, executor))
+			.collect(Collectors.toList());
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+		executor.shutdown();
+		Counts counts = pool.counts();
+		Assert.assertEquals(0, violations.get());
+		Assert.assertEquals(borrows, counts.get(Pool.Stats.BORROWS));
+		Assert.assertEquals(borrows, counts.get(Pool.Stats.RELEASES));
+		Assert.assertTrue(pool.size() <= maxSize);
+		pool.close();
+		Assert.assertTrue(pool.await(1, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testMinIdle() throws InterruptedException {
+		final int minIdle = 3;
+		Pool<Object> pool = Pool.builder(Object::new).minIdle(minIdle).build();
+		awaitSize(pool, minIdle);
+		Object lease = pool.borrow();
+		awaitSize(pool, minIdle + 1);
+		pool.release(lease);
+		Counts counts = pool.counts();
+		Assert.assertEquals(minIdle + 1, counts.get(Pool.Stats.ALLOCATIONS));
+		Assert.assertEquals(minIdle + 1, counts.get(Pool.Stats.PREWARMS));
+		Assert.assertTrue(counts.get(Pool.Stats.ALLOCATIONNANOS) >= counts.get(Pool.Stats.MAXALLOCATIONNANOS));
+		pool.close();
+		Assert.assertTrue(pool.await(1, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testMinIdleMaxSize() throws InterruptedException {
+		final int maxSize = 2;
+		Pool<Object> pool = Pool.builder(Object::new).minIdle(maxSize).maxSize(maxSize).build();
+		awaitSize(pool, maxSize);
+		List<Object> leases = IntStream.range(0, maxSize)
+			.mapToObj(i -> pool.borrow())
+			.collect(Collectors.toList());
+		Thread.sleep(100);
+		Assert.assertEquals(maxSize, pool.size());
+		leases.forEach(pool::release);
+		Assert.assertEquals(maxSize, pool.counts().get(Pool.Stats.ALLOCATIONS));
+		pool.close();
+	}
+	
+	@Test
+	public void testAllocationParallelism() throws InterruptedException {
+		final int parallelism = 4;
+		AtomicInteger active = new AtomicInteger();
+		AtomicInteger maxActive = new AtomicInteger();
+		Pool<Object> pool = Pool.builder(() -> slowAllocate(active, maxActive))
+			.minIdle(parallelism)
+			.allocationParallelism(parallelism)
+			.build();
+		awaitSize(pool, parallelism);
+		Assert.assertTrue(maxActive.get() > 1);
+		Assert.assertTrue(pool.counts().get(Pool.Stats.MAXALLOCATIONNANOS) >= TimeUnit.MILLISECONDS.toNanos(100));
+		pool.close();
+	}
+	
+	@Test
+	public void testLatencies() throws InterruptedException, ExecutionException, TimeoutException {
+		AtomicInteger validations = new AtomicInteger();
+		Pool<Object> pool = Pool.builder(Object::new)
+			.maxSize(1)
+			.onBorrow(t -> validations.incrementAndGet() > 0)
+			.build();
+		Object lease = pool.borrow();
+		CompletableFuture<PoolEntry<Object>> waiter = pool.borrowAsync();
+		Thread.sleep(50);
+		pool.release(lease);
+		Assert.assertSame(lease, waiter.get(1, TimeUnit.SECONDS).get());
+		pool.release(lease);
+		// the wait of the async borrower is recorded by a dependent action of its future
+		for (int i = 0 ; i < 100 && pool.histograms().get(Pool.Latencies.BORROWWAIT).max() < TimeUnit.MILLISECONDS.toNanos(50); i++) {
+			Thread.sleep(10);
+		}
+		Map<Enum<?>, HistogramSnapshot> histograms = pool.histograms();
+		HistogramSnapshot wait = histograms.get(Pool.Latencies.BORROWWAIT);
+		Assert.assertEquals(2, wait.count());
+		Assert.assertEquals(0, wait.min());
+		Assert.assertTrue(wait.max() >= TimeUnit.MILLISECONDS.toNanos(50));
+		HistogramSnapshot hold = histograms.get(Pool.Latencies.HOLD);
+		Assert.assertEquals(2, hold.count());
+		Assert.assertTrue(hold.percentile(100) >= TimeUnit.MILLISECONDS.toNanos(50));
+		Assert.assertEquals(validations.get(), histograms.get(Pool.Latencies.VALIDATION).count());
+		pool.close();
+	}
+	
+	@Test
+	public void testLeases() {
+		Pool<Object> pool = Pool.builder(Object::new)
+			.leakThreshold(1, TimeUnit.HOURS)
+			.leaseStackTraces(1)
+			.build();
+		Object member = pool.borrow();
+		List<Lease<Object>> leases = pool.leases();
+		Assert.assertEquals(1, leases.size());
+		Lease<Object> lease = leases.get(0);
+		Assert.assertSame(member, lease.get());
+		Assert.assertEquals(Thread.currentThread().getName(), lease.thread().get());
+		Assert.assertTrue(lease.stackTrace().isPresent());
+		Assert.assertFalse(lease.suspect());
+		pool.release(member);
+		Assert.assertTrue(pool.leases().isEmpty());
+		pool.close();
+	}
+	
+	@Test
+	public void testLeakDetection() throws InterruptedException {
+		Pool<Object> pool = Pool.builder(Object::new)
+			.leakThreshold(10, TimeUnit.MILLISECONDS)
+			.build();
+		Object member = pool.borrow();
+		Thread.sleep(20);
+		Assert.assertTrue(pool.leases().get(0).suspect());
+		Assert.assertFalse(pool.leases().get(0).stackTrace().isPresent());
+		pool.cycle();
+		pool.cycle();
+		Assert.assertEquals(1, pool.counts().get(Pool.Stats.LEAKSUSPECTS));
+		pool.release(member);
+		pool.close();
+	}
+	
+	@Test
+	public void testLeasesUntracked() {
+		Pool<Object> pool = Pool.builder(Object::new).build();
+		Object member = pool.borrow();
+		Assert.assertEquals(1, pool.leases().size());
+		Assert.assertFalse(pool.leases().get(0).thread().isPresent());
+		Assert.assertFalse(pool.leases().get(0).suspect());
+		pool.release(member);
+		pool.close();
+	}
+	
+	@Test
+	public void testStriped() throws InterruptedException, ExecutionException {
+		Pool<Object> pool = Pool.builder(Object::new)
+			.maxSize(8)
+			.striped(4)
+			.build();
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		List<CompletableFuture<Void>> futures = IntStream.range(0, 10000)
+			.mapToObj(i -> CompletableFuture.runAsync(() -> pool.release(pool.borrow()), executor))
+			.collect(Collectors.toList());
+		for (CompletableFuture<Void> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		Assert.assertTrue(pool.size() <= 8);
+		Counts counts = pool.counts();
+		Assert.assertEquals(10000, counts.get(Pool.Stats.BORROWS));
+		Assert.assertTrue(counts.get(Pool.Stats.MAXSIZE) <= 8);
+		Assert.assertEquals(counts.get(Pool.Stats.ALLOCATIONS), pool.size());
+		pool.close();
+		Assert.assertTrue(pool.await(1, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testStripedSteal() throws InterruptedException {
+		Pool<Object> pool = Pool.builder(Object::new)
+			.striped(4)
+			.build();
+		Object member = pool.borrow();
+		pool.release(member);
+		// a thread with another home stripe steals the idle member
+		Thread[] threads = new Thread[4];
+		Object[] borrowed = new Object[threads.length];
+		for (int i = 0 ; i < threads.length; i++) {
+			int index = i;
+			threads[i] = new Thread(() -> {
+				borrowed[index] = pool.borrow();
+				pool.release(borrowed[index]);
+			});
+			threads[i].start();
+			threads[i].join();
+		}
+		for (Object candidate : borrowed) {
+			Assert.assertSame(member, candidate);
+		}
+		Assert.assertEquals(1, pool.size());
+		pool.close();
+	}
+	
+	@Test
+	public void testStripedMaxIdle() {
+		Pool<Object> pool = Pool.builder(Object::new)
+			.maxIdle(5)
+			.striped(4)
+			.build();
+		List<Object> members = IntStream.range(0, 10).mapToObj(i -> pool.borrow()).collect(Collectors.toList());
+		members.forEach(pool::release);
+		Assert.assertEquals(5, pool.size());
+		Assert.assertTrue(pool.leases().isEmpty());
+		pool.close();
+	}
+	
+	@Test(expected=IllegalStateException.class)
+	public void testStripedThreadAffine() {
+		Pool.builder(Object::new).striped(4).threadAffine().build();
+	}
+	
+	@Test
+	public void testSharedScheduler() throws InterruptedException {
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+		List<Pool<Object>> pools = IntStream.range(0, 10)
+			.mapToObj(i -> Pool.builder(Object::new)
+				.maxIdleTime(10, TimeUnit.MILLISECONDS)
+				.propertyCycle(20, TimeUnit.MILLISECONDS)
+				.scheduleExecutorService(scheduler)
+				.build())
+			.collect(Collectors.toList());
+		pools.forEach(pool -> pool.release(pool.borrow()));
+		// the single scheduler thread triggers the cycles of all pools, which expire the idle members
+		for (Pool<Object> pool : pools) {
+			// destroy decreases the size before counting, wait for the count
+			for (int i = 0 ; i < 100 && pool.counts().get(Pool.Stats.DESTROYS) == 0; i++) {
+				Thread.sleep(10);
+			}
+			Assert.assertEquals(1, pool.counts().get(Pool.Stats.DESTROYS));
+			Assert.assertEquals(0, pool.size());
+		}
+		pools.forEach(Pool::close);
+		Assert.assertFalse(scheduler.isShutdown());
+		scheduler.shutdown();
+	}
+	
+	@Test
+	public void testSharedWorkExecutor() throws InterruptedException {
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+		ExecutorService workers = Executors.newFixedThreadPool(2);
+		List<Pool<Object>> pools = IntStream.range(0, 10)
+			.mapToObj(i -> Pool.builder(Object::new)
+				.maxIdleTime(10, TimeUnit.MILLISECONDS)
+				.minIdle(1)
+				.propertyCycle(20, TimeUnit.MILLISECONDS)
+				.scheduleExecutorService(scheduler)
+				.workExecutorService(workers)
+				.build())
+			.collect(Collectors.toList());
+		// the cycles expire the prewarmed members, and prewarm new ones, on the shared workers
+		for (Pool<Object> pool : pools) {
+			for (int i = 0 ; i < 100 && pool.counts().get(Pool.Stats.DESTROYS) == 0; i++) {
+				Thread.sleep(10);
+			}
+			Assert.assertTrue(pool.counts().get(Pool.Stats.DESTROYS) > 0);
+		}
+		Assert.assertFalse(Thread.getAllStackTraces().keySet().stream().anyMatch(thread -> thread.getName().startsWith("Work thread for pool")));
+		pools.forEach(Pool::close);
+		Assert.assertFalse(workers.isShutdown());
+		workers.shutdown();
+		scheduler.shutdown();
+	}
+	
+	@Test
+	public void testSharedSchedulerBlockedAllocation() throws InterruptedException {
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+		CountDownLatch unreachable = new CountDownLatch(1);
+		// background allocation of this pool blocks, as a connect to an unreachable host would
+		Pool<Object> blocked = Pool.builder(() -> awaitAndAllocate(unreachable))
+			.minIdle(1)
+			.scheduleExecutorService(scheduler)
+			.build();
+		Pool<Object> pool = Pool.builder(Object::new)
+			.maxSize(1)
+			.maxWait(10, TimeUnit.MILLISECONDS)
+			.scheduleExecutorService(scheduler)
+			.build();
+		Object lease = pool.borrow();
+		// the async borrow timeout of the other pool still fires on the shared scheduler
+		try {
+			pool.borrowAsync().get(1, TimeUnit.SECONDS);
+			Assert.fail();
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof NoSuchElementException);
+		} catch (TimeoutException e) {
+			Assert.fail("shared scheduler blocked");
+		}
+		unreachable.countDown();
+		pool.release(lease);
+		pool.close();
+		blocked.close();
+		scheduler.shutdown();
+	}
+	
+	@Test
+	public void testWindow() throws InterruptedException {
+		Pool<Object> pool = Pool.builder(Object::new).build();
+		Thread.sleep(20);
+		for (int i = 0 ; i < 10 ; i++) {
+			pool.release(pool.borrow());
+		}
+		Counts window = pool.window(1, TimeUnit.MINUTES);
+		Assert.assertEquals(10, window.get(Pool.Stats.BORROWS));
+		Assert.assertEquals(1, window.get(Pool.Stats.MAXSIZE));
+		Assert.assertTrue(window.elapsed(TimeUnit.MILLISECONDS) >= 20);
+		Assert.assertTrue(window.elapsed(TimeUnit.MINUTES) <= 1);
+		double rate = window.rate(Pool.Stats.BORROWS, TimeUnit.SECONDS);
+		Assert.assertTrue(rate > 0 && rate <= 10 * 1000 / 20);
+		pool.close();
+	}
+	
+	@Test
+	public void testFixedSizing() {
+		Pool<Object> pool = Pool.builder(Object::new)
+			.sizingPolicy(SizingPolicy.fixed())
+			.build();
+		List<Object> members = IntStream.range(0, 5).mapToObj(i -> pool.borrow()).collect(Collectors.toList());
+		members.forEach(pool::release);
+		pool.cycle();
+		Assert.assertEquals(5, pool.size());
+		Assert.assertEquals(0, pool.counts().get(Pool.Stats.SHRINKS));
+		pool.close();
+	}
+	
+	@Test
+	public void testAdaptiveSizing() throws InterruptedException {
+		Pool<Object> pool = Pool.builder(Object::new)
+			.maxSize(10)
+			.sizingPolicy(SizingPolicy.adaptive(0, TimeUnit.NANOSECONDS, 1))
+			.build();
+		List<Object> members = IntStream.range(0, 4).mapToObj(i -> pool.borrow()).collect(Collectors.toList());
+		// 4 borrowers allocated, the policy keeps 4 more members ready
+		pool.cycle();
+		awaitSize(pool, 8);
+		// the size includes members still on their way to the idle store
+		awaitCount(pool, Pool.Stats.PREWARMS, 4);
+		members.forEach(pool::release);
+		// quiet cycles halve the target and destroy the surplus idle members
+		pool.cycle();
+		Assert.assertEquals(2, pool.size());
+		pool.cycle();
+		Assert.assertEquals(1, pool.size());
+		pool.cycle();
+		Assert.assertEquals(0, pool.size());
+		Assert.assertEquals(8, pool.counts().get(Pool.Stats.SHRINKS));
+		pool.close();
+	}
+	
+	@Test
+	public void testAdaptiveSizingMaxSize() throws InterruptedException {
+		Pool<Object> pool = Pool.builder(Object::new)
+			.maxSize(3)
+			.minIdle(1)
+			.sizingPolicy(SizingPolicy.adaptive(1, TimeUnit.HOURS, 2))
+			.build();
+		awaitSize(pool, 1);
+		List<Object> members = IntStream.range(0, 3).mapToObj(i -> pool.borrow()).collect(Collectors.toList());
+		pool.cycle();
+		Assert.assertEquals(3, pool.size());
+		members.forEach(pool::release);
+		pool.cycle();
+		pool.cycle();
+		Assert.assertEquals(2, pool.size());
+		pool.cycle();
+		pool.cycle();
+		Assert.assertEquals(1, pool.size());
+		pool.close();
+	}
+	
+	@Test
+	public void testKeepAlive() throws InterruptedException {
+		testKeepAlive(Pool.builder(Object::new));
+	}
+	
+	@Test
+	public void testThreadAffineKeepAlive() throws InterruptedException {
+		testKeepAlive(Pool.builder(Object::new).threadAffine());
+	}
+	
+	private void testKeepAlive(Pool.Builder<Object> builder) throws InterruptedException {
+		AtomicReference<Object> broken = new AtomicReference<>();
+		AtomicInteger borrowChecks = new AtomicInteger();
+		Pool<Object> pool = builder
+			.keepAlive(member -> member != broken.get(), 10, TimeUnit.MILLISECONDS)
+			.onBorrow(member -> borrowChecks.incrementAndGet() > 0)
+			.minIdleTime(100, TimeUnit.MILLISECONDS)
+			.build();
+		Object first = pool.borrow();
+		pool.release(pool.borrow());
+		pool.release(first);
+		broken.set(first);
+		Thread.sleep(200L);
+		pool.cycle();
+		Counts counts = pool.counts();
+		Assert.assertEquals(2, counts.get(Pool.Stats.KEEPALIVES));
+		Assert.assertEquals(1, counts.get(Pool.Stats.INVALIDONKEEPALIVE));
+		Assert.assertEquals(1, pool.size());
+		// members that just passed the keep alive check are not tested again on borrow
+		pool.release(pool.borrow());
+		Assert.assertEquals(0, borrowChecks.get());
+		pool.close();
+	}
+	
+	@Test
+	public void testCloseDuringKeepAlive() throws InterruptedException {
+		CountDownLatch testing = new CountDownLatch(1);
+		CountDownLatch proceed = new CountDownLatch(1);
+		Pool<Object> pool = Pool.builder(Object::new)
+			.keepAlive(member -> awaitAndTest(testing, proceed), 10, TimeUnit.MILLISECONDS)
+			.build();
+		pool.release(pool.borrow());
+		Thread.sleep(50L);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			executor.execute(pool::cycle);
+			Assert.assertTrue(testing.await(1, TimeUnit.SECONDS));
+			pool.close();
+			proceed.countDown();
+			Assert.assertTrue(pool.await(2, TimeUnit.SECONDS));
+			Assert.assertEquals(0, pool.size());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testKeepAliveMaxIdle() throws InterruptedException, ExecutionException, TimeoutException {
+		CountDownLatch testing = new CountDownLatch(1);
+		CountDownLatch proceed = new CountDownLatch(1);
+		IdleStore<Object> store = new DequeIdleStore<>(1, DequeIdleStore.Strategy.LIFO);
+		Object tested = new Object();
+		store.offer(tested);
+		Thread.sleep(50L);
+		List<Object> surplus = new CopyOnWriteArrayList<>();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> keepAlive = executor.submit(() -> store.keepAlive(10, member -> awaitAndTest(testing, proceed), surplus::add));
+			Assert.assertTrue(testing.await(1, TimeUnit.SECONDS));
+			// the member under test is out of the store, so the offer fills it
+			Assert.assertTrue(store.offer(new Object()));
+			proceed.countDown();
+			keepAlive.get(1, TimeUnit.SECONDS);
+			Assert.assertEquals(1, store.size());
+			Assert.assertEquals(1, surplus.size());
+			Assert.assertSame(tested, surplus.get(0));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	private boolean awaitAndTest(CountDownLatch testing, CountDownLatch proceed) {
+		testing.countDown();
+		try {
+			return proceed.await(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	@Test
+	public void testEqualMembers() {
+		// ByteBuffers of the same size and content are equal, but distinct pool members
+		testEqualMembers(Pool.builder(() -> ByteBuffer.allocate(16)));
+		testEqualMembers(Pool.builder(() -> ByteBuffer.allocate(16)).fifo());
+		testEqualMembers(Pool.builder(() -> ByteBuffer.allocate(16)).striped(4));
+		testEqualMembers(Pool.builder(() -> ByteBuffer.allocate(16)).threadAffine());
+	}
+	
+	private void testEqualMembers(Pool.Builder<ByteBuffer> builder) {
+		Pool<ByteBuffer> pool = builder.build();
+		ByteBuffer first = pool.borrow();
+		ByteBuffer second = pool.borrow();
+		Assert.assertEquals(first, second);
+		pool.release(first);
+		pool.release(second);
+		Assert.assertEquals(2, pool.size());
+		first = pool.borrow();
+		second = pool.borrow();
+		Assert.assertNotSame(first, second);
+		pool.release(first);
+		pool.release(second);
+		Assert.assertEquals(2, pool.size());
+		pool.close();
+	}
+	
+	private Object awaitAndAllocate(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return new Object();
+	}
+	
+	private Object slowAllocate(AtomicInteger active, AtomicInteger maxActive) {
+		maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+		try {
+			Thread.sleep(100);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		active.decrementAndGet();
+		return new Object();
+	}
+	
+	private void awaitCount(Pool<?> pool, Pool.Stats key, long count) throws InterruptedException {
+		for (int i = 0 ; i < 100 && pool.counts().get(key) < count; i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(count, pool.counts().get(key));
+	}
+	
+	private void awaitSize(Pool<?> pool, int size) throws InterruptedException {
+		for (int i = 0 ; i < 100 && pool.size() < size; i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(size, pool.size());
+	}
+	
 }